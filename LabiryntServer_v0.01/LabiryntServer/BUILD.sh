@@ -7,3 +7,5 @@ ant
 rm -rf build
 
 cp config.xml dist/
+
+cp labyrinth.jfc dist/
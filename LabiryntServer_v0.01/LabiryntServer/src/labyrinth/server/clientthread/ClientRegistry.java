@@ -0,0 +1,186 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package labyrinth.server.clientthread;
+
+import labyrinth.server.metrics.ServerMetrics;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Klasa reprezentująca rejestr otwartych połączeń obu konektorów.
+ * Dodanie i usunięcie połączenia kosztują O(1) niezależnie od liczby
+ * klientów. Połączenia mogą mieć etykiety (np. room=lobby, role=player),
+ * a dla każdej pary klucz=wartość rejestr trzyma osobny zbiór połączeń,
+ * więc rozesłanie do jednego pokoju nie przegląda wszystkich klientów.
+ * Zbiory bez połączeń są usuwane, więc indeks nie rośnie razem z liczbą
+ * pokoi, które kiedykolwiek istniały.
+ * @author informatyka
+ */
+public class ClientRegistry {
+
+    private ClientRegistry()
+    {
+    }
+
+    /**
+     *
+     * @param connection Parametr określający nowe połączenie
+     */
+    public static void register(Connection connection)
+    {
+        clients.putIfAbsent(connection, new ConcurrentHashMap<String, String>());
+    }
+
+    /**
+     * Usuwa połączenie z rejestru razem z jego etykietami.
+     *
+     * @param connection Parametr określający zamknięte połączenie
+     */
+    public static void unregister(Connection connection)
+    {
+        Map<String, String> tags = clients.remove(connection);
+        if (tags == null || tags.isEmpty()) {
+            return;
+        }
+        synchronized (index) {
+            for (Map.Entry<String, String> tag : tags.entrySet()) {
+                unindex(connection, tag.getKey(), tag.getValue());
+            }
+            tags.clear();
+        }
+    }
+
+    /**
+     * Ustawia etykietę połączenia (poprzednia wartość klucza jest zastępowana).
+     *
+     * @param connection Parametr określający połączenie
+     * @param key Parametr określający klucz etykiety, np. room
+     * @param value Parametr określający wartość etykiety (null - usuwa etykietę)
+     * @return Zwraca false, jeżeli połączenia nie ma w rejestrze
+     */
+    public static boolean tag(Connection connection, String key, String value)
+    {
+        Map<String, String> tags = clients.get(connection);
+        if (tags == null) {
+            return false;
+        }
+        synchronized (index) {
+            //polaczenie moglo zostac wyrejestrowane w miedzyczasie
+            if (clients.get(connection) != tags) {
+                return false;
+            }
+            String old = value == null ? tags.remove(key) : tags.put(key, value);
+            if (old != null) {
+                unindex(connection, key, old);
+            }
+            if (value != null) {
+                Set<Connection> members = index.get(key + "=" + value);
+                if (members == null) {
+                    members = ConcurrentHashMap.newKeySet();
+                    index.put(key + "=" + value, members);
+                }
+                members.add(connection);
+            }
+        }
+        return true;
+    }
+
+    /**
+     *
+     * @param connection Parametr określający połączenie
+     * @param key Parametr określający klucz etykiety
+     * @return Zwraca wartość etykiety albo null
+     */
+    public static String getTag(Connection connection, String key)
+    {
+        Map<String, String> tags = clients.get(connection);
+        return tags == null ? null : tags.get(key);
+    }
+
+    /**
+     *
+     * @return Zwraca liczbę połączeń w rejestrze
+     */
+    public static int size()
+    {
+        return clients.size();
+    }
+
+    /**
+     *
+     * @param key Parametr określający klucz etykiety
+     * @param value Parametr określający wartość etykiety
+     * @return Zwraca liczbę połączeń z daną etykietą
+     */
+    public static int count(String key, String value)
+    {
+        Set<Connection> members = index.get(key + "=" + value);
+        return members == null ? 0 : members.size();
+    }
+
+    /**
+     * Rozsyła linię do wszystkich połączeń.
+     *
+     * @param message Parametr określający treść linii (bez znaku nowej linii)
+     * @return Zwraca liczbę połączeń, które przyjęły linię do wysłania
+     */
+    public static int broadcast(String message)
+    {
+        return broadcast(clients.keySet(), message);
+    }
+
+    /**
+     * Rozsyła linię do połączeń z daną etykietą.
+     *
+     * @param key Parametr określający klucz etykiety
+     * @param value Parametr określający wartość etykiety
+     * @param message Parametr określający treść linii (bez znaku nowej linii)
+     * @return Zwraca liczbę połączeń, które przyjęły linię do wysłania
+     */
+    public static int broadcast(String key, String value, String message)
+    {
+        Set<Connection> members = index.get(key + "=" + value);
+        return broadcast(members == null ? Collections.<Connection>emptySet() : members, message);
+    }
+
+    /**
+     * Linia jest kodowana raz, a wszystkie połączenia dostają tę samą
+     * tablicę bajtów. Connection.offer nie czeka na wolnych odbiorców -
+     * połączenie z pełną kolejką po prostu tej linii nie dostaje.
+     */
+    private static int broadcast(Iterable<Connection> targets, String message)
+    {
+        byte[] line = (message + "\n").getBytes(StandardCharsets.UTF_8);
+        ServerMetrics.BROADCASTS.inc();
+        int delivered = 0;
+        int dropped = 0;
+        for (Connection connection : targets) {
+            if (connection.offer(line)) {
+                delivered++;
+            } else {
+                dropped++;
+            }
+        }
+        ServerMetrics.BROADCAST_DELIVERED.add(delivered);
+        ServerMetrics.BROADCAST_DROPPED.add(dropped);
+        return delivered;
+    }
+
+    private static void unindex(Connection connection, String key, String value)
+    {
+        Set<Connection> members = index.get(key + "=" + value);
+        if (members != null && members.remove(connection) && members.isEmpty()) {
+            index.remove(key + "=" + value);
+        }
+    }
+
+    private static final ConcurrentHashMap<Connection, Map<String, String>> clients = new ConcurrentHashMap<>();
+    //klucz=wartosc -> polaczenia z ta etykieta; zmiany etykiet pod monitorem index, odczyt bez blokady
+    private static final ConcurrentHashMap<String, Set<Connection>> index = new ConcurrentHashMap<>();
+}
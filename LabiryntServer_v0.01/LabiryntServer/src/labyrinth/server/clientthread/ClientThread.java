@@ -6,14 +6,31 @@
 package labyrinth.server.clientthread;
 
 import labyrinth.server.console.Console;
+import labyrinth.server.console.LogPolicy;
+import labyrinth.server.metrics.ServerMetrics;
+import labyrinth.server.trace.ConnectionClosedEvent;
+import labyrinth.server.trace.ConnectionOpenedEvent;
+import labyrinth.server.trace.WriteEvent;
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.PrintWriter;
+import java.net.InetAddress;
 import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.Charset;
 import java.sql.SQLException;
-import java.util.ArrayList;
-import java.util.Scanner;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -21,7 +38,7 @@ import java.util.logging.Logger;
  * Klasa reprezentująca wątek klienta.
  * @author informatyka
  */
-public class ClientThread implements Runnable {
+public class ClientThread implements Runnable, Connection, IdleConnection {
     
     /**
      *
@@ -30,7 +47,6 @@ public class ClientThread implements Runnable {
     public ClientThread(Socket incoming)
     {
         this.incoming = incoming; 
-        addToList(this);
         
     }
     
@@ -43,71 +59,308 @@ public class ClientThread implements Runnable {
         return this.incoming;
     }
     
-    private static void addToList(ClientThread client)
-    {
-        clientList.add(client);
-    }
-    
-    
-    private static void removeFromList(ClientThread client)
+    /**
+     *
+     * @return Zwraca adres klienta
+     */
+    @Override
+    public InetAddress getInetAddress()
     {
-        clientList.remove(client);
+        return this.incoming.getInetAddress();
     }
     
     /**
      *
      * @param what parametr określający co ma być wysłane do klienta
      */
+    @Override
     public void broadcast(String what)
     {
-        out.println(what);
-        
+        WriteEvent event = new WriteEvent();
+        event.start();
+        writeLock.lock();
+        try {
+            out.println(what);
+        } finally {
+            writeLock.unlock();
+        }
+        event.payload(what.length() + 1);
+        event.finish();
+    }
+
+    /**
+     * Linia czeka w kolejce połączenia, a do gniazda zapisuje ją wątek tego
+     * połączenia między odczytami (co najwyżej po NOTICE_TICK_MS) -
+     * wywołujący nie czeka na wolnego odbiorcy i nie powstają dodatkowe wątki.
+     * Wolny odbiorca blokuje tylko swój wątek (do zamknięcia przez
+     * IdleSweeper), a linie ponad MAX_NOTICE_BYTES w kolejce są pomijane.
+     *
+     * @param line Parametr zawierający bajty linii razem ze znakiem nowej linii
+     * @return Zwraca false, jeżeli połączenie jest zamknięte albo ma pełną kolejkę
+     */
+    @Override
+    public boolean offer(byte[] line)
+    {
+        if (sink == null || incoming.isClosed()) {
+            return false;
+        }
+        if (noticeBytes.addAndGet(line.length) > MAX_NOTICE_BYTES) {
+            noticeBytes.addAndGet(-line.length);
+            return false;
+        }
+        notices.add(line);
+        return true;
+    }
+
+    /**
+     * Zapis do gniazda blokuje, więc kolejna linia powstaje dopiero,
+     * gdy poprzednia zmieściła się w buforze gniazda.
+     *
+     * @param source Parametr określający źródło kolejnych linii
+     */
+    @Override
+    public void stream(Source source)
+    {
+        String line;
+        while ((line = source.next()) != null) {
+            broadcast(line);
+        }
+    }
+
+    /**
+     * Zapisuje komunikaty czekające w kolejce. Wywoływane tylko w wątku połączenia.
+     */
+    private void drainNotices()
+    {
+        byte[] line;
+        while ((line = notices.poll()) != null) {
+            try {
+                //linie broadcast i odpowiedzi nie moga sie przeplatac
+                writeLock.lock();
+                try {
+                    sink.write(line);
+                    sink.flush();
+                } finally {
+                    writeLock.unlock();
+                }
+            } catch (IOException e) {
+                //gniazdo zamkniete - reszta kolejki i tak nie dojdzie
+                notices.clear();
+                noticeBytes.set(0);
+                return;
+            }
+            noticeBytes.addAndGet(-line.length);
+        }
+    }
+
+    /**
+     * Ustawia czas, po którym zablokowany odczyt z gniazda zamyka połączenie.
+     *
+     * @param millis Parametr określający czas w milisekundach (0 - bez limitu)
+     */
+    public static void setReadTimeout(int millis)
+    {
+        readTimeout = Math.max(0, millis);
+    }
+
+    @Override
+    public long getLastActive()
+    {
+        return lastActive;
+    }
+
+    /**
+     *
+     * @return Zwraca true, jeżeli wątek wykonuje polecenie albo polecenia oznaczone czekają w puli
+     */
+    @Override
+    public boolean isBusy()
+    {
+        return busy || inFlight.availablePermits() < MAX_IN_FLIGHT;
+    }
+
+    @Override
+    public boolean isClosed()
+    {
+        return incoming.isClosed();
+    }
+
+    /**
+     * Zamyka gniazdo - zablokowany odczyt kończy się wyjątkiem, a wątek sprząta po sobie.
+     */
+    @Override
+    public void reap()
+    {
+        if (!incoming.isClosed()) {
+            reaped = true;
+            ServerMetrics.REAPED_IDLE.inc();
+            try {
+                incoming.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Ustawia liczbę wątków, w których jedno połączenie wykonuje oznaczone
+     * polecenia (np. "#17 /getLabirynt 31 31"). Każde połączenie ma własne
+     * wątki - odpowiedzi są zapisywane do gniazda blokująco, więc klient,
+     * który przestał czytać, zatrzymuje tylko swoje polecenia.
+     *
+     * @param threads Parametr odpowiadający za liczbę wątków połączenia
+     */
+    public static void startPipeline(int threads)
+    {
+        pipelineThreads = Math.max(1, threads);
+    }
+
+    /**
+     * Wątki połączenia tworzone przy pierwszym oznaczonym poleceniu i kończone
+     * po chwili bezczynności. Wywoływane tylko w wątku połączenia.
+     */
+    private ExecutorService pipeline()
+    {
+        if (pipeline == null) {
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(pipelineThreads, pipelineThreads,
+                    PIPELINE_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "pipeline-" + pipelineThreadCount.getAndIncrement());
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+            executor.allowCoreThreadTimeOut(true);
+            pipeline = executor;
+        }
+        return pipeline;
     }
     
     @Override
     public void run() {
+        long openedAt = System.nanoTime();
+        lastActive = openedAt;
+        ServerMetrics.OPENED.inc();
+        ConnectionOpenedEvent.emit(incoming.getInetAddress(), "thread");
         try
         {  
             try
             {
+                //odczyt budzi sie co NOTICE_TICK_MS, zeby wyslac komunikaty z kolejki
+                incoming.setSoTimeout(readTimeout > 0 ? Math.min(readTimeout, NOTICE_TICK_MS) : NOTICE_TICK_MS);
+                IdleSweeper.register(this);
                 InputStream inStream = incoming.getInputStream();
                 OutputStream outStream = incoming.getOutputStream();
             
-                in = new Scanner(inStream);         
-                out = new PrintWriter(outStream, true);
+                LineReader in = new LineReader(inStream);
+                sink = new FilterOutputStream(outStream) {
+                    //liczy bajty faktycznie oddane do gniazda
+                    @Override
+                    public void write(byte[] b, int off, int len) throws IOException {
+                        out.write(b, off, len);
+                        ServerMetrics.BYTES_WRITTEN.add(len);
+                    }
+
+                    @Override
+                    public void write(int b) throws IOException {
+                        out.write(b);
+                        ServerMetrics.BYTES_WRITTEN.inc();
+                    }
+                };
+                out = new PrintWriter(sink, true);
+                ClientRegistry.register(this);
             
                 
                 boolean done = false;
-                while (!done && in.hasNextLine())
+                boolean timedOut = false;
+                while (!done)
                 {  
-                    String line = in.nextLine();  
-                    labyrinth.server.console.Logger.log(incoming.getInetAddress() + " -> Server : " + line);
-                    System.out.println(incoming.getInetAddress() + " -> Server : " + line);
-                    
+                    String next;
+                    try
+                    {
+                        next = in.readLine();
+                    }
+                    catch (SocketTimeoutException e)
+                    {
+                        drainNotices();
+                        if (readTimeout > 0 && System.nanoTime() - in.lastRead >= TimeUnit.MILLISECONDS.toNanos(readTimeout))
+                        {
+                            timedOut = true;
+                            break;
+                        }
+                        continue;
+                    }
+                    catch (IOException e)
+                    {
+                        //gniazdo zamkniete, np. przez IdleSweeper
+                        break;
+                    }
+                    if (next == null)
+                    {
+                        break;
+                    }
+                    final String line = next;
+                    final long received = System.nanoTime();
+                    lastActive = received;
+                    if (Console.isTagged(line) && !Console.isQuit(line))
+                    {
+                        //najwyzej MAX_IN_FLIGHT polecen naraz - potem przestajemy czytac
+                        inFlight.acquireUninterruptibly();
+                        pipeline().execute(new Runnable() {
+                            @Override
+                            public void run() {
+                                try {
+                                    Console.checkAndDo(line, ClientThread.this, received);
+                                } catch (IOException | SQLException ex) {
+                                    Logger.getLogger(ClientThread.class.getName()).log(Level.SEVERE, null, ex);
+                                } finally {
+                                    inFlight.release();
+                                }
+                            }
+                        });
+                        continue;
+                    }
+                    busy = true;
                     try {
-                        Console.checkAndDo(line, this);
+                        Console.checkAndDo(line, this, received);
                         
                         
                     } catch (SQLException ex) {
                         Logger.getLogger(ClientThread.class.getName()).log(Level.SEVERE, null, ex);
+                    } finally {
+                        busy = false;
                     }
                     
                               
                     
-                    if (line.trim().equals("/QUIT"))
+                    if (Console.isQuit(line))
                     {
                         done = true;
                     }
+                    drainNotices();
+                }
+                if (timedOut)
+                {
+                    ServerMetrics.REAPED_READ_TIMEOUT.inc();
+                    LogPolicy.record(LogPolicy.CONNECTION, false, incoming.getInetAddress() + "/" + "READ TIMEOUT", null);
+                }
+                else if (reaped)
+                {
+                    LogPolicy.record(LogPolicy.CONNECTION, false, incoming.getInetAddress() + "/" + "IDLE TIMEOUT", null);
                 }
             }
             finally
             {
-                System.out.println(incoming.getInetAddress() + "/" + "CLOSED CONNECTION");
-                
-                labyrinth.server.console.Logger.log(incoming.getInetAddress() + "/" + "CLOSED CONNECTION");
+                //odpowiedzi na oznaczone polecenia musza wyjsc przed zamknieciem gniazda
+                inFlight.acquireUninterruptibly(MAX_IN_FLIGHT);
+                if (pipeline != null) {
+                    pipeline.shutdown();
+                }
+                LogPolicy.record(LogPolicy.CONNECTION, false, incoming.getInetAddress() + "/" + "CLOSED CONNECTION", null);
                 
                 
-                removeFromList(this);
+                ClientRegistry.unregister(this);
                 incoming.close();
             }
         }
@@ -115,11 +368,108 @@ public class ClientThread implements Runnable {
         {  
             e.printStackTrace();
         }
+        finally
+        {
+            long lifetime = System.nanoTime() - openedAt;
+            ServerMetrics.CLOSED.inc();
+            ServerMetrics.LIFETIME.record(lifetime);
+            ConnectionClosedEvent.emit(incoming.getInetAddress(), "thread", lifetime);
+        }
     }
     
-    private static ArrayList<ClientThread> clientList = new ArrayList<>();
+    /**
+     * Czytnik linii, który przeżywa upływ SO_TIMEOUT - niepełna linia zostaje
+     * w buforze, a odczyt można ponowić (Scanner po wyjątku przestaje czytać).
+     */
+    private static class LineReader
+    {
+        LineReader(InputStream in)
+        {
+            this.in = in;
+            this.lastRead = System.nanoTime();
+        }
+
+        /**
+         *
+         * @return Zwraca kolejną linię bez znaku końca linii albo null na końcu strumienia
+         * @throws SocketTimeoutException gdy w czasie SO_TIMEOUT nic nie przyszło - można czytać dalej
+         * @throws IOException
+         */
+        String readLine() throws IOException
+        {
+            while (true) {
+                for (int i = scanned; i < end; i++) {
+                    if (buffer[i] == '\n') {
+                        int length = i - start;
+                        if (length > 0 && buffer[i - 1] == '\r') {
+                            length--;
+                        }
+                        String line = new String(buffer, start, length, CHARSET);
+                        start = i + 1;
+                        scanned = start;
+                        return line;
+                    }
+                }
+                scanned = end;
+                if (end == buffer.length) {
+                    if (end - start >= MAX_LINE) {
+                        throw new IOException("Za dluga linia");
+                    }
+                    byte[] bigger = start > 0 ? buffer : new byte[Math.min(MAX_LINE, buffer.length * 2)];
+                    System.arraycopy(buffer, start, bigger, 0, end - start);
+                    buffer = bigger;
+                    end -= start;
+                    scanned = end;
+                    start = 0;
+                }
+                int read = in.read(buffer, end, buffer.length - end);
+                if (read < 0) {
+                    if (start == end) {
+                        return null;
+                    }
+                    //ostatnia linia bez znaku konca linii - jak w Scanner
+                    String line = new String(buffer, start, end - start, CHARSET);
+                    start = end;
+                    scanned = end;
+                    return line;
+                }
+                end += read;
+                lastRead = System.nanoTime();
+            }
+        }
+
+        private final InputStream in;
+        private byte[] buffer = new byte[INITIAL_LINE];
+        private int start;
+        private int scanned;
+        private int end;
+        //chwila ostatnich odebranych bajtow (readtimeoutms)
+        private long lastRead;
+
+        private static final Charset CHARSET = Charset.defaultCharset();
+        private static final int INITIAL_LINE = 1024;
+        private static final int MAX_LINE = 64 * 1024;
+    }
+
+    private static volatile int pipelineThreads = Runtime.getRuntime().availableProcessors();
+    private static final AtomicInteger pipelineThreadCount = new AtomicInteger();
+    private static final long PIPELINE_KEEP_ALIVE_SECONDS = 30;
+    private static final int NOTICE_TICK_MS = 200;
+    private static final int MAX_IN_FLIGHT = 256;
+    private static final long MAX_NOTICE_BYTES = 256 * 1024;
+    private static volatile int readTimeout;
+    
+    private final Semaphore inFlight = new Semaphore(MAX_IN_FLIGHT);
+    private ExecutorService pipeline;
     
-    private Scanner in;
     private PrintWriter out;
+    private volatile OutputStream sink;
     private Socket incoming;
+    //chroni przeplatanie linii z out i z kolejki notices (nie monitor - nie przypina watku wirtualnego)
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final ConcurrentLinkedQueue<byte[]> notices = new ConcurrentLinkedQueue<>();
+    private final AtomicLong noticeBytes = new AtomicLong();
+    private volatile long lastActive;
+    private volatile boolean busy;
+    private volatile boolean reaped;
 }
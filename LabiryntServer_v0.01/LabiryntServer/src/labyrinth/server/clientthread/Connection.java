@@ -0,0 +1,59 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package labyrinth.server.clientthread;
+
+import java.net.InetAddress;
+
+/**
+ * Interfejs reprezentujący połączenie z klientem, niezależnie od warstwy,
+ * która je obsługuje (wątek na połączenie lub pętla zdarzeń NIO).
+ * @author informatyka
+ */
+public interface Connection {
+
+    /**
+     *
+     * @param what parametr określający co ma być wysłane do klienta
+     */
+    void broadcast(String what);
+
+    /**
+     * Dokłada gotową linię do wysłania bez czekania - tablica jest wspólna
+     * dla wielu połączeń (ClientRegistry.broadcast) i nie może być zmieniana.
+     *
+     * @param line Parametr zawierający bajty linii razem ze znakiem nowej linii
+     * @return Zwraca false, jeżeli połączenie jest zamknięte albo ma pełną kolejkę
+     */
+    boolean offer(byte[] line);
+
+    /**
+     * Wysyła wszystkie linie źródła w tempie, w jakim klient je odbiera -
+     * kolejna linia jest tworzona dopiero, gdy poprzednia prawie wyszła,
+     * więc długa odpowiedź (np. pasy /getMazeRows) nie leży w pamięci w całości.
+     * Odpowiedź polecenia, które wywołało stream, wychodzi po ostatniej linii źródła.
+     *
+     * @param source Parametr określający źródło kolejnych linii
+     */
+    void stream(Source source);
+
+    /**
+     *
+     * @return Zwraca adres klienta
+     */
+    InetAddress getInetAddress();
+
+    /**
+     * Źródło linii tworzonych na żądanie połączenia.
+     */
+    interface Source {
+
+        /**
+         *
+         * @return Zwraca kolejną linię albo null, gdy źródło się skończyło
+         */
+        String next();
+    }
+}
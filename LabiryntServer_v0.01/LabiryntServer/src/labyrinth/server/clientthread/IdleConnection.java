@@ -0,0 +1,38 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package labyrinth.server.clientthread;
+
+/**
+ * Interfejs połączenia nadzorowanego przez IdleSweeper - połączenie,
+ * od którego zbyt długo nie przyszła żadna linia i które nie obsługuje
+ * żadnego polecenia, jest zamykane.
+ * @author informatyka
+ */
+public interface IdleConnection {
+
+    /**
+     *
+     * @return Zwraca chwilę odczytania ostatniej linii (System.nanoTime())
+     */
+    long getLastActive();
+
+    /**
+     *
+     * @return Zwraca true, jeżeli połączenie obsługuje właśnie jakieś polecenie
+     */
+    boolean isBusy();
+
+    /**
+     *
+     * @return Zwraca true, jeżeli połączenie jest już zamknięte
+     */
+    boolean isClosed();
+
+    /**
+     * Zamyka bezczynne połączenie. Wywoływane w wątku IdleSweeper - nie może blokować.
+     */
+    void reap();
+}
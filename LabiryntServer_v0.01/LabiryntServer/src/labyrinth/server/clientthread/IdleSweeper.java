@@ -0,0 +1,117 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package labyrinth.server.clientthread;
+
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Klasa reprezentująca jeden wątek zamykający bezczynne połączenia obu
+ * warstw połączeń. Połączenia leżą w kole czasowym (timer wheel): każde
+ * trafia do przegródki z chwilą, w której najwcześniej może stać się
+ * bezczynne, a wątek co takt sprawdza tylko bieżącą przegródkę.
+ * Aktywność połączenia to jedynie zapis czasu ostatniej linii - połączenie
+ * nie jest przekładane przy każdej linii, tylko przy sprawdzeniu, więc
+ * koszt jest stały niezależnie od liczby poleceń.
+ * @author informatyka
+ */
+public class IdleSweeper {
+
+    private IdleSweeper()
+    {
+    }
+
+    /**
+     * Uruchamia wątek (kolejne wywołania nic nie robią).
+     *
+     * @param idleMillis Parametr określający czas bezczynności w milisekundach, po którym połączenie jest zamykane
+     */
+    public static synchronized void start(long idleMillis)
+    {
+        if (thread != null || idleMillis <= 0) {
+            return;
+        }
+        idleNanos = TimeUnit.MILLISECONDS.toNanos(idleMillis);
+        //pelny obrot kola to co najmniej dwa czasy bezczynnosci - polaczenie trafia do przegrodki w pierwszym obrocie
+        tickNanos = Math.max(TimeUnit.MILLISECONDS.toNanos(10), idleNanos * 2 / SLOTS);
+        for (int i = 0; i < SLOTS; i++) {
+            wheel[i] = new ArrayList<>();
+        }
+        thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                sweep();
+            }
+        }, "idle-sweeper");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Obejmuje połączenie nadzorem (bez uruchomionego wątku nic nie robi).
+     *
+     * @param connection Parametr określający połączenie
+     */
+    public static void register(IdleConnection connection)
+    {
+        if (thread != null) {
+            incoming.add(connection);
+        }
+    }
+
+    private static void sweep()
+    {
+        long done = System.nanoTime() / tickNanos;
+        ArrayList<IdleConnection> spare = new ArrayList<>();
+        while (true) {
+            LockSupport.parkNanos(tickNanos);
+            long now = System.nanoTime();
+            IdleConnection added;
+            while ((added = incoming.poll()) != null) {
+                schedule(added, added.getLastActive() + idleNanos, done);
+            }
+            long current = now / tickNanos;
+            while (done < current) {
+                done++;
+                int slot = (int) (done & (SLOTS - 1));
+                ArrayList<IdleConnection> due = wheel[slot];
+                wheel[slot] = spare;
+                for (IdleConnection connection : due) {
+                    if (connection.isClosed()) {
+                        continue;
+                    }
+                    long deadline = connection.getLastActive() + idleNanos;
+                    if (connection.isBusy()) {
+                        schedule(connection, now + idleNanos, done);
+                    } else if (now - deadline >= 0) {
+                        connection.reap();
+                    } else {
+                        schedule(connection, deadline, done);
+                    }
+                }
+                due.clear();
+                spare = due;
+            }
+        }
+    }
+
+    private static void schedule(IdleConnection connection, long deadline, long done)
+    {
+        long tick = Math.max(done + 1, deadline / tickNanos + 1);
+        wheel[(int) (tick & (SLOTS - 1))].add(connection);
+    }
+
+    private static final int SLOTS = 256;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static final ArrayList<IdleConnection>[] wheel = new ArrayList[SLOTS];
+    private static final ConcurrentLinkedQueue<IdleConnection> incoming = new ConcurrentLinkedQueue<>();
+    private static volatile Thread thread;
+    private static long idleNanos;
+    private static long tickNanos;
+}
@@ -42,6 +42,36 @@ public class Configuration {
                 logging = Boolean.parseBoolean(e.getElementsByTagName("logging").item(0).getTextContent());
                 port = Integer.parseInt(e.getElementsByTagName("port").item(0).getTextContent());
                 logpath = e.getElementsByTagName("logpath").item(0).getTextContent();
+                logBuffer = Integer.parseInt(optional(e, "logbuffer", "8192"));
+                logOverflow = optional(e, "logoverflow", "block");
+                logLevelServer = optional(e, "loglevelserver", "info");
+                logLevelConnection = optional(e, "loglevelconnection", "info");
+                logLevelRequest = optional(e, "loglevelrequest", "info");
+                logLevelResponse = optional(e, "loglevelresponse", "info");
+                logMaxPayload = Integer.parseInt(optional(e, "logmaxpayload", "256"));
+                logSample = Integer.parseInt(optional(e, "logsample", "1"));
+                consoleEcho = Boolean.parseBoolean(optional(e, "consoleecho", "true"));
+                mazeCacheBytes = Long.parseLong(optional(e, "mazecachebytes", "67108864"));
+                poolMazes = Integer.parseInt(optional(e, "poolmazes", "0"));
+                poolThreads = Integer.parseInt(optional(e, "poolthreads", "1"));
+                poolMaxCells = Long.parseLong(optional(e, "poolmaxcells", "1000000"));
+                batchThreads = Integer.parseInt(optional(e, "batchthreads", String.valueOf(Runtime.getRuntime().availableProcessors())));
+                batchMax = Integer.parseInt(optional(e, "batchmax", "1000"));
+                batchBudgetBytes = Long.parseLong(optional(e, "batchbudgetbytes", "67108864"));
+                mazeAlgorithm = optional(e, "mazealgorithm", "backtracker");
+                mazeMaxBytes = Long.parseLong(optional(e, "mazemaxbytes", "268435456"));
+                mazeBudgetBytes = Long.parseLong(optional(e, "mazebudgetbytes", String.valueOf(mazeMaxBytes)));
+                connector = optional(e, "connector", "thread");
+                connectorThreads = Integer.parseInt(optional(e, "connectorthreads", "200"));
+                connectorQueue = Integer.parseInt(optional(e, "connectorqueue", "1000"));
+                pipelineWorkers = Integer.parseInt(optional(e, "pipelineworkers", String.valueOf(Runtime.getRuntime().availableProcessors())));
+                nioLoops = Integer.parseInt(optional(e, "nioloops", "2"));
+                nioWorkers = Integer.parseInt(optional(e, "nioworkers", String.valueOf(Runtime.getRuntime().availableProcessors())));
+                metricsPort = Integer.parseInt(optional(e, "metricsport", "0"));
+                slowLogPath = optional(e, "slowlogpath", "./slowlog");
+                slowLogMillis = Long.parseLong(optional(e, "slowlogms", "0"));
+                idleTimeoutMillis = Long.parseLong(optional(e, "idletimeoutms", "0"));
+                readTimeoutMillis = Integer.parseInt(optional(e, "readtimeoutms", "0"));
                 
             }
         } catch (Exception ex) {
@@ -51,6 +81,22 @@ public class Configuration {
         
     }
 
+    /**
+     *
+     * @param e Element konfiguracji serwera
+     * @param tag Nazwa opcjonalnego ustawienia
+     * @param def Wartość domyślna, gdy ustawienia nie ma w konfiguracji
+     * @return Zwraca wartość ustawienia lub wartość domyślną
+     */
+    private static String optional(Element e, String tag, String def)
+    {
+        NodeList nodes = e.getElementsByTagName(tag);
+        if (nodes.getLength() == 0) {
+            return def;
+        }
+        return nodes.item(0).getTextContent().trim();
+    }
+
     /**
      *
      * @return Zwraca port odczytany z konfiguracji
@@ -67,6 +113,87 @@ public class Configuration {
         return logpath;
     }
     
+    /**
+     *
+     * @return Zwraca pojemność bufora wpisów logu
+     */
+    public static int getLogBuffer()
+    {
+        return logBuffer;
+    }
+
+    /**
+     *
+     * @return Zwraca politykę przepełnienia bufora logu ("block", "drop" lub "count")
+     */
+    public static String getLogOverflow()
+    {
+        return logOverflow;
+    }
+
+    /**
+     *
+     * @return Zwraca poziom logowania zdarzeń serwera ("off", "error" lub "info")
+     */
+    public static String getLogLevelServer()
+    {
+        return logLevelServer;
+    }
+
+    /**
+     *
+     * @return Zwraca poziom logowania połączeń ("off", "error" lub "info")
+     */
+    public static String getLogLevelConnection()
+    {
+        return logLevelConnection;
+    }
+
+    /**
+     *
+     * @return Zwraca poziom logowania poleceń klientów ("off", "error" lub "info")
+     */
+    public static String getLogLevelRequest()
+    {
+        return logLevelRequest;
+    }
+
+    /**
+     *
+     * @return Zwraca poziom logowania odpowiedzi serwera ("off", "error" lub "info")
+     */
+    public static String getLogLevelResponse()
+    {
+        return logLevelResponse;
+    }
+
+    /**
+     *
+     * @return Zwraca liczbę znaków treści zapisywanych w logu (ujemna - bez limitu)
+     */
+    public static int getLogMaxPayload()
+    {
+        return logMaxPayload;
+    }
+
+    /**
+     *
+     * @return Zwraca co które udane zapytanie jest logowane
+     */
+    public static int getLogSample()
+    {
+        return logSample;
+    }
+
+    /**
+     *
+     * @return Zwraca true jeśli wpisy logu są wypisywane na konsolę
+     */
+    public static boolean isConsoleEcho()
+    {
+        return consoleEcho;
+    }
+
     /**
      *
      * @return Zwraca true jeśli aktualnie jeżeli serwer loguje do pliku
@@ -76,9 +203,227 @@ public class Configuration {
         return logging;
     }
     
+    /**
+     *
+     * @return Zwraca maksymalny rozmiar pamięci podręcznej labiryntów w bajtach
+     */
+    public static long getMazeCacheBytes()
+    {
+        return mazeCacheBytes;
+    }
+
+    /**
+     *
+     * @return Zwraca łączną liczbę labiryntów generowanych z wyprzedzeniem (0 - pula wyłączona)
+     */
+    public static int getPoolMazes()
+    {
+        return poolMazes;
+    }
+
+    /**
+     *
+     * @return Zwraca liczbę wątków uzupełniających pulę labiryntów
+     */
+    public static int getPoolThreads()
+    {
+        return poolThreads;
+    }
+
+    /**
+     *
+     * @return Zwraca największą liczbę pól labiryntu trzymanego w puli
+     */
+    public static long getPoolMaxCells()
+    {
+        return poolMaxCells;
+    }
+
+    /**
+     *
+     * @return Zwraca liczbę wątków generujących partie labiryntów
+     */
+    public static int getBatchThreads()
+    {
+        return batchThreads;
+    }
+
+    /**
+     *
+     * @return Zwraca największą liczbę labiryntów w jednej partii
+     */
+    public static int getBatchMax()
+    {
+        return batchMax;
+    }
+
+    /**
+     *
+     * @return Zwraca łączną szacowaną pamięć (w bajtach) labiryntów generowanych jednocześnie przez wszystkie partie
+     */
+    public static long getBatchBudgetBytes()
+    {
+        return batchBudgetBytes;
+    }
+
+    /**
+     *
+     * @return Zwraca nazwę generatora labiryntów używanego, gdy klient go nie wskazał
+     */
+    public static String getMazeAlgorithm()
+    {
+        return mazeAlgorithm;
+    }
+
+    /**
+     *
+     * @return Zwraca limit szacowanej pamięci generowania jednego labiryntu w bajtach
+     */
+    public static long getMazeMaxBytes()
+    {
+        return mazeMaxBytes;
+    }
+
+    /**
+     *
+     * @return Zwraca limit łącznej szacowanej pamięci labiryntów generowanych jednocześnie w bajtach
+     */
+    public static long getMazeBudgetBytes()
+    {
+        return mazeBudgetBytes;
+    }
+
+    /**
+     *
+     * @return Zwraca rodzaj warstwy połączeń ("thread", "pool", "virtual" lub "nio")
+     */
+    public static String getConnector()
+    {
+        return connector;
+    }
+
+    /**
+     *
+     * @return Zwraca liczbę wątków obsługujących klientów w trybie "pool"
+     */
+    public static int getConnectorThreads()
+    {
+        return connectorThreads;
+    }
+
+    /**
+     *
+     * @return Zwraca długość kolejki połączeń czekających na wątek w trybie "pool"
+     */
+    public static int getConnectorQueue()
+    {
+        return connectorQueue;
+    }
+
+    /**
+     *
+     * @return Zwraca liczbę wątków, w których jedno połączenie wykonuje oznaczone polecenia (poza trybem NIO)
+     */
+    public static int getPipelineWorkers()
+    {
+        return pipelineWorkers;
+    }
+
+    /**
+     *
+     * @return Zwraca liczbę wątków pętli zdarzeń NIO
+     */
+    public static int getNioLoops()
+    {
+        return nioLoops;
+    }
+
+    /**
+     *
+     * @return Zwraca liczbę wątków roboczych przetwarzających polecenia w trybie NIO
+     */
+    public static int getNioWorkers()
+    {
+        return nioWorkers;
+    }
+
+    /**
+     *
+     * @return Zwraca lokalny port punktu /metrics w formacie Prometheusa (0 - wyłączony)
+     */
+    public static int getMetricsPort()
+    {
+        return metricsPort;
+    }
+
+    /**
+     *
+     * @return Zwraca ścieżkę dziennika wolnych poleceń
+     */
+    public static String getSlowLogPath()
+    {
+        return slowLogPath;
+    }
+
+    /**
+     *
+     * @return Zwraca próg czasu polecenia w milisekundach, od którego trafia ono do dziennika wolnych poleceń (0 - dziennik wyłączony)
+     */
+    public static long getSlowLogMillis()
+    {
+        return slowLogMillis;
+    }
+
+    /**
+     *
+     * @return Zwraca czas bezczynności w milisekundach, po którym połączenie jest zamykane (0 - bez limitu)
+     */
+    public static long getIdleTimeoutMillis()
+    {
+        return idleTimeoutMillis;
+    }
+
+    /**
+     *
+     * @return Zwraca czas oczekiwania na dane z gniazda w milisekundach dla konektora wątkowego (0 - bez limitu)
+     */
+    public static int getReadTimeoutMillis()
+    {
+        return readTimeoutMillis;
+    }
 
     
     private static boolean logging;
     private static int port;
     private static String logpath;
+    private static int logBuffer;
+    private static String logOverflow;
+    private static String logLevelServer;
+    private static String logLevelConnection;
+    private static String logLevelRequest;
+    private static String logLevelResponse;
+    private static int logMaxPayload;
+    private static int logSample;
+    private static boolean consoleEcho;
+    private static long mazeCacheBytes;
+    private static int poolMazes;
+    private static int poolThreads;
+    private static long poolMaxCells;
+    private static int batchThreads;
+    private static int batchMax;
+    private static long batchBudgetBytes;
+    private static String mazeAlgorithm;
+    private static long mazeMaxBytes;
+    private static long mazeBudgetBytes;
+    private static String connector;
+    private static int connectorThreads;
+    private static int connectorQueue;
+    private static int pipelineWorkers;
+    private static int nioLoops;
+    private static int nioWorkers;
+    private static int metricsPort;
+    private static String slowLogPath;
+    private static long slowLogMillis;
+    private static long idleTimeoutMillis;
+    private static int readTimeoutMillis;
 }
@@ -0,0 +1,143 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package labyrinth.server.console;
+
+/**
+ * Klasa reprezentująca argumenty polecenia odczytywane wprost z linii.
+ * Liczby są parsowane znak po znaku od bieżącej pozycji, bez dzielenia
+ * linii na tablicę napisów.
+ * @author informatyka
+ */
+public class CommandArgs {
+
+    /**
+     *
+     * @param line Parametr zawierający całą linię polecenia
+     * @param position Parametr określający indeks, od którego zaczynają się argumenty
+     */
+    public CommandArgs(String line, int position)
+    {
+        this.line = line;
+        this.position = position;
+    }
+
+    /**
+     *
+     * @return Zwraca true, jeżeli w linii jest jeszcze jakiś argument
+     */
+    public boolean hasNext()
+    {
+        skipSpaces();
+        return position < line.length();
+    }
+
+    /**
+     *
+     * @return Zwraca true, jeżeli kolejny argument zaczyna się jak liczba (argument nie jest zużywany)
+     */
+    public boolean hasNextNumber()
+    {
+        if (!hasNext()) {
+            return false;
+        }
+        int i = position;
+        char c = line.charAt(i);
+        if ((c == '-' || c == '+') && i + 1 < line.length()) {
+            c = line.charAt(i + 1);
+        }
+        return c >= '0' && c <= '9';
+    }
+
+    /**
+     *
+     * @return Zwraca kolejny argument jako liczbę int
+     * @throws NumberFormatException gdy argumentu brak lub nie jest liczbą int
+     */
+    public int nextInt()
+    {
+        long value = nextLong();
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            throw new NumberFormatException("Liczba poza zakresem int: " + value);
+        }
+        return (int) value;
+    }
+
+    /**
+     * Wartość jest liczona ujemnie (jak w Long.parseLong), żeby zmieścić
+     * Long.MIN_VALUE i wykryć przepełnienie bez dzielenia.
+     *
+     * @return Zwraca kolejny argument jako liczbę long
+     * @throws NumberFormatException gdy argumentu brak lub nie jest liczbą long
+     */
+    public long nextLong()
+    {
+        skipSpaces();
+        final int length = line.length();
+        final int start = position;
+        int i = position;
+        boolean negative = false;
+        if (i < length && (line.charAt(i) == '-' || line.charAt(i) == '+')) {
+            negative = line.charAt(i) == '-';
+            i++;
+        }
+        final long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+        final long multmin = limit / 10;
+        long result = 0;
+        int digits = 0;
+        for (; i < length && line.charAt(i) != ' '; i++, digits++) {
+            int digit = line.charAt(i) - '0';
+            if (digit < 0 || digit > 9 || result < multmin) {
+                throw badNumber(start);
+            }
+            result *= 10;
+            if (result < limit + digit) {
+                throw badNumber(start);
+            }
+            result -= digit;
+        }
+        if (digits == 0) {
+            throw badNumber(start);
+        }
+        position = i;
+        return negative ? result : -result;
+    }
+
+    /**
+     *
+     * @return Zwraca kolejny argument jako napis
+     * @throws IllegalArgumentException gdy argumentu brak
+     */
+    public String next()
+    {
+        skipSpaces();
+        int start = position;
+        int end = line.indexOf(' ', start);
+        if (end < 0) {
+            end = line.length();
+        }
+        if (start == end) {
+            throw new IllegalArgumentException("Brak argumentu");
+        }
+        position = end;
+        return line.substring(start, end);
+    }
+
+    private void skipSpaces()
+    {
+        while (position < line.length() && line.charAt(position) == ' ') {
+            position++;
+        }
+    }
+
+    private NumberFormatException badNumber(int start)
+    {
+        int end = line.indexOf(' ', start);
+        return new NumberFormatException("Niepoprawna liczba: " + line.substring(start, end < 0 ? line.length() : end));
+    }
+
+    private final String line;
+    private int position;
+}
@@ -0,0 +1,24 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package labyrinth.server.console;
+
+import labyrinth.server.clientthread.Connection;
+
+/**
+ * Interfejs reprezentujący obsługę jednego polecenia konsoli serwera.
+ * @author informatyka
+ */
+public interface CommandHandler {
+
+    /**
+     *
+     * @param args Parametr zawierający argumenty polecenia (bez nazwy polecenia)
+     * @param client Parametr w którym określamy wysyłającego to polecenie
+     * @return Zwraca odpowiedź dla klienta
+     * @throws Exception gdy argumenty są niepoprawne lub polecenia nie da się wykonać - klient dostaje wtedy "ERROR"
+     */
+    String handle(CommandArgs args, Connection client) throws Exception;
+}
@@ -0,0 +1,200 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package labyrinth.server.console;
+
+import labyrinth.server.clientthread.Connection;
+import labyrinth.server.metrics.Counter;
+import labyrinth.server.metrics.Histogram;
+import labyrinth.server.metrics.Metrics;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Klasa reprezentująca tablicę poleceń konsoli serwera.
+ * Polecenie jest wyszukiwane po nazwie (pierwszym słowie linii) w mapie,
+ * a każde ma własne liczniki wywołań, błędów i histogram czasu obsługi
+ * w rejestrze Metrics (z etykietą command="nazwa").
+ * @author informatyka
+ */
+public class CommandRegistry {
+
+    /**
+     * Odpowiedź na polecenie, którego obsługa zgłosiła wyjątek.
+     */
+    public static final String ERROR = "ERROR";
+
+    /**
+     * Odpowiedź na nieznane polecenie.
+     */
+    public static final String UNKNOWN = "COMMAND ERROR";
+
+    /**
+     *
+     * @param name Parametr określający nazwę polecenia, np. "/getMaze"
+     * @param handler Parametr określający obsługę polecenia
+     */
+    public void register(String name, CommandHandler handler)
+    {
+        commands.put(name, new Command(name, handler));
+    }
+
+    /**
+     * Wykonuje polecenie z linii i mierzy czas jego obsługi.
+     *
+     * @param line Parametr zawierający linię polecenia
+     * @param client Parametr w którym określamy wysyłającego to polecenie
+     * @return Zwraca odpowiedź dla klienta
+     */
+    public String dispatch(String line, Connection client)
+    {
+        int start = 0;
+        while (start < line.length() && line.charAt(start) == ' ') {
+            start++;
+        }
+        int end = line.indexOf(' ', start);
+        if (end < 0) {
+            end = line.length();
+        }
+        Command command = commands.get(line.substring(start, end));
+        if (command == null) {
+            unknown.inc();
+            return UNKNOWN;
+        }
+
+        long begin = System.nanoTime();
+        String response;
+        boolean failed = false;
+        try {
+            response = command.handler.handle(new CommandArgs(line, end), client);
+        } catch (Exception e) {
+            response = ERROR;
+            failed = true;
+        }
+        command.record(System.nanoTime() - begin, failed);
+        return response;
+    }
+
+    /**
+     *
+     * @param response Parametr zawierający odpowiedź zwróconą przez dispatch
+     * @return Zwraca true, jeżeli odpowiedź oznacza błąd
+     */
+    public static boolean isError(String response)
+    {
+        return ERROR.equals(response) || UNKNOWN.equals(response);
+    }
+
+    /**
+     *
+     * @return Zwraca zarejestrowane polecenia
+     */
+    public Collection<Command> getCommands()
+    {
+        return Collections.unmodifiableCollection(commands.values());
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder sb = new StringBuilder();
+        for (Command command : commands.values()) {
+            sb.append(command).append("; ");
+        }
+        sb.append("unknown=").append(unknown.get());
+        return sb.toString();
+    }
+
+    /**
+     * Klasa reprezentująca zarejestrowane polecenie wraz z jego statystykami.
+     */
+    public static class Command
+    {
+        Command(String name, CommandHandler handler)
+        {
+            this.name = name;
+            this.handler = handler;
+            String labels = "command=\"" + name + "\"";
+            this.calls = Metrics.counter("labyrinth_commands_total", labels, "Wykonane polecenia");
+            this.errors = Metrics.counter("labyrinth_command_errors_total", labels, "Polecenia zakonczone bledem");
+            this.time = Metrics.histogram("labyrinth_command_seconds", labels, "Czas obslugi polecenia");
+        }
+
+        private void record(long nanos, boolean failed)
+        {
+            calls.inc();
+            if (failed) {
+                errors.inc();
+            }
+            time.record(nanos);
+        }
+
+        /**
+         *
+         * @return Zwraca nazwę polecenia
+         */
+        public String getName()
+        {
+            return name;
+        }
+
+        /**
+         *
+         * @return Zwraca liczbę wywołań polecenia
+         */
+        public long getCalls()
+        {
+            return calls.get();
+        }
+
+        /**
+         *
+         * @return Zwraca liczbę wywołań zakończonych błędem
+         */
+        public long getErrors()
+        {
+            return errors.get();
+        }
+
+        /**
+         *
+         * @return Zwraca łączny czas obsługi polecenia w nanosekundach
+         */
+        public long getTotalNanos()
+        {
+            return time.getSum();
+        }
+
+        /**
+         *
+         * @return Zwraca najdłuższy czas obsługi polecenia w nanosekundach
+         */
+        public long getMaxNanos()
+        {
+            return time.getMax();
+        }
+
+        @Override
+        public String toString()
+        {
+            long n = calls.get();
+            return name + " calls=" + n + " errors=" + errors.get()
+                    + " avgUs=" + (n == 0 ? 0 : time.getSum() / n / 1000)
+                    + " p99Us=" + time.percentile(99) / 1000
+                    + " maxUs=" + time.getMax() / 1000;
+        }
+
+        private final String name;
+        private final CommandHandler handler;
+        private final Counter calls;
+        private final Counter errors;
+        private final Histogram time;
+    }
+
+    private final Map<String, Command> commands = new ConcurrentHashMap<>();
+    private final Counter unknown = Metrics.counter("labyrinth_commands_unknown_total", null, "Nieznane polecenia");
+}
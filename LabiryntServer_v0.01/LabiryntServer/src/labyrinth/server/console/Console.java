@@ -5,14 +5,30 @@
  */
 package labyrinth.server.console;
 
+import labyrinth.server.maze.GridMaze;
 import labyrinth.server.maze.LabUtils;
+import labyrinth.server.maze.MazeBatch;
+import labyrinth.server.maze.MazeGenerator;
+import labyrinth.server.maze.MazeGeneratorRegistry;
+import labyrinth.server.maze.MazeGrid;
+import labyrinth.server.maze.MazeRows;
+import labyrinth.server.metrics.Metrics;
+import labyrinth.server.trace.EncodeEvent;
+import labyrinth.server.trace.GenerateEvent;
+import labyrinth.server.trace.LogEvent;
+import labyrinth.server.trace.ParseEvent;
+import labyrinth.server.trace.RequestEvent;
+import labyrinth.server.trace.RequestTrace;
+import labyrinth.server.serialization.MazeCodec;
 import labyrinth.server.serialization.Serializator;
-import labyrinth.server.clientthread.ClientThread;
+import labyrinth.server.clientthread.ClientRegistry;
+import labyrinth.server.clientthread.Connection;
+import labyrinth.server.server.ConnectionExecutor;
 import java.io.IOException;
+import java.net.InetAddress;
 import java.sql.SQLException;
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
-import java.util.Calendar;
+import java.util.concurrent.ThreadLocalRandom;
 import labyrinth.server.serialization.Coord;
 
 /**
@@ -27,47 +43,424 @@ public class Console {
      */
     public static String getCurrentDate()
     {
-        Calendar currentDate = Calendar.getInstance();
-        SimpleDateFormat formatter= new SimpleDateFormat("yyyy/MMM/dd HH:mm:ss"); 
-        String dateNow = formatter.format(currentDate.getTime());
-        
-        return dateNow;
+        return DATE_FORMATTER.format(System.currentTimeMillis());
     }
+
+    /**
+     * Wzorzec daty używany w konsoli i w logach.
+     */
+    public static final String DATE_PATTERN = "yyyy/MMM/dd HH:mm:ss";
+
+    private static final TimestampFormatter DATE_FORMATTER = new TimestampFormatter(DATE_PATTERN);
             
     /**
+     *
+     * @return Zwraca tablicę poleceń konsoli
+     */
+    public static CommandRegistry getCommands()
+    {
+        return COMMANDS;
+    }
+
+    /**
+     *
+     * @param what Parametr w którym określamy jakie polecenie chcemy rozpoznać
+     * @param client Parametr w którym określamy wysyłającego to polecenie
+     * @throws IOException
+     * @throws SQLException
+     */
+    public static void checkAndDo(String what, Connection client) throws IOException, SQLException
+    {
+        checkAndDo(what, client, System.nanoTime());
+    }
+
+    /**
+     * Polecenie, którego obsługa (razem z czekaniem w kolejce) przekroczyła
+     * próg, trafia do dziennika wolnych poleceń (SlowLog).
      *
      * @param what Parametr w którym określamy jakie polecenie chcemy rozpoznać
      * @param client Parametr w którym określamy wysyłającego to polecenie
+     * @param receivedNanos Parametr określający chwilę odczytania linii (System.nanoTime())
      * @throws IOException
      * @throws SQLException
      */
-    public static void checkAndDo(String what, ClientThread client) throws IOException, SQLException
+    public static void checkAndDo(String what, Connection client, long receivedNanos) throws IOException, SQLException
     {
-        String response;
-        if(what.startsWith("/getLabirynt"))
+        long begin = System.nanoTime();
+        RequestTrace trace = RequestTrace.begin(client.getInetAddress(), what);
+        RequestEvent request = new RequestEvent();
+        request.start();
+        boolean error = false;
+        try
         {
-            String[] splitted = what.split(" ");
-            try {
-                int x = Integer.parseInt(splitted[1]);
-                int y = Integer.parseInt(splitted[2]);
-                ArrayList<Coord> lab = LabUtils.genLab(x, y);
-                response = Serializator.toString(lab.toArray(new Coord[lab.size()]));
+            ParseEvent parse = new ParseEvent();
+            parse.start();
+            String tag = "";
+            String command = what;
+            if(isTagged(what))
+            {
+                int space = what.indexOf(' ');
+                tag = (space < 0 ? what : what.substring(0, space)) + " ";
+                command = space < 0 ? "" : what.substring(space + 1);
             }
-            catch(Exception e)
+            parse.finish();
+            String response = COMMANDS.dispatch(command, tag.isEmpty() ? client : new TaggedConnection(tag, client));
+            client.broadcast(tag.isEmpty() ? response : tag + response);
+            error = CommandRegistry.isError(response);
+            if(error || LogPolicy.sampled())
             {
-                response = "ERROR";
+                LogEvent log = new LogEvent();
+                log.start();
+                LogPolicy.record(LogPolicy.REQUEST, error, client.getInetAddress() + " -> Server : ", what);
+                LogPolicy.record(LogPolicy.RESPONSE, error, "SERVER -> " + client.getInetAddress() + " : " + tag, response);
+                log.finish();
             }
-            client.broadcast(response);
-            
         }
-        else
+        finally
+        {
+            request.finish(error);
+            long total = System.nanoTime() - receivedNanos;
+            if(SlowLog.isSlow(total))
+            {
+                SlowLog.record(trace, begin - receivedNanos, total);
+            }
+            trace.end();
+        }
+    }
+
+    /**
+     * Polecenie oznaczone (np. "#17 /getLabirynt 31 31") dostaje odpowiedź
+     * z tym samym oznaczeniem ("#17 ..."), więc może być wykonane równolegle
+     * z innymi poleceniami połączenia, a odpowiedź może przyjść poza kolejnością.
+     * Polecenia bez oznaczenia są obsługiwane po kolei, jak dotychczas.
+     *
+     * @param what Parametr zawierający linię polecenia
+     * @return Zwraca true, jeżeli polecenie ma oznaczenie
+     */
+    public static boolean isTagged(String what)
+    {
+        return what.startsWith("#");
+    }
+
+    /**
+     * Rozpoznaje "/QUIT" także z oznaczeniem (np. "#9 /QUIT") - połączenie
+     * kończy się po odpowiedziach na wcześniejsze polecenia.
+     *
+     * @param what Parametr zawierający linię polecenia
+     * @return Zwraca true, jeżeli linia kończy połączenie
+     */
+    public static boolean isQuit(String what)
+    {
+        String command = what.trim();
+        if (isTagged(command)) {
+            int space = command.indexOf(' ');
+            command = space < 0 ? "" : command.substring(space + 1).trim();
+        }
+        return command.equals("/QUIT");
+    }
+
+    /**
+     * Połączenie doklejające oznaczenie polecenia do każdej linii, którą
+     * obsługa polecenia wysyła sama (np. kolejne labirynty partii).
+     */
+    private static class TaggedConnection implements Connection
+    {
+        TaggedConnection(String tag, Connection client)
+        {
+            this.tag = tag;
+            this.client = client;
+        }
+
+        @Override
+        public void broadcast(String what)
+        {
+            client.broadcast(tag + what);
+        }
+
+        @Override
+        public boolean offer(byte[] line)
+        {
+            return client.offer(line);
+        }
+
+        @Override
+        public void stream(final Source source)
+        {
+            client.stream(new Source() {
+                @Override
+                public String next() {
+                    String line = source.next();
+                    return line == null ? null : tag + line;
+                }
+            });
+        }
+
+        @Override
+        public InetAddress getInetAddress()
+        {
+            return client.getInetAddress();
+        }
+
+        private final String tag;
+        private final Connection client;
+    }
+
+    private static void sendRows(Connection client, MazeRows maze)
+    {
+        client.stream(new RowsSource(maze));
+    }
+
+    /**
+     * Pasy labiryntu tworzone na żądanie połączenia - najpierw nagłówek
+     * "ROWS", potem kolejne linie "BAND". Generator strumieniowy tworzy
+     * wiersze pasa dopiero przy next(), więc w pamięci jest jeden pas.
+     */
+    private static class RowsSource implements Connection.Source
+    {
+        RowsSource(MazeRows maze)
+        {
+            this.maze = maze;
+            this.band = bandRows(maze.getWidth());
+        }
+
+        @Override
+        public String next()
         {
-            response = "COMMAND ERROR";
-            client.broadcast(response);
-               
+            int width = maze.getWidth();
+            int height = maze.getHeight();
+            if (!started) {
+                started = true;
+                return rowsHeader(width, height, maze.getStart(), maze.getMeta());
+            }
+            if (row >= height) {
+                return null;
+            }
+            String line;
+            if (maze instanceof GridMaze) {
+                //gotowa siatka - pasy kodowane wprost z niej, bez kopiowania wierszy
+                int rows = Math.min(band, height - row);
+                line = "BAND " + row + " " + rows + " " + encodeRows(((GridMaze) maze).getGrid(), row, rows);
+                row += rows;
+                return line;
+            }
+            //jedyna siatka to bufor jednego pasa
+            if (buffer == null) {
+                buffer = new MazeGrid(width, Math.min(band, height));
+            }
+            GenerateEvent generate = new GenerateEvent();
+            generate.start();
+            int rows = 0;
+            while (rows < buffer.getHeight() && maze.hasNextRow()) {
+                maze.nextRow(buffer, rows++);
+            }
+            generate.finish();
+            line = "BAND " + row + " " + rows + " " + encodeRows(buffer, 0, rows);
+            row += rows;
+            return line;
         }
-        System.out.println("SERVER -> " + client.getSocket().getInetAddress() + " : " + response);
-        labyrinth.server.console.Logger.log("SERVER -> " + client.getSocket().getInetAddress() + " : " + response);
+
+        private final MazeRows maze;
+        private final int band;
+        private MazeGrid buffer;
+        private boolean started;
+        private int row;
+    }
+
+    private static String encodeRows(MazeGrid grid, int row, int rows)
+    {
+        EncodeEvent encode = new EncodeEvent();
+        encode.start();
+        String data = MazeCodec.encodeRows(grid.getWords(), grid.getWidth(), row, rows);
+        encode.payload(data.length());
+        encode.finish();
+        return data;
+    }
+
+    private static String rowsHeader(int width, int height, Coord start, Coord meta)
+    {
+        return "ROWS " + width + " " + height
+                + " " + start.getX() + " " + start.getY()
+                + " " + meta.getX() + " " + meta.getY();
+    }
+
+    private static int bandRows(int width)
+    {
+        return Math.max(1, BAND_BITS / width);
+    }
+
+    /**
+     * @return zwraca połączenie, pod którym klient jest w ClientRegistry
+     */
+    private static Connection owner(Connection client)
+    {
+        return client instanceof TaggedConnection ? ((TaggedConnection) client).client : client;
+    }
+
+    private static final CommandRegistry COMMANDS = new CommandRegistry();
+    private static final int MAX_ROOM = 64;
+    private static final int BAND_BITS = 16 * 1024 * 8;
+
+    static
+    {
+        COMMANDS.register("/getLabirynt", new CommandHandler() {
+            @Override
+            public String handle(CommandArgs args, Connection client) throws Exception {
+                int x = args.nextInt();
+                int y = args.nextInt();
+                if(args.hasNext())
+                {
+                    return LabUtils.genSerializedLab(x, y, args.nextLong());
+                }
+                ArrayList<Coord> lab = LabUtils.genLab(x, y);
+                EncodeEvent encode = new EncodeEvent();
+                encode.start();
+                String response = Serializator.toString(lab.toArray(new Coord[lab.size()]));
+                encode.payload(response.length());
+                encode.finish();
+                return response;
+            }
+        });
+        COMMANDS.register("/getMaze", new CommandHandler() {
+            /**
+             * "/getMaze w h [seed] [algorytm]" - algorytm wybierany po nazwie
+             * z MazeGeneratorRegistry (bez nazwy - domyślny).
+             */
+            @Override
+            public String handle(CommandArgs args, Connection client) throws Exception {
+                int x = args.nextInt();
+                int y = args.nextInt();
+                Long seed = args.hasNextNumber() ? args.nextLong() : null;
+                String algorithm = args.hasNext() ? args.next() : null;
+                if(seed != null)
+                {
+                    return LabUtils.genEncodedLab(x, y, seed, algorithm);
+                }
+                return LabUtils.genEncodedLab(x, y, algorithm);
+            }
+        });
+        COMMANDS.register("/getLabirynts", new CommandHandler() {
+            /**
+             * Partia labiryntów: "/getLabirynts count w h [seed] [algorytm]". Każdy gotowy
+             * labirynt jest wysyłany od razu jako linia "MAZE i dane" (kolejność
+             * ukończenia), a odpowiedzią kończącą partię jest "END count"
+             * albo "BUSY", gdy budżet generowania jest chwilowo wyczerpany.
+             */
+            @Override
+            public String handle(CommandArgs args, final Connection client) throws Exception {
+                int count = args.nextInt();
+                int x = args.nextInt();
+                int y = args.nextInt();
+                Long seed = args.hasNextNumber() ? args.nextLong() : null;
+                String algorithm = args.hasNext() ? args.next() : null;
+                boolean done = LabUtils.getBatch().generate(count, x, y, seed, algorithm, new MazeBatch.Sink() {
+                    @Override
+                    public void accept(int index, String maze) {
+                        client.broadcast("MAZE " + index + " " + maze);
+                    }
+                });
+                return done ? "END " + count : "BUSY";
+            }
+        });
+        COMMANDS.register("/getMazeRows", new CommandHandler() {
+            /**
+             * Labirynt wysyłany pasami wierszy: "/getMazeRows w h [seed] [algorytm]".
+             * Najpierw nagłówek "ROWS szerokość wysokość xStartu yStartu xMety yMety",
+             * potem linie "BAND pierwszyWiersz liczbaWierszy dane" (MazeCodec.encodeRows)
+             * po kolei od góry, a na końcu odpowiedź "END". Generator strumieniowy
+             * (np. "eller") tworzy wiersze na bieżąco, bez trzymania całej siatki
+             * w pamięci - do takiego trafia labirynt bez wskazanego algorytmu,
+             * który z domyślnym generatorem przekroczyłby limit pamięci.
+             */
+            @Override
+            public String handle(CommandArgs args, Connection client) throws Exception {
+                int x = args.nextInt();
+                int y = args.nextInt();
+                long seed = args.hasNextNumber() ? args.nextLong() : ThreadLocalRandom.current().nextLong();
+                String algorithm = args.hasNext() ? args.next() : null;
+                MazeGenerator generator = MazeGeneratorRegistry.select(algorithm, x + 2, y + 2, true);
+                RequestTrace.maze(x + 2, y + 2, generator.getName());
+                sendRows(client, generator.generate(x + 2, y + 2, seed));
+                return "END";
+            }
+        });
+        COMMANDS.register("/generators", new CommandHandler() {
+            @Override
+            public String handle(CommandArgs args, Connection client) {
+                return MazeGeneratorRegistry.describe();
+            }
+        });
+        COMMANDS.register("/batchStats", new CommandHandler() {
+            @Override
+            public String handle(CommandArgs args, Connection client) {
+                return LabUtils.getBatch().toString();
+            }
+        });
+        COMMANDS.register("/cacheStats", new CommandHandler() {
+            @Override
+            public String handle(CommandArgs args, Connection client) {
+                return LabUtils.getCache().toString();
+            }
+        });
+        COMMANDS.register("/connStats", new CommandHandler() {
+            @Override
+            public String handle(CommandArgs args, Connection client) {
+                return ConnectionExecutor.getCurrent() == null ? "NO STATS" : ConnectionExecutor.getCurrent().toString();
+            }
+        });
+        COMMANDS.register("/poolStats", new CommandHandler() {
+            @Override
+            public String handle(CommandArgs args, Connection client) {
+                return LabUtils.getPool() == null ? "POOL DISABLED" : LabUtils.getPool().toString();
+            }
+        });
+        COMMANDS.register("/stats", new CommandHandler() {
+            /**
+             * Wszystkie metryki serwera w jednej linii (liczniki, wskaźniki
+             * i p50/p99/max histogramów czasu) - te same, które są dostępne
+             * w formacie Prometheusa na porcie metricsport.
+             */
+            @Override
+            public String handle(CommandArgs args, Connection client) {
+                return Metrics.toText();
+            }
+        });
+        COMMANDS.register("/PING", new CommandHandler() {
+            /**
+             * Sygnał życia - klient bez innych poleceń podtrzymuje nim
+             * połączenie przed zamknięciem po idletimeoutms.
+             */
+            @Override
+            public String handle(CommandArgs args, Connection client) {
+                return "PONG";
+            }
+        });
+        COMMANDS.register("/join", new CommandHandler() {
+            /**
+             * Dołącza klienta do pokoju - linie rozsyłane do pokoju
+             * (ClientRegistry.broadcast("room", ...)) trafiają tylko do jego członków.
+             */
+            @Override
+            public String handle(CommandArgs args, Connection client) {
+                String room = args.next();
+                if (room.length() > MAX_ROOM || !ClientRegistry.tag(owner(client), "room", room)) {
+                    return CommandRegistry.ERROR;
+                }
+                return "JOINED " + room;
+            }
+        });
+        COMMANDS.register("/leave", new CommandHandler() {
+            @Override
+            public String handle(CommandArgs args, Connection client) {
+                ClientRegistry.tag(owner(client), "room", null);
+                return "LEFT";
+            }
+        });
+        COMMANDS.register("/cmdStats", new CommandHandler() {
+            @Override
+            public String handle(CommandArgs args, Connection client) {
+                return COMMANDS.toString();
+            }
+        });
     }
     
 }
@@ -0,0 +1,140 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package labyrinth.server.console;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Klasa reprezentująca zasady logowania zdarzeń serwera.
+ * Każda kategoria zdarzeń ma własny poziom ("off", "error" lub "info"),
+ * z udanych zapytań logowane jest co N-te (błędy zawsze), a długie treści
+ * (np. zakodowane labirynty) są skracane do podsumowania z liczbą bajtów i skrótem.
+ * Wypisywanie na konsolę włącza się niezależnie od logowania do pliku.
+ * @author informatyka
+ */
+public class LogPolicy {
+
+    /**
+     * Kategoria zdarzeń serwera (start, zatrzymanie).
+     */
+    public static final int SERVER = 0;
+
+    /**
+     * Kategoria otwierania, zamykania i odrzucania połączeń.
+     */
+    public static final int CONNECTION = 1;
+
+    /**
+     * Kategoria poleceń przychodzących od klientów.
+     */
+    public static final int REQUEST = 2;
+
+    /**
+     * Kategoria odpowiedzi wysyłanych do klientów.
+     */
+    public static final int RESPONSE = 3;
+
+    /**
+     *
+     * @param server Parametr określający poziom kategorii SERVER
+     * @param connection Parametr określający poziom kategorii CONNECTION
+     * @param request Parametr określający poziom kategorii REQUEST
+     * @param response Parametr określający poziom kategorii RESPONSE
+     * @param maxPayload Parametr określający ile znaków treści trafia do logu (ujemny - bez limitu)
+     * @param sample Parametr określający, co które udane zapytanie jest logowane
+     * @param echo Parametr określający, czy wpisy są wypisywane na konsolę
+     */
+    public static void configure(String server, String connection, String request, String response,
+            int maxPayload, int sample, boolean echo)
+    {
+        levels = new int[] {level(server), level(connection), level(request), level(response)};
+        LogPolicy.maxPayload = maxPayload;
+        LogPolicy.sample = Math.max(1, sample);
+        LogPolicy.echo = echo;
+    }
+
+    /**
+     * Losowanie próbki zapytań - jedno wywołanie na zapytanie, dzięki czemu
+     * polecenie i odpowiedź trafiają do logu razem albo wcale.
+     *
+     * @return Zwraca true, jeżeli udane zapytanie powinno zostać zalogowane
+     */
+    public static boolean sampled()
+    {
+        int n = sample;
+        return n == 1 || requests.getAndIncrement() % n == 0;
+    }
+
+    /**
+     *
+     * @param category Parametr określający kategorię zdarzenia
+     * @param error Parametr określający, czy zdarzenie jest błędem
+     * @return Zwraca true, jeżeli zdarzenie zostałoby zalogowane lub wypisane
+     */
+    public static boolean enabled(int category, boolean error)
+    {
+        return levels[category] >= (error ? ERROR : INFO);
+    }
+
+    /**
+     * Loguje zdarzenie zgodnie z zasadami. Treść jest doklejana do prefiksu
+     * dopiero po skróceniu, więc duże odpowiedzi nie są kopiowane.
+     *
+     * @param category Parametr określający kategorię zdarzenia
+     * @param error Parametr określający, czy zdarzenie jest błędem
+     * @param prefix Parametr określający opis zdarzenia
+     * @param payload Parametr określający treść zdarzenia (może być null)
+     * @throws IOException
+     */
+    public static void record(int category, boolean error, String prefix, String payload) throws IOException
+    {
+        if (!enabled(category, error)) {
+            return;
+        }
+        String what = payload == null ? prefix : prefix + summarize(payload);
+        if (echo) {
+            System.out.println(what);
+        }
+        Logger.log(what);
+    }
+
+    /**
+     *
+     * @param payload Parametr określający treść do skrócenia
+     * @return Zwraca treść albo jej początek z liczbą bajtów i skrótem całości
+     */
+    public static String summarize(String payload)
+    {
+        int max = maxPayload;
+        if (max < 0 || payload.length() <= max) {
+            return payload;
+        }
+        return payload.substring(0, max) + "... [" + payload.length() + " B, hash "
+                + Integer.toHexString(payload.hashCode()) + "]";
+    }
+
+    private static int level(String name)
+    {
+        if ("off".equals(name)) {
+            return OFF;
+        }
+        if ("error".equals(name)) {
+            return ERROR;
+        }
+        return INFO;
+    }
+
+    private static final int OFF = 0;
+    private static final int ERROR = 1;
+    private static final int INFO = 2;
+
+    private static volatile int[] levels = {INFO, INFO, INFO, INFO};
+    private static volatile int maxPayload = 256;
+    private static volatile int sample = 1;
+    private static volatile boolean echo = true;
+    private static final AtomicLong requests = new AtomicLong();
+}
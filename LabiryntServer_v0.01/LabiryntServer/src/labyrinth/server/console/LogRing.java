@@ -0,0 +1,112 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package labyrinth.server.console;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Klasa reprezentująca ograniczony bufor cykliczny wpisów logu dla wielu
+ * producentów i jednego konsumenta. Producent rezerwuje miejsce przez CAS
+ * na liczniku zapisu, a gotowość slotu jest publikowana numerem sekwencji
+ * slotu - dzięki temu wstawienie nie wymaga blokady ani alokacji.
+ * @author informatyka
+ */
+public class LogRing {
+
+    /**
+     *
+     * @param capacity Parametr odpowiadający za pojemność bufora (zaokrąglaną w górę do potęgi dwójki)
+     */
+    public LogRing(int capacity)
+    {
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        mask = size - 1;
+        messages = new String[size];
+        times = new long[size];
+        sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * Wstawia wpis, o ile jest wolne miejsce. Może być wołana z wielu wątków.
+     *
+     * @param message Parametr określający treść wpisu
+     * @param time Parametr określający czas wpisu w milisekundach
+     * @return Zwraca false, jeżeli bufor jest pełny
+     */
+    public boolean offer(String message, long time)
+    {
+        long pos = tail.get();
+        while (true) {
+            int index = (int) (pos & mask);
+            long diff = sequences.get(index) - pos;
+            if (diff == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    messages[index] = message;
+                    times[index] = time;
+                    sequences.set(index, pos + 1);
+                    return true;
+                }
+                pos = tail.get();
+            } else if (diff < 0) {
+                return false;
+            } else {
+                pos = tail.get();
+            }
+        }
+    }
+
+    /**
+     * Sprawdza, czy jest gotowy wpis do odczytu. Tylko dla wątku konsumenta.
+     *
+     * @return Zwraca true, jeżeli następny wpis jest już opublikowany
+     */
+    public boolean ready()
+    {
+        return sequences.get((int) (head & mask)) == head + 1;
+    }
+
+    /**
+     * Zwraca treść następnego wpisu - wołana po ready(), przed remove().
+     *
+     * @return Zwraca treść wpisu
+     */
+    public String message()
+    {
+        return messages[(int) (head & mask)];
+    }
+
+    /**
+     * Zwraca czas następnego wpisu - wołana po ready(), przed remove().
+     *
+     * @return Zwraca czas wpisu w milisekundach
+     */
+    public long time()
+    {
+        return times[(int) (head & mask)];
+    }
+
+    /**
+     * Zwalnia slot następnego wpisu dla producentów. Tylko dla wątku konsumenta.
+     */
+    public void remove()
+    {
+        int index = (int) (head & mask);
+        messages[index] = null;
+        sequences.set(index, head + mask + 1);
+        head++;
+    }
+
+    private final int mask;
+    private final String[] messages;
+    private final long[] times;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    private long head;
+}
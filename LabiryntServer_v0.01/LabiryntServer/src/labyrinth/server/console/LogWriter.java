@@ -0,0 +1,158 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package labyrinth.server.console;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Klasa reprezentująca nieblokujący zapis jednego pliku logu.
+ * Wpisy trafiają do bufora cyklicznego (LogRing), a jeden wątek zapisujący
+ * trzyma plik otwarty i zapisuje je partiami - wątki klientów nigdy nie
+ * dotykają dysku. Gdy bufor jest pełny, zachowanie określa polityka:
+ * "block" - czekanie na miejsce, "drop" - pominięcie wpisu,
+ * "count" - pominięcie wpisu i odnotowanie liczby pominiętych wpisów w logu.
+ * @author informatyka
+ */
+class LogWriter {
+
+    /**
+     * Uruchamia wątek zapisujący.
+     *
+     * @param path Parametr określający ścieżkę pliku logu
+     * @param capacity Parametr określający pojemność bufora wpisów
+     * @param overflow Parametr określający politykę przepełnienia ("block", "drop" lub "count")
+     * @param name Parametr określający nazwę wątku zapisującego
+     */
+    LogWriter(String path, int capacity, String overflow, String name)
+    {
+        this.path = path;
+        this.overflow = "drop".equals(overflow) ? DROP : "count".equals(overflow) ? COUNT : BLOCK;
+        this.ring = new LogRing(capacity);
+        writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                write();
+            }
+        }, name);
+        writer.setDaemon(true);
+        writer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+            @Override
+            public void run() {
+                stopping = true;
+                LockSupport.unpark(writer);
+                try {
+                    writer.join(1000);
+                } catch (InterruptedException e) {
+                    //zamykanie i tak trwa
+                }
+            }
+        }));
+    }
+
+    /**
+     *
+     * @param what Parametr w którym przekazujemy co chcemy zalogować
+     */
+    void log(String what)
+    {
+        long now = System.currentTimeMillis();
+        while (!ring.offer(what, now)) {
+            if (writerIdle) {
+                LockSupport.unpark(writer);
+            }
+            if (overflow != BLOCK) {
+                dropped.incrementAndGet();
+                return;
+            }
+            LockSupport.parkNanos(BLOCK_WAIT_NANOS);
+        }
+        if (writerIdle) {
+            LockSupport.unpark(writer);
+        }
+    }
+
+    /**
+     *
+     * @return Zwraca liczbę wpisów pominiętych z powodu przepełnienia bufora
+     */
+    long getDropped()
+    {
+        return dropped.get();
+    }
+
+    /**
+     * Pętla wątku zapisującego: opróżnia bufor do otwartego pliku i robi
+     * flush dopiero, gdy bufor jest pusty, czyli raz na partię wpisów.
+     */
+    private void write()
+    {
+        Writer out = null;
+        long reported = 0;
+        while (true) {
+            try {
+                if (out == null) {
+                    out = new BufferedWriter(new FileWriter(path, true), WRITE_BUFFER);
+                }
+                boolean wrote = false;
+                while (ring.ready()) {
+                    out.write(TIMESTAMPS.format(ring.time()));
+                    out.write('|');
+                    out.write(ring.message());
+                    out.write(LINE_SEPARATOR);
+                    ring.remove();
+                    wrote = true;
+                }
+                long lost = dropped.get();
+                if (overflow == COUNT && lost != reported) {
+                    out.write(TIMESTAMPS.format(System.currentTimeMillis()) + "|LOGGER: pominieto " + (lost - reported) + " wpisow" + LINE_SEPARATOR);
+                    reported = lost;
+                    wrote = true;
+                }
+                if (wrote) {
+                    out.flush();
+                    continue;
+                }
+                if (stopping) {
+                    out.close();
+                    return;
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+                out = null;
+                LockSupport.parkNanos(TimeUnit.SECONDS.toNanos(1));
+            }
+            writerIdle = true;
+            if (!ring.ready()) {
+                LockSupport.parkNanos(IDLE_WAIT_NANOS);
+            }
+            writerIdle = false;
+        }
+    }
+
+    private static final int BLOCK = 0;
+    private static final int DROP = 1;
+    private static final int COUNT = 2;
+    private static final int WRITE_BUFFER = 64 * 1024;
+    private static final long BLOCK_WAIT_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+    private static final long IDLE_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+    private static final TimestampFormatter TIMESTAMPS = new TimestampFormatter(Console.DATE_PATTERN);
+
+    private final String path;
+    private final int overflow;
+    private final LogRing ring;
+    private final Thread writer;
+    private volatile boolean writerIdle;
+    private volatile boolean stopping;
+    private final AtomicLong dropped = new AtomicLong();
+}
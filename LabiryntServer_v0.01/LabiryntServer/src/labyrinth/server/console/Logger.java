@@ -6,26 +6,43 @@
 package labyrinth.server.console;
 
 import labyrinth.server.configuration.Configuration;
-import java.io.BufferedWriter;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.PrintWriter;
 
 /**
  * Klasa reprezentująca Logger - uproszczone logowanie danych do pliku.
+ * Zapis odbywa się w osobnym wątku (LogWriter), więc wątki klientów nigdy
+ * nie dotykają dysku, a zachowanie przy pełnym buforze określa polityka
+ * przepełnienia ("block", "drop" lub "count").
  * @author informatyka
  */
 public class Logger {
     
     /**
      *
-     * @param logPath Parametr w którym przekazujemy ścieżkę do zapisywania logów
+     * @param logPath Parametr w którym przekazujemy ścieżkę do zapisywania logów
      */
     public static void setPath(String logPath)
     {
         Logger.logPath = logPath;
     }
 
+    /**
+     * Uruchamia wątek zapisujący logi. Wołana raz, przy starcie serwera;
+     * jeżeli nie zostanie wywołana, pierwszy wpis uruchomi logger z ustawieniami domyślnymi.
+     *
+     * @param logPath Parametr w którym przekazujemy ścieżkę do zapisywania logów
+     * @param capacity Parametr określający pojemność bufora wpisów
+     * @param overflow Parametr określający politykę przepełnienia ("block", "drop" lub "count")
+     */
+    public static synchronized void start(String logPath, int capacity, String overflow)
+    {
+        if (log != null) {
+            return;
+        }
+        Logger.logPath = logPath;
+        log = new LogWriter(logPath, capacity, overflow, "logger");
+    }
+
     /**
      *
      * @param what Parametr w którym przekazujemy co chcemy zalogować
@@ -35,14 +52,27 @@ public class Logger {
     {
         if(Configuration.isLogging())
         {
-            PrintWriter out = new PrintWriter(new BufferedWriter(new FileWriter(logPath, true)));
-        
-        
-            out.println(Console.getCurrentDate() + "|" + what);
-            out.close();
+            LogWriter w = log;
+            if (w == null) {
+                start(logPath, DEFAULT_CAPACITY, "block");
+                w = log;
+            }
+            w.log(what);
         }
     }
+
+    /**
+     *
+     * @return Zwraca liczbę wpisów pominiętych z powodu przepełnienia bufora
+     */
+    public static long getDropped()
+    {
+        LogWriter w = log;
+        return w == null ? 0 : w.getDropped();
+    }
     
-    
+    private static final int DEFAULT_CAPACITY = 8192;
+
     private static String logPath;
+    private static volatile LogWriter log;
 }
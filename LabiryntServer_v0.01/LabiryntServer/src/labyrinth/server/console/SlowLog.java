@@ -0,0 +1,91 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package labyrinth.server.console;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import labyrinth.server.trace.GcPauses;
+import labyrinth.server.trace.RequestTrace;
+
+/**
+ * Klasa reprezentująca dziennik wolnych poleceń - osobny plik, do którego
+ * trafiają tylko polecenia obsługiwane dłużej niż próg (razem z czekaniem
+ * w kolejce), z rozbiciem czasu na fazy i pauzami GC z okna polecenia.
+ * Zapis przechodzi przez nieblokujący LogWriter z polityką "count" -
+ * przy pełnym buforze wpis jest pomijany, a w pliku zostaje liczba pominiętych.
+ * @author informatyka
+ */
+public class SlowLog {
+
+    /**
+     * Włącza dziennik (kolejne wywołania nic nie robią).
+     *
+     * @param path Parametr określający ścieżkę pliku dziennika
+     * @param thresholdMillis Parametr określający próg czasu polecenia w milisekundach (0 - dziennik wyłączony)
+     */
+    public static synchronized void start(String path, long thresholdMillis)
+    {
+        if (log != null || thresholdMillis <= 0) {
+            return;
+        }
+        GcPauses.install();
+        thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+        log = new LogWriter(path, CAPACITY, "count", "slow-logger");
+    }
+
+    /**
+     *
+     * @param nanos Parametr określający czas polecenia w nanosekundach
+     * @return Zwraca true, jeżeli dziennik jest włączony, a polecenie przekroczyło próg
+     */
+    static boolean isSlow(long nanos)
+    {
+        return log != null && nanos >= thresholdNanos;
+    }
+
+    /**
+     * Zapisuje wolne polecenie, np.
+     * "1250.3ms /getMaze 2001 2001 client=/127.0.0.1 queue=0.1ms parse=0.0ms generate=1180.2ms
+     * convert=0.0ms encode=40.7ms log=0.0ms write=25.1ms maze=2003x2003/backtracker bytes=653005 gc=1/31ms".
+     *
+     * @param trace Parametr określający kontekst polecenia
+     * @param queueNanos Parametr określający czas czekania polecenia w kolejce w nanosekundach
+     * @param totalNanos Parametr określający łączny czas polecenia (z kolejką) w nanosekundach
+     */
+    static void record(RequestTrace trace, long queueNanos, long totalNanos)
+    {
+        LogWriter w = log;
+        if (w == null) {
+            return;
+        }
+        long to = GcPauses.uptimeMillis();
+        long from = to - TimeUnit.NANOSECONDS.toMillis(totalNanos) - 1;
+        StringBuilder sb = new StringBuilder(256);
+        sb.append(millis(totalNanos)).append("ms ").append(LogPolicy.summarize(trace.getCommand()))
+                .append(" client=").append(trace.getClient())
+                .append(" queue=").append(millis(queueNanos)).append("ms");
+        for (int phase = 0; phase < RequestTrace.PHASES; phase++) {
+            sb.append(' ').append(RequestTrace.getPhaseName(phase)).append('=').append(millis(trace.getPhaseNanos(phase))).append("ms");
+        }
+        if (trace.getWidth() != 0) {
+            sb.append(" maze=").append(trace.getWidth()).append('x').append(trace.getHeight())
+                    .append('/').append(trace.getAlgorithm());
+        }
+        sb.append(" bytes=").append(trace.getPayloadBytes())
+                .append(" gc=").append(GcPauses.describe(from, to));
+        w.log(sb.toString());
+    }
+
+    private static String millis(long nanos)
+    {
+        return String.format(Locale.ROOT, "%.1f", nanos / 1e6);
+    }
+
+    private static final int CAPACITY = 1024;
+
+    private static volatile LogWriter log;
+    private static volatile long thresholdNanos;
+}
@@ -0,0 +1,65 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package labyrinth.server.console;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+/**
+ * Klasa reprezentująca formatowanie czasu z pamięcią ostatniego wyniku.
+ * Format ma dokładność do sekundy, więc napis jest tworzony najwyżej raz na
+ * sekundę, a pozostałe wywołania zwracają gotowy String bez alokacji.
+ * @author informatyka
+ */
+public class TimestampFormatter {
+
+    /**
+     *
+     * @param pattern Parametr określający wzorzec daty (SimpleDateFormat) z dokładnością do sekundy
+     */
+    public TimestampFormatter(String pattern)
+    {
+        this.pattern = pattern;
+    }
+
+    /**
+     *
+     * @param millis Parametr określający czas w milisekundach
+     * @return Zwraca sformatowany czas
+     */
+    public String format(long millis)
+    {
+        long second = Math.floorDiv(millis, 1000L);
+        Cached cached = last;
+        if (cached != null && cached.second == second) {
+            return cached.text;
+        }
+        String text = formats.get().format(new Date(millis));
+        last = new Cached(second, text);
+        return text;
+    }
+
+    private static class Cached
+    {
+        Cached(long second, String text)
+        {
+            this.second = second;
+            this.text = text;
+        }
+
+        final long second;
+        final String text;
+    }
+
+    private final String pattern;
+    private volatile Cached last;
+    private final ThreadLocal<SimpleDateFormat> formats = new ThreadLocal<SimpleDateFormat>() {
+        @Override
+        protected SimpleDateFormat initialValue() {
+            return new SimpleDateFormat(pattern);
+        }
+    };
+}
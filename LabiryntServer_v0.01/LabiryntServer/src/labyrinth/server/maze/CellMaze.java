@@ -0,0 +1,168 @@
+package labyrinth.server.maze;
+
+import java.util.SplittableRandom;
+import labyrinth.server.serialization.Coord;
+
+/**
+ * Klasa bazowa generatorów, które rzeźbią labirynt w siatce pełnej ścian,
+ * operując na numerach komórek (komórka c leży w polu (2 + 2 * (c % columns),
+ * 2 + 2 * (c / columns))). Klasa pochodna wywołuje build() na końcu konstruktora.
+ * @author informatyka
+ */
+abstract class CellMaze {
+
+    /**
+     *
+     * @param width - szerokość siatki labiryntu (co najmniej 5)
+     * @param height - wysokość siatki labiryntu (co najmniej 5)
+     * @param seed - ziarno generatora liczb losowych
+     */
+    CellMaze(int width, int height, long seed) {
+        if (width < 5 || height < 5) {
+            throw new IllegalArgumentException("Niepoprawny rozmiar labiryntu: " + width + "x" + height);
+        }
+        this.width = width;
+        this.height = height;
+        this.grid = new MazeGrid(width, height);
+        this.columns = (width - 3) / 2;
+        this.cellRows = (height - 3) / 2;
+        this.rand = new SplittableRandom(seed);
+        xStart = 2 + 2 * rand.nextInt(columns);
+        xMeta = 2 + 2 * rand.nextInt(columns);
+    }
+
+    /**
+     * Łączy wszystkie komórki tak, żeby między każdymi dwiema była dokładnie
+     * jedna droga (link i open).
+     */
+    abstract void carve();
+
+    /**
+     * Wypełnia siatkę ścianami, rzeźbi labirynt i otwiera start i metę.
+     */
+    final void build() {
+        grid.fillRect(1, 1, width - 1, height - 1);
+        carve();
+        grid.clearWall(grid.index(xStart, 1));
+        //wiersze pod ostatnim wierszem komorek - przejscie do mety
+        for (int y = 2 * cellRows + 1; y <= height - 2; y++) {
+            grid.clearWall(grid.index(xMeta, y));
+        }
+    }
+
+    /**
+     *
+     * @return zwraca liczbę komórek labiryntu
+     */
+    final int cells() {
+        return columns * cellRows;
+    }
+
+    /**
+     *
+     * @param cell - numer komórki
+     */
+    final void open(int cell) {
+        grid.clearWall(fieldOf(cell));
+    }
+
+    /**
+     * Otwiera dwie sąsiednie komórki i ścianę między nimi.
+     *
+     * @param a - numer pierwszej komórki
+     * @param b - numer drugiej komórki
+     */
+    final void link(int a, int b) {
+        int fa = fieldOf(a);
+        int fb = fieldOf(b);
+        grid.clearWall(fa);
+        grid.clearWall(fb);
+        grid.clearWall((fa + fb) >>> 1);
+    }
+
+    /**
+     * Wypisuje kierunki (RIGHT, LEFT, DOWN, UP), w których komórka ma sąsiada.
+     *
+     * @param cell - numer komórki
+     * @param out - tablica na co najmniej 4 kierunki
+     * @return zwraca liczbę kierunków
+     */
+    final int directions(int cell, int[] out) {
+        int c = cell % columns;
+        int count = 0;
+        if (c + 1 < columns) {
+            out[count++] = RIGHT;
+        }
+        if (c > 0) {
+            out[count++] = LEFT;
+        }
+        if (cell + columns < cells()) {
+            out[count++] = DOWN;
+        }
+        if (cell >= columns) {
+            out[count++] = UP;
+        }
+        return count;
+    }
+
+    /**
+     *
+     * @param cell - numer komórki
+     * @param direction - kierunek (RIGHT, LEFT, DOWN lub UP)
+     * @return zwraca numer sąsiedniej komórki w danym kierunku
+     */
+    final int move(int cell, int direction) {
+        switch (direction) {
+            case RIGHT:
+                return cell + 1;
+            case LEFT:
+                return cell - 1;
+            case DOWN:
+                return cell + columns;
+            default:
+                return cell - columns;
+        }
+    }
+
+    private int fieldOf(int cell) {
+        return grid.index(2 + 2 * (cell % columns), 2 + 2 * (cell / columns));
+    }
+
+    /**
+     *
+     * @return zwraca bitową siatkę labiryntu (bez kopiowania)
+     */
+    public MazeGrid getGrid() {
+        return grid;
+    }
+
+    /**
+     *
+     * @return zwraca pole startu labiryntu
+     */
+    public Coord getStart() {
+        return new Coord(xStart, 1);
+    }
+
+    /**
+     *
+     * @return zwraca pole mety labiryntu
+     */
+    public Coord getMeta() {
+        return new Coord(xMeta, height - 2);
+    }
+
+    static final int RIGHT = 0;
+    static final int LEFT = 1;
+    static final int DOWN = 2;
+    static final int UP = 3;
+
+    final int width;
+    final int height;
+    final MazeGrid grid;
+    final int columns;
+    final int cellRows;
+    final SplittableRandom rand;
+    private final int xStart;
+    private final int xMeta;
+}
@@ -0,0 +1,182 @@
+package labyrinth.server.maze;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import labyrinth.server.serialization.Coord;
+
+/**
+ * Klasa reprezentująca labirynt generowany metodą podziału rekurencyjnego,
+ * równolegle w puli fork-join. Komnata jest przecinana ścianą z jednym
+ * przejściem, a powstałe dwie komnaty są dzielone dalej niezależnie.
+ * Każde zadanie ma własny SplittableRandom wydzielony z generatora rodzica,
+ * więc labirynt zależy tylko od ziarna, a nie od liczby wątków.
+ * Układ pól jest taki sam jak w Maze (otoczka wolnych pól, komórki na
+ * parzystych współrzędnych od (2, 2), start w wierszu 1, meta w wierszu height - 2).
+ * @author informatyka
+ */
+public class DivisionMaze {
+
+    /**
+     * Labirynt jest dzielony w puli bieżącego zadania fork-join, a poza
+     * pulą - we wspólnej puli.
+     *
+     * @param width - szerokość siatki labiryntu (co najmniej 5)
+     * @param height - wysokość siatki labiryntu (co najmniej 5)
+     * @param seed - ziarno generatora liczb losowych
+     */
+    public DivisionMaze(int width, int height, long seed) {
+        this(width, height, seed, ForkJoinTask.inForkJoinPool() ? ForkJoinTask.getPool() : ForkJoinPool.commonPool());
+    }
+
+    /**
+     *
+     * @param width - szerokość siatki labiryntu (co najmniej 5)
+     * @param height - wysokość siatki labiryntu (co najmniej 5)
+     * @param seed - ziarno generatora liczb losowych
+     * @param pool - pula fork-join, w której labirynt jest generowany
+     */
+    public DivisionMaze(int width, int height, long seed, ForkJoinPool pool) {
+        if (width < 5 || height < 5) {
+            throw new IllegalArgumentException("Niepoprawny rozmiar labiryntu: " + width + "x" + height);
+        }
+        this.width = width;
+        this.height = height;
+        this.grid = new MazeGrid(width, height);
+        //komorki leza na parzystych x z przedzialu [2, width - 3] i parzystych y z [2, height - 3]
+        this.columns = (width - 3) / 2;
+        this.cellRows = (height - 3) / 2;
+
+        SplittableRandom rand = new SplittableRandom(seed);
+        xStart = 2 + 2 * rand.nextInt(columns);
+        xMeta = 2 + 2 * rand.nextInt(columns);
+        generate(rand, pool);
+    }
+
+    /**
+     * Wypełnia ściany otoczki komnaty, czyści jej wnętrze i dzieli ją w puli.
+     */
+    private void generate(SplittableRandom rand, ForkJoinPool pool) {
+        grid.fillRect(1, 1, width - 1, height - 1);
+        final int lastX = 2 * columns;
+        final int lastY = 2 * cellRows;
+        for (int y = 2; y <= lastY; y++) {
+            grid.clearWalls(grid.index(2, y), grid.index(lastX + 1, y));
+        }
+
+        Chamber root = new Chamber(0, 0, columns, cellRows, rand.split());
+        if (ForkJoinTask.getPool() == pool) {
+            //wywolanie z zadania tej samej puli (np. partii) - podzial trafia do jej kolejek
+            root.invoke();
+        } else {
+            pool.invoke(root);
+        }
+
+        grid.clearWall(grid.index(xStart, 1));
+        //wiersze pod ostatnim wierszem komorek - przejscie do mety
+        for (int y = lastY + 1; y <= height - 2; y++) {
+            grid.clearWall(grid.index(xMeta, y));
+        }
+    }
+
+    /**
+     *
+     * @return zwraca bitową siatkę labiryntu (bez kopiowania)
+     */
+    public MazeGrid getGrid() {
+        return grid;
+    }
+
+    /**
+     *
+     * @return zwraca pole startu labiryntu
+     */
+    public Coord getStart() {
+        return new Coord(xStart, 1);
+    }
+
+    /**
+     *
+     * @return zwraca pole mety labiryntu
+     */
+    public Coord getMeta() {
+        return new Coord(xMeta, height - 2);
+    }
+
+    /**
+     * Zadanie dzielące komnatę komórek [c0, c0 + cw) x [r0, r0 + ch).
+     * Równolegle wykonywane są tylko komnaty rozdzielone ścianą poziomą -
+     * piszą wtedy do różnych wierszy, a przy szerokości od 64 pól
+     * (FORK_MIN_WIDTH) także do różnych słów long siatki.
+     * Komnaty rozdzielone ścianą pionową dzielą słowa, więc są
+     * dzielone po kolei w tym samym wątku.
+     */
+    private class Chamber extends RecursiveAction {
+
+        Chamber(int c0, int r0, int cw, int ch, SplittableRandom rand) {
+            this.c0 = c0;
+            this.r0 = r0;
+            this.cw = cw;
+            this.ch = ch;
+            this.rand = rand;
+        }
+
+        @Override
+        protected void compute() {
+            if (cw < 2 || ch < 2) {
+                return;
+            }
+            boolean horizontal = ch > cw || (ch == cw && rand.nextInt(2) == 0);
+            if (horizontal) {
+                int r = r0 + rand.nextInt(ch - 1);
+                int gap = c0 + rand.nextInt(cw);
+                int y = 2 * r + 3;
+                grid.setWalls(grid.index(2 * c0 + 1, y), grid.index(2 * (c0 + cw) + 2, y));
+                grid.clearWall(grid.index(2 * gap + 2, y));
+
+                Chamber top = new Chamber(c0, r0, cw, r - r0 + 1, rand.split());
+                Chamber bottom = new Chamber(c0, r + 1, cw, r0 + ch - r - 1, rand.split());
+                if (width >= FORK_MIN_WIDTH && (long) cw * ch >= FORK_MIN_CELLS) {
+                    invokeAll(top, bottom);
+                } else {
+                    top.compute();
+                    bottom.compute();
+                }
+            } else {
+                int c = c0 + rand.nextInt(cw - 1);
+                int gap = r0 + rand.nextInt(ch);
+                int x = 2 * c + 3;
+                //wiersze brzegowe komnaty sa juz scianami - zapis do nich scigalby sie z sasiednia komnata
+                for (int y = 2 * r0 + 2; y <= 2 * (r0 + ch); y++) {
+                    grid.setWall(grid.index(x, y));
+                }
+                grid.clearWall(grid.index(x, 2 * gap + 2));
+
+                Chamber left = new Chamber(c0, r0, c - c0 + 1, ch, rand.split());
+                Chamber right = new Chamber(c + 1, r0, c0 + cw - c - 1, ch, rand.split());
+                left.compute();
+                right.compute();
+            }
+        }
+
+        private static final long serialVersionUID = 1L;
+
+        private final int c0;
+        private final int r0;
+        private final int cw;
+        private final int ch;
+        private final SplittableRandom rand;
+    }
+
+    private static final int FORK_MIN_WIDTH = 64;
+    private static final long FORK_MIN_CELLS = 16 * 1024;
+
+    private final int width;
+    private final int height;
+    private final MazeGrid grid;
+    private final int columns;
+    private final int cellRows;
+    private final int xStart;
+    private final int xMeta;
+}
@@ -0,0 +1,244 @@
+package labyrinth.server.maze;
+
+import java.util.Random;
+import labyrinth.server.serialization.Coord;
+
+/**
+ * Klasa reprezentująca labirynt generowany algorytmem Ellera - wiersz po wierszu.
+ * Pamiętany jest tylko bieżący wiersz komórek (numery zbiorów w tablicach int),
+ * więc pamięć zależy wyłącznie od szerokości, a labirynt może mieć dowolną
+ * wysokość. Układ pól jest taki sam jak w Maze: otoczka wolnych pól, komórki
+ * na parzystych współrzędnych od (2, 2), start w wierszu 1, meta w wierszu height - 2.
+ * Powstaje labirynt doskonały - między każdymi dwiema komórkami jest dokładnie jedna droga.
+ * @author informatyka
+ */
+public class EllerMaze implements MazeRows {
+
+    /**
+     *
+     * @param width - szerokość siatki labiryntu (co najmniej 5)
+     * @param height - wysokość siatki labiryntu (co najmniej 5)
+     */
+    public EllerMaze(int width, int height) {
+        this(width, height, new Random());
+    }
+
+    /**
+     *
+     * @param width - szerokość siatki labiryntu (co najmniej 5)
+     * @param height - wysokość siatki labiryntu (co najmniej 5)
+     * @param seed - ziarno generatora liczb losowych
+     */
+    public EllerMaze(int width, int height, long seed) {
+        this(width, height, new Random(seed));
+    }
+
+    private EllerMaze(int width, int height, Random rand) {
+        if (width < 5 || height < 5) {
+            throw new IllegalArgumentException("Niepoprawny rozmiar labiryntu: " + width + "x" + height);
+        }
+        this.width = width;
+        this.height = height;
+        this.rand = rand;
+        //komorki leza na parzystych x z przedzialu [2, width - 3] i parzystych y z [2, height - 3]
+        this.columns = (width - 3) / 2;
+        this.cellRows = (height - 3) / 2;
+        this.lastCellRow = 2 * cellRows;
+
+        this.set = new int[columns];
+        this.parent = new int[columns];
+        this.down = new boolean[columns];
+        this.right = new boolean[columns];
+        this.hasDown = new boolean[columns];
+        this.lastCell = new int[columns];
+        this.used = new boolean[columns];
+
+        xStart = 2 + 2 * rand.nextInt(columns);
+        xMeta = 2 + 2 * rand.nextInt(columns);
+        for (int c = 0; c < columns; c++) {
+            set[c] = c;
+        }
+    }
+
+    /**
+     *
+     * @return zwraca szerokość siatki labiryntu
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     *
+     * @return zwraca wysokość siatki labiryntu
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     *
+     * @return zwraca pole startu labiryntu
+     */
+    public Coord getStart() {
+        return new Coord(xStart, 1);
+    }
+
+    /**
+     *
+     * @return zwraca pole mety labiryntu
+     */
+    public Coord getMeta() {
+        return new Coord(xMeta, height - 2);
+    }
+
+    /**
+     *
+     * @return zwraca true, jeżeli zostały jeszcze wiersze do wygenerowania
+     */
+    public boolean hasNextRow() {
+        return y < height;
+    }
+
+    /**
+     * Generuje kolejny wiersz siatki (od góry) i zapisuje go w wierszu row
+     * podanej siatki, nadpisując jego poprzednią zawartość.
+     *
+     * @param target - siatka o szerokości labiryntu, do której trafia wiersz
+     * @param row - numer wiersza w siatce target
+     */
+    public void nextRow(MazeGrid target, int row) {
+        final int from = target.index(0, row);
+        target.clearWalls(from, from + width);
+        if (y == 0 || y == height - 1) {
+            y++;
+            return;
+        }
+        target.setWalls(from + 1, from + width - 1);
+
+        if (y == 1) {
+            target.clearWall(from + xStart);
+        } else if (y <= lastCellRow && y % 2 == 0) {
+            carveRow(y == lastCellRow);
+            for (int c = 0; c < columns; c++) {
+                target.clearWall(from + 2 + 2 * c);
+                if (right[c]) {
+                    target.clearWall(from + 3 + 2 * c);
+                }
+            }
+        } else if (y < lastCellRow) {
+            for (int c = 0; c < columns; c++) {
+                if (down[c]) {
+                    target.clearWall(from + 2 + 2 * c);
+                }
+            }
+            nextSets();
+        } else {
+            //wiersze pod ostatnim wierszem komorek - przejscie do mety
+            target.clearWall(from + xMeta);
+        }
+        y++;
+    }
+
+    /**
+     * Łączy sąsiednie komórki bieżącego wiersza i wybiera przejścia w dół -
+     * każdy zbiór dostaje co najmniej jedno. W ostatnim wierszu łączone są
+     * wszystkie różne zbiory, a przejść w dół nie ma.
+     *
+     * @param last - czy to ostatni wiersz komórek
+     */
+    private void carveRow(boolean last) {
+        for (int c = 0; c < columns; c++) {
+            parent[set[c]] = set[c];
+        }
+        for (int c = 0; c + 1 < columns; c++) {
+            int a = find(set[c]);
+            int b = find(set[c + 1]);
+            right[c] = a != b && (last || rand.nextBoolean());
+            if (right[c]) {
+                parent[b] = a;
+            }
+        }
+        if (columns > 0) {
+            right[columns - 1] = false;
+        }
+        for (int c = 0; c < columns; c++) {
+            set[c] = find(set[c]);
+        }
+        if (last) {
+            return;
+        }
+
+        for (int c = 0; c < columns; c++) {
+            hasDown[set[c]] = false;
+        }
+        for (int c = 0; c < columns; c++) {
+            down[c] = rand.nextBoolean();
+            if (down[c]) {
+                hasDown[set[c]] = true;
+            }
+            lastCell[set[c]] = c;
+        }
+        for (int c = 0; c < columns; c++) {
+            int s = set[c];
+            if (!hasDown[s]) {
+                down[lastCell[s]] = true;
+                hasDown[s] = true;
+            }
+        }
+    }
+
+    /**
+     * Przygotowuje zbiory następnego wiersza - komórki połączone w dół
+     * zachowują zbiór, pozostałe dostają wolne numery (numerów nigdy nie
+     * jest więcej niż komórek w wierszu).
+     */
+    private void nextSets() {
+        for (int c = 0; c < columns; c++) {
+            used[c] = false;
+        }
+        for (int c = 0; c < columns; c++) {
+            if (down[c]) {
+                used[set[c]] = true;
+            }
+        }
+        int free = 0;
+        for (int c = 0; c < columns; c++) {
+            if (!down[c]) {
+                while (used[free]) {
+                    free++;
+                }
+                set[c] = free;
+                used[free] = true;
+            }
+        }
+    }
+
+    private int find(int s) {
+        while (parent[s] != s) {
+            parent[s] = parent[parent[s]];
+            s = parent[s];
+        }
+        return s;
+    }
+
+    private final int width;
+    private final int height;
+    private final Random rand;
+    private final int columns;
+    private final int cellRows;
+    private final int lastCellRow;
+    private final int xStart;
+    private final int xMeta;
+
+    //stan bieżącego wiersza komórek - wszystkie tablice mają długość columns
+    private final int[] set;
+    private final int[] parent;
+    private final boolean[] down;
+    private final boolean[] right;
+    private final boolean[] hasDown;
+    private final int[] lastCell;
+    private final boolean[] used;
+
+    private int y;
+}
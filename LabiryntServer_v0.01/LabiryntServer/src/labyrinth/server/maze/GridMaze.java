@@ -0,0 +1,125 @@
+package labyrinth.server.maze;
+
+import java.util.ArrayList;
+import labyrinth.server.serialization.Coord;
+import labyrinth.server.serialization.MazeCodec;
+import labyrinth.server.trace.ConvertEvent;
+import labyrinth.server.trace.EncodeEvent;
+
+/**
+ * Klasa reprezentująca labirynt trzymany w całości w siatce bitowej,
+ * razem z polami startu i mety. Wiersze są oddawane po kolei z gotowej siatki.
+ * @author informatyka
+ */
+public class GridMaze implements MazeRows {
+
+    /**
+     *
+     * @param grid - siatka labiryntu (nie jest kopiowana)
+     * @param start - pole startu
+     * @param meta - pole mety
+     */
+    public GridMaze(MazeGrid grid, Coord start, Coord meta) {
+        this.grid = grid;
+        this.start = start;
+        this.meta = meta;
+    }
+
+    /**
+     * Zbiera wszystkie wiersze labiryntu w jednej siatce. Labirynt,
+     * który już jest siatką, jest zwracany bez kopiowania.
+     *
+     * @param rows - labirynt odczytywany wierszami (od pierwszego wiersza)
+     * @return zwraca labirynt w postaci siatki
+     */
+    public static GridMaze of(MazeRows rows) {
+        if (rows instanceof GridMaze) {
+            return (GridMaze) rows;
+        }
+        MazeGrid grid = new MazeGrid(rows.getWidth(), rows.getHeight());
+        for (int row = 0; rows.hasNextRow(); row++) {
+            rows.nextRow(grid, row);
+        }
+        return new GridMaze(grid, rows.getStart(), rows.getMeta());
+    }
+
+    /**
+     *
+     * @return zwraca bitową siatkę labiryntu (bez kopiowania)
+     */
+    public MazeGrid getGrid() {
+        return grid;
+    }
+
+    @Override
+    public int getWidth() {
+        return grid.getWidth();
+    }
+
+    @Override
+    public int getHeight() {
+        return grid.getHeight();
+    }
+
+    @Override
+    public Coord getStart() {
+        return start;
+    }
+
+    @Override
+    public Coord getMeta() {
+        return meta;
+    }
+
+    @Override
+    public boolean hasNextRow() {
+        return y < grid.getHeight();
+    }
+
+    @Override
+    public void nextRow(MazeGrid target, int row) {
+        target.copyRow(grid, y++, row);
+    }
+
+    /**
+     *
+     * @return zwraca labirynt zakodowany w formacie MazeCodec
+     */
+    public String encode() {
+        EncodeEvent event = new EncodeEvent();
+        event.start();
+        String encoded = MazeCodec.encode(grid.getWidth(), grid.getHeight(), start, meta, grid.getWords());
+        event.payload(encoded.length());
+        event.finish();
+        return encoded;
+    }
+
+    /**
+     * Buduje listę Coordynatów dla starszych wywołań - start, wszystkie
+     * ściany wiersz po wierszu i meta.
+     *
+     * @return zwraca ArrayListę Coordynatów labiryntu
+     */
+    public ArrayList<Coord> toCoords() {
+        ConvertEvent event = new ConvertEvent();
+        event.start();
+        ArrayList<Coord> cor = new ArrayList<>(grid.countWalls() + 2);
+        cor.add(start);
+        final int width = grid.getWidth();
+        for (int y = 0; y < grid.getHeight(); y++) {
+            final int rowStart = grid.index(0, y);
+            final int rowEnd = rowStart + width;
+            for (int i = grid.nextWall(rowStart, rowEnd); i >= 0; i = grid.nextWall(i + 1, rowEnd)) {
+                cor.add(new Coord(i - rowStart, y));
+            }
+        }
+        cor.add(meta);
+        event.finish();
+        return cor;
+    }
+
+    private final MazeGrid grid;
+    private final Coord start;
+    private final Coord meta;
+    private int y;
+}
@@ -0,0 +1,68 @@
+package labyrinth.server.maze;
+
+/**
+ * Klasa reprezentująca labirynt generowany losowym algorytmem Kruskala.
+ * Wszystkie ściany między sąsiednimi komórkami są tasowane, a potem ściana
+ * jest usuwana, jeżeli rozdziela dwa różne zbiory komórek. Zbiory są
+ * trzymane w prostym union-find na tablicy int (kompresja ścieżek przez połowienie).
+ * @author informatyka
+ */
+public class KruskalMaze extends CellMaze {
+
+    /**
+     *
+     * @param width - szerokość siatki labiryntu (co najmniej 5)
+     * @param height - wysokość siatki labiryntu (co najmniej 5)
+     * @param seed - ziarno generatora liczb losowych
+     */
+    public KruskalMaze(int width, int height, long seed) {
+        super(width, height, seed);
+        build();
+    }
+
+    @Override
+    void carve() {
+        final int cells = cells();
+        final int[] parent = new int[cells];
+        //krawedz 2 * c prowadzi z komorki c w prawo, 2 * c + 1 w dol
+        final int[] edges = new int[2 * cells];
+        int count = 0;
+        for (int cell = 0; cell < cells; cell++) {
+            parent[cell] = cell;
+            open(cell);
+            if (cell % columns + 1 < columns) {
+                edges[count++] = 2 * cell;
+            }
+            if (cell + columns < cells) {
+                edges[count++] = 2 * cell + 1;
+            }
+        }
+        for (int i = count - 1; i > 0; i--) {
+            int j = rand.nextInt(i + 1);
+            int e = edges[i];
+            edges[i] = edges[j];
+            edges[j] = e;
+        }
+
+        int remaining = cells - 1;
+        for (int i = 0; i < count && remaining > 0; i++) {
+            int a = edges[i] >>> 1;
+            int b = (edges[i] & 1) == 0 ? a + 1 : a + columns;
+            int ra = find(parent, a);
+            int rb = find(parent, b);
+            if (ra != rb) {
+                parent[rb] = ra;
+                link(a, b);
+                remaining--;
+            }
+        }
+    }
+
+    private static int find(int[] parent, int s) {
+        while (parent[s] != s) {
+            parent[s] = parent[parent[s]];
+            s = parent[s];
+        }
+        return s;
+    }
+}
@@ -1,8 +1,13 @@
 package labyrinth.server.maze;
 
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.concurrent.ThreadLocalRandom;
 import labyrinth.server.serialization.Coord;
+import labyrinth.server.serialization.Serializator;
+import labyrinth.server.trace.EncodeEvent;
+import labyrinth.server.trace.RequestTrace;
 
 /*
  * To change this license header, choose License Headers in Project Properties.
@@ -24,6 +29,201 @@ public class LabUtils {
      */
     public static ArrayList<Coord> genLab(int x, int y)
     {
-        return Maze.generateLabyrinth(x, y);
+        return MazeGeneratorRegistry.grid(null, x + 2, y + 2, randomSeed()).toCoords();
     }
+
+    /**
+     *
+     * @param x Parametr odpowiadający za szerokość labiryntu
+     * @param y Parametr odpowiadający za wysokość labiryntu
+     * @return Zwraca wygenerowany labirynt zakodowany w formacie MazeCodec
+     */
+    public static String genEncodedLab(int x, int y)
+    {
+        return genEncodedLab(x, y, (String) null);
+    }
+
+    /**
+     *
+     * @param x Parametr odpowiadający za szerokość labiryntu
+     * @param y Parametr odpowiadający za wysokość labiryntu
+     * @param algorithm Parametr określający nazwę generatora albo null (domyślny, z puli gotowych labiryntów)
+     * @return Zwraca wygenerowany labirynt zakodowany w formacie MazeCodec
+     */
+    public static String genEncodedLab(int x, int y, String algorithm)
+    {
+        RequestTrace.maze(x + 2, y + 2, algorithm == null ? MazeGeneratorRegistry.getDefault().getName() : algorithm);
+        if (algorithm != null) {
+            return MazeGeneratorRegistry.grid(algorithm, x + 2, y + 2, randomSeed()).encode();
+        }
+        MazePool p = pool;
+        if (p != null) {
+            String maze = p.take(x, y);
+            if (maze != null) {
+                return maze;
+            }
+        }
+        return generateEncodedLab(x, y);
+    }
+
+    /**
+     * Generuje labirynt bez ziarna w bieżącym wątku, z pominięciem puli.
+     *
+     * @param x Parametr odpowiadający za szerokość labiryntu
+     * @param y Parametr odpowiadający za wysokość labiryntu
+     * @return Zwraca wygenerowany labirynt zakodowany w formacie MazeCodec
+     */
+    static String generateEncodedLab(int x, int y)
+    {
+        return MazeGeneratorRegistry.grid(null, x + 2, y + 2, randomSeed()).encode();
+    }
+
+    /**
+     *
+     * @param x Parametr odpowiadający za szerokość labiryntu
+     * @param y Parametr odpowiadający za wysokość labiryntu
+     * @param seed Parametr odpowiadający za ziarno labiryntu
+     * @return Zwraca labirynt zakodowany w formacie MazeCodec - z pamięci podręcznej, jeżeli był już generowany
+     */
+    public static String genEncodedLab(int x, int y, long seed)
+    {
+        return genEncodedLab(x, y, seed, null);
+    }
+
+    /**
+     *
+     * @param x Parametr odpowiadający za szerokość labiryntu
+     * @param y Parametr odpowiadający za wysokość labiryntu
+     * @param seed Parametr odpowiadający za ziarno labiryntu
+     * @param algorithm Parametr określający nazwę generatora albo null (domyślny)
+     * @return Zwraca labirynt zakodowany w formacie MazeCodec - z pamięci podręcznej, jeżeli był już generowany
+     */
+    public static String genEncodedLab(int x, int y, long seed, String algorithm)
+    {
+        MazeGenerator generator = MazeGeneratorRegistry.select(algorithm, x + 2, y + 2, false);
+        RequestTrace.maze(x + 2, y + 2, generator.getName());
+        String key = cacheKey(generator.getName(), "maze", x, y, seed);
+        String response = cache.get(key);
+        if (response == null) {
+            response = GridMaze.of(generator.generate(x + 2, y + 2, seed)).encode();
+            cache.put(key, response);
+        }
+        return response;
+    }
+
+    /**
+     *
+     * @param x Parametr odpowiadający za szerokość labiryntu
+     * @param y Parametr odpowiadający za wysokość labiryntu
+     * @param seed Parametr odpowiadający za ziarno labiryntu
+     * @return Zwraca labirynt zserializowany Serializatorem (stary format) - z pamięci podręcznej, jeżeli był już generowany
+     * @throws IOException
+     */
+    public static String genSerializedLab(int x, int y, long seed) throws IOException
+    {
+        MazeGenerator generator = MazeGeneratorRegistry.select(null, x + 2, y + 2, false);
+        RequestTrace.maze(x + 2, y + 2, generator.getName());
+        String key = cacheKey(generator.getName(), "coords", x, y, seed);
+        String response = cache.get(key);
+        if (response == null) {
+            ArrayList<Coord> lab = GridMaze.of(generator.generate(x + 2, y + 2, seed)).toCoords();
+            EncodeEvent encode = new EncodeEvent();
+            encode.start();
+            response = Serializator.toString(lab.toArray(new Coord[lab.size()]));
+            encode.payload(response.length());
+            encode.finish();
+            cache.put(key, response);
+        }
+        return response;
+    }
+
+    /**
+     *
+     * @param maxBytes Parametr odpowiadający za maksymalny rozmiar pamięci podręcznej labiryntów w bajtach
+     */
+    public static void setCacheSize(long maxBytes)
+    {
+        cache = new MazeCache(maxBytes);
+    }
+
+    /**
+     * Uruchamia pulę labiryntów generowanych z wyprzedzeniem (poprzednia pula jest zatrzymywana).
+     *
+     * @param budget Parametr odpowiadający za łączną liczbę gotowych labiryntów w puli (0 wyłącza pulę)
+     * @param threads Parametr odpowiadający za liczbę wątków generujących
+     * @param maxCells Parametr odpowiadający za największą liczbę pól labiryntu trzymanego w puli
+     */
+    public static void startPool(int budget, int threads, long maxCells)
+    {
+        MazePool old = pool;
+        pool = null;
+        if (old != null) {
+            old.stop();
+        }
+        if (budget > 0 && threads > 0) {
+            MazePool fresh = new MazePool(budget, threads, maxCells);
+            fresh.start();
+            pool = fresh;
+        }
+    }
+
+    /**
+     *
+     * @return Zwraca pulę labiryntów generowanych z wyprzedzeniem albo null, jeżeli jest wyłączona
+     */
+    public static MazePool getPool()
+    {
+        return pool;
+    }
+
+    /**
+     * Ustawia generowanie partii labiryntów (poprzednie ustawienia obowiązują trwające partie).
+     *
+     * @param threads Parametr odpowiadający za liczbę wątków puli fork-join
+     * @param maxCount Parametr odpowiadający za największą liczbę labiryntów w partii
+     * @param budgetBytes Parametr odpowiadający za łączną szacowaną pamięć labiryntów generowanych jednocześnie przez wszystkie partie
+     */
+    public static synchronized void startBatch(int threads, int maxCount, long budgetBytes)
+    {
+        batch = new MazeBatch(threads, maxCount, budgetBytes);
+    }
+
+    /**
+     *
+     * @return Zwraca generator partii labiryntów
+     */
+    public static synchronized MazeBatch getBatch()
+    {
+        if (batch == null) {
+            batch = new MazeBatch(Runtime.getRuntime().availableProcessors(), DEFAULT_BATCH_MAX, DEFAULT_BATCH_BUDGET);
+        }
+        return batch;
+    }
+
+    /**
+     *
+     * @return Zwraca pamięć podręczną labiryntów (do odczytu liczników)
+     */
+    public static MazeCache getCache()
+    {
+        return cache;
+    }
+
+    private static long randomSeed()
+    {
+        return ThreadLocalRandom.current().nextLong();
+    }
+
+    private static String cacheKey(String algorithm, String format, int x, int y, long seed)
+    {
+        return algorithm + "/" + format + "/" + x + "x" + y + "/" + seed;
+    }
+
+    private static final long DEFAULT_CACHE_BYTES = 64L * 1024 * 1024;
+    private static final int DEFAULT_BATCH_MAX = 1000;
+    private static final long DEFAULT_BATCH_BUDGET = 64L * 1024 * 1024;
+
+    private static volatile MazeCache cache = new MazeCache(DEFAULT_CACHE_BYTES);
+    private static volatile MazePool pool;
+    private static volatile MazeBatch batch;
 }
@@ -5,15 +5,13 @@ import labyrinth.server.serialization.Coord;
 
 public class Maze {
 
-        private static final int WALL = 0;
-        private static final int SPACE = 1;
 	private int xStart;
 	private int xMeta;
 
-        private byte[][] data;
+        private MazeGrid grid;
         private int width;
         private int height;
-        private java.util.Random rand = new java.util.Random();
+        private java.util.Random rand;
 
     /**
      *
@@ -21,37 +19,71 @@ public class Maze {
      * @param height - parametr odpowiadający wysokości zadanego labiryntu
      */
     public Maze(int width, int height) {
+            this(width, height, new java.util.Random());
+        }
+
+    /**
+     * Tworzy labirynt w pełni wyznaczony przez ziarno - dla tego samego
+     * rozmiaru i ziarna zawsze powstaje ten sam labirynt.
+     *
+     * @param width - parametr odpowiadający szerokości zadanego labiryntu
+     * @param height - parametr odpowiadający wysokości zadanego labiryntu
+     * @param seed - ziarno generatora liczb losowych
+     */
+    public Maze(int width, int height, long seed) {
+            this(width, height, new java.util.Random(seed));
+        }
+
+    private Maze(int width, int height, java.util.Random rand) {
             this.width = width;
             this.height = height;
-            data = new byte[width][];
+            this.rand = rand;
+            grid = new MazeGrid(width, height);
             generate();
         }
 
     /**
-     * 
+     * Rzeźbi labirynt iteracyjnie (przeszukiwanie w głąb z jawnym stosem).
+     * Na stosie leżą indeksy komórek w siatce, więc głębokość przejścia nie
+     * zależy od stosu wątku. Z komórki na szczycie stosu wybierany jest losowo
+     * jeden z jeszcze nieodwiedzonych sąsiadów; gdy takich brak, komórka jest
+     * zdejmowana ze stosu.
+     *
      * @param x - xowy coord startu rzeźbienia labiryntu
      * @param y - yowy coord startu rzeźbienia labiryntu
      */
         private void carve(int x, int y) {
 
-            final int[] upx = {1, -1, 0, 0};
-            final int[] upy = {0, 0, 1, -1};
-
-            int dir = rand.nextInt(4);
-            int count = 0;
-            while (count < 20) {
-                final int x1 = x + upx[dir];
-                final int y1 = y + upy[dir];
-                final int x2 = x1 + upx[dir];
-                final int y2 = y1 + upy[dir];
-                if (data[x1][y1] == WALL && data[x2][y2] == WALL) {
-                    data[x1][y1] = SPACE;
-                    data[x2][y2] = SPACE;
-                    carve(x2, y2);
-                } else {
-                    dir = rand.nextInt(4);
-                    count += 1;
+            final int[] step = {1, -1, width, -width};
+            final int[] free = new int[4];
+
+            //kazda komorka trafia na stos co najwyzej raz
+            int[] stack = new int[(width / 2) * (height / 2) + 1];
+            int top = 0;
+            stack[top++] = grid.index(x, y);
+
+            while (top > 0) {
+                final int cell = stack[top - 1];
+
+                int count = 0;
+                for (int dir = 0; dir < 4; dir++) {
+                    final int c1 = cell + step[dir];
+                    if (grid.isWall(c1) && grid.isWall(c1 + step[dir])) {
+                        free[count++] = dir;
+                    }
+                }
+
+                if (count == 0) {
+                    top--;
+                    continue;
                 }
+
+                final int dir = free[rand.nextInt(count)];
+                final int c1 = cell + step[dir];
+                final int c2 = c1 + step[dir];
+                grid.clearWall(c1);
+                grid.clearWall(c2);
+                stack[top++] = c2;
             }
         }
 
@@ -59,23 +91,8 @@ public class Maze {
      * Odpowiada za generowanie labiryntu
      */
     public void generate() {
-			//wypelnienie labiryntu scianami
-            for (int x = 0; x < width; x++) {
-                data[x] = new byte[height];
-                for (int y = 0; y < height; y++) {
-                    data[x][y] = WALL;
-                }
-            }
-			//tworzenie poziomej otoczki wolnej przestrzeni(ograniczenie poziome)
-            for (int x = 0; x < width; x++) {
-                data[x][0] = SPACE;
-                data[x][height - 1] = SPACE;
-            }
-			//tworzenie pionowej otoczki wolnej przestrzeni(ograniczenie pionowe)
-            for (int y = 0; y < height; y++) {
-                data[0][y] = SPACE;
-                data[width - 1][y] = SPACE;
-            }
+			//wypelnienie labiryntu scianami, z otoczka wolnej przestrzeni dookola
+            grid.fillRect(1, 1, width - 1, height - 1);
 
 			//losowanie koordu start
 			xStart = rand.nextInt(width-3) + 2;
@@ -90,34 +107,48 @@ public class Maze {
 			}
 
 			//coord start
-            data[xStart][2] = SPACE;
+            grid.clearWall(grid.index(xStart, 2));
 			//rzezbienie labiryntu
             carve(xStart, 2);
 			
-            data[xStart][1] = SPACE;
+            grid.clearWall(grid.index(xStart, 1));
 			//coord meta
-            data[xMeta][height - 2] = SPACE;
+            grid.clearWall(grid.index(xMeta, height - 2));
 			//data[xMeta][height - 3] = SPACE;
         }
 
     /**
+     *
+     * @return zwraca bitową siatkę labiryntu (bez kopiowania)
+     */
+    public MazeGrid getGrid() {
+            return grid;
+        }
+
+    /**
+     *
+     * @return zwraca pole startu labiryntu
+     */
+    public Coord getStart() {
+            return new Coord(xStart, 1);
+        }
+
+    /**
+     *
+     * @return zwraca pole mety labiryntu
+     */
+    public Coord getMeta() {
+            return new Coord(xMeta, height - 2);
+        }
+
+    /**
+     * Buduje listę Coordynatów dla starszych wywołań - tylko tu ściany są
+     * zamieniane na obiekty.
      *
      * @return zwraca ArrayListę Coordynatów labiryntu
      */
     public ArrayList<Coord> genLabirynt() {
-            ArrayList<Coord> cor = new ArrayList<>();
-            for (int y = 0; y < height; y++) {
-                for (int x = 0; x < width; x++) {
-                    if (data[x][y] == WALL) {
-                        cor.add(new Coord(x, y));
-                    }
-                }
-            }
-			//coord start
-			cor.add(0, new Coord(xStart, 1));
-			//coord meta
-        	cor.add(new Coord(xMeta, height-2));
-            return cor;
+            return new GridMaze(grid, getStart(), getMeta()).toCoords();
         }
    
     /**
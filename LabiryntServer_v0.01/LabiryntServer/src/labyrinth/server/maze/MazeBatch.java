@@ -0,0 +1,198 @@
+package labyrinth.server.maze;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Klasa reprezentująca generowanie wielu labiryntów naraz.
+ * Zakres labiryntów partii jest dzielony na połowy w puli fork-join, a każdy
+ * gotowy labirynt trafia do kolejki partii, z której od razu odbiera go
+ * wątek zamawiający (bez czekania na całą partię). Wątki puli nie piszą
+ * więc do klienta - wolny odbiorca nie wstrzymuje innych partii.
+ * Liczba labiryntów w partii jest ograniczona, a łączna szacowana pamięć
+ * labiryntów generowanych jednocześnie przez wszystkie partie (koszt
+ * deklarowany przez generator) nie może przekroczyć budżetu.
+ * @author informatyka
+ */
+public class MazeBatch {
+
+    /**
+     * Interfejs odbiorcy gotowych labiryntów. Wołany tylko w wątku, który wywołał generate.
+     */
+    public interface Sink {
+
+        /**
+         *
+         * @param index Parametr określający numer labiryntu w partii (od 0)
+         * @param maze Parametr zawierający labirynt zakodowany w formacie MazeCodec
+         */
+        void accept(int index, String maze);
+    }
+
+    /**
+     *
+     * @param threads Parametr odpowiadający za liczbę wątków puli fork-join
+     * @param maxCount Parametr odpowiadający za największą liczbę labiryntów w partii
+     * @param budgetBytes Parametr odpowiadający za łączną szacowaną pamięć labiryntów generowanych jednocześnie przez wszystkie partie
+     */
+    public MazeBatch(int threads, int maxCount, long budgetBytes)
+    {
+        this.forkJoin = new ForkJoinPool(Math.max(1, threads));
+        this.maxCount = maxCount;
+        this.budgetBytes = budgetBytes;
+    }
+
+    /**
+     * Generuje partię labiryntów i czeka na jej zakończenie. Labirynty
+     * trafiają do odbiorcy w kolejności ukończenia, nie numerów, w wątku
+     * wywołującym.
+     *
+     * @param count Parametr odpowiadający za liczbę labiryntów
+     * @param x Parametr odpowiadający za szerokość labiryntu
+     * @param y Parametr odpowiadający za wysokość labiryntu
+     * @param seed Parametr odpowiadający za ziarno pierwszego labiryntu (kolejne mają seed + i) albo null
+     * @param algorithm Parametr określający nazwę generatora albo null (domyślny)
+     * @param sink Parametr określający odbiorcę gotowych labiryntów
+     * @return Zwraca false, jeżeli partia nie mieści się w wolnej części budżetu i nie została wygenerowana
+     * @throws IllegalArgumentException gdy liczba labiryntów jest spoza zakresu 1 - maxCount lub partia przekracza cały budżet
+     * @throws InterruptedException gdy wątek został przerwany w trakcie oczekiwania na labirynt
+     */
+    public boolean generate(int count, int x, int y, Long seed, String algorithm, Sink sink) throws InterruptedException
+    {
+        if (count <= 0 || count > maxCount) {
+            throw new IllegalArgumentException("Liczba labiryntow spoza zakresu 1 - " + maxCount + ": " + count);
+        }
+        MazeGenerator generator = MazeGeneratorRegistry.select(algorithm, x + 2, y + 2, false);
+        long bytes = count * MazeGeneratorRegistry.requiredBytes(generator, x + 2, y + 2, false);
+        if (bytes > budgetBytes) {
+            throw new IllegalArgumentException("Partia wieksza niz budzet generowania: " + bytes + " B");
+        }
+        if (!reserve(bytes)) {
+            rejected.incrementAndGet();
+            return false;
+        }
+        LinkedBlockingQueue<Finished> finished = new LinkedBlockingQueue<>();
+        ForkJoinTask<Void> task = forkJoin.submit(new Part(0, count, x, y, seed, generator, algorithm, finished));
+        try {
+            for (int i = 0; i < count; i++) {
+                Finished next;
+                while ((next = finished.poll(WAIT_MS, TimeUnit.MILLISECONDS)) == null) {
+                    if (task.isDone()) {
+                        //partia skonczona bez tego labiryntu - join rzuca wyjatek generatora
+                        task.join();
+                    }
+                }
+                sink.accept(next.index, next.maze);
+            }
+            batches.incrementAndGet();
+            mazes.addAndGet(count);
+            return true;
+        } finally {
+            //budzet zwalniany dopiero, gdy pula skonczy generowac
+            task.quietlyJoin();
+            usedBytes.addAndGet(-bytes);
+        }
+    }
+
+    private boolean reserve(long bytes)
+    {
+        while (true) {
+            long used = usedBytes.get();
+            if (used + bytes > budgetBytes) {
+                return false;
+            }
+            if (usedBytes.compareAndSet(used, used + bytes)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     *
+     * @return Zwraca największą liczbę labiryntów w partii
+     */
+    public int getMaxCount()
+    {
+        return maxCount;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "batches=" + batches.get() + " mazes=" + mazes.get()
+                + " rejected=" + rejected.get()
+                + " bytes=" + usedBytes.get() + "/" + budgetBytes
+                + " parallelism=" + forkJoin.getParallelism();
+    }
+
+    private static class Finished
+    {
+        Finished(int index, String maze)
+        {
+            this.index = index;
+            this.maze = maze;
+        }
+
+        final int index;
+        final String maze;
+    }
+
+    private static class Part extends RecursiveAction
+    {
+        Part(int from, int to, int x, int y, Long seed, MazeGenerator generator, String algorithm, LinkedBlockingQueue<Finished> finished)
+        {
+            this.from = from;
+            this.to = to;
+            this.x = x;
+            this.y = y;
+            this.seed = seed;
+            this.generator = generator;
+            this.algorithm = algorithm;
+            this.finished = finished;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new Part(from, middle, x, y, seed, generator, algorithm, finished),
+                        new Part(middle, to, x, y, seed, generator, algorithm, finished));
+                return;
+            }
+            //generator rownolegly (division) dzieli labirynt w tej samej puli;
+            //labirynty bez ziarna z pominieciem MazePool - partia oproznilaby pule
+            String maze = seed == null
+                    ? GridMaze.of(generator.generate(x + 2, y + 2, ThreadLocalRandom.current().nextLong())).encode()
+                    : LabUtils.genEncodedLab(x, y, seed + from, algorithm);
+            finished.add(new Finished(from, maze));
+        }
+
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+        private final int x;
+        private final int y;
+        private final Long seed;
+        private final MazeGenerator generator;
+        private final String algorithm;
+        private final LinkedBlockingQueue<Finished> finished;
+    }
+
+    private static final long WAIT_MS = 100;
+
+    private final ForkJoinPool forkJoin;
+    private final int maxCount;
+    private final long budgetBytes;
+    private final AtomicLong usedBytes = new AtomicLong();
+
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong mazes = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+}
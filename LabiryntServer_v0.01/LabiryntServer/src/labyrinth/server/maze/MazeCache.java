@@ -0,0 +1,139 @@
+package labyrinth.server.maze;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Klasa reprezentująca pamięć podręczną gotowych (zakodowanych) odpowiedzi z labiryntami.
+ * Wpisy są usuwane w kolejności LRU, gdy łączny rozmiar odpowiedzi przekroczy limit bajtów.
+ * Przechowywane są tylko labirynty z podanym ziarnem - tylko one są powtarzalne.
+ * @author informatyka
+ */
+public class MazeCache {
+
+    /**
+     *
+     * @param maxBytes Parametr odpowiadający za maksymalny łączny rozmiar odpowiedzi w pamięci (0 wyłącza pamięć podręczną)
+     */
+    public MazeCache(long maxBytes)
+    {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     *
+     * @param key Parametr określający klucz labiryntu (algorytm, format, rozmiar, ziarno)
+     * @return Zwraca zapamiętaną odpowiedź albo null, jeżeli jej nie ma
+     */
+    public synchronized String get(String key)
+    {
+        String value = entries.get(key);
+        if (value == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return value;
+    }
+
+    /**
+     *
+     * @param key Parametr określający klucz labiryntu (algorytm, format, rozmiar, ziarno)
+     * @param value Parametr określający zakodowaną odpowiedź
+     */
+    public synchronized void put(String key, String value)
+    {
+        long size = value.length();
+        if (size > maxBytes) {
+            return;
+        }
+        String previous = entries.put(key, value);
+        if (previous != null) {
+            cachedBytes -= previous.length();
+        }
+        cachedBytes += size;
+
+        Iterator<Map.Entry<String, String>> it = entries.entrySet().iterator();
+        while (cachedBytes > maxBytes && it.hasNext()) {
+            Map.Entry<String, String> eldest = it.next();
+            cachedBytes -= eldest.getValue().length();
+            it.remove();
+            evictions++;
+        }
+    }
+
+    /**
+     *
+     * @return Zwraca liczbę trafień
+     */
+    public synchronized long getHits()
+    {
+        return hits;
+    }
+
+    /**
+     *
+     * @return Zwraca liczbę chybień
+     */
+    public synchronized long getMisses()
+    {
+        return misses;
+    }
+
+    /**
+     *
+     * @return Zwraca odsetek trafień (0 - 1)
+     */
+    public synchronized double getHitRate()
+    {
+        long total = hits + misses;
+        return total == 0 ? 0.0 : (double) hits / total;
+    }
+
+    /**
+     *
+     * @return Zwraca liczbę wpisów usuniętych z powodu limitu rozmiaru
+     */
+    public synchronized long getEvictions()
+    {
+        return evictions;
+    }
+
+    /**
+     *
+     * @return Zwraca łączny rozmiar zapamiętanych odpowiedzi w bajtach
+     */
+    public synchronized long getCachedBytes()
+    {
+        return cachedBytes;
+    }
+
+    /**
+     *
+     * @return Zwraca liczbę zapamiętanych odpowiedzi
+     */
+    public synchronized int getSize()
+    {
+        return entries.size();
+    }
+
+    @Override
+    public synchronized String toString()
+    {
+        return "hits=" + hits + " misses=" + misses
+                + " hitRate=" + String.format(Locale.ROOT, "%.3f", getHitRate())
+                + " evictions=" + evictions
+                + " entries=" + entries.size()
+                + " bytes=" + cachedBytes + "/" + maxBytes;
+    }
+
+    private final long maxBytes;
+    private final LinkedHashMap<String, String> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long cachedBytes;
+}
@@ -0,0 +1,82 @@
+package labyrinth.server.maze;
+
+/**
+ * Klasa reprezentująca deklarowany koszt generatora labiryntów.
+ * Złożoności są opisowe (n - liczba pól siatki), a do decyzji serwera
+ * służy szacunek szczytowej pamięci: bajty na pole siatki, a dla generatora
+ * strumieniowego bajty na kolumnę (pamięć nie zależy wtedy od wysokości).
+ * @author informatyka
+ */
+public class MazeCost {
+
+    /**
+     *
+     * @param time - złożoność czasowa
+     * @param memory - złożoność pamięciowa
+     * @param streaming - czy generator tworzy labirynt wiersz po wierszu
+     * @param bytesPerUnit - szczytowa pamięć na pole siatki (na kolumnę dla generatora strumieniowego)
+     */
+    public MazeCost(String time, String memory, boolean streaming, double bytesPerUnit) {
+        this.time = time;
+        this.memory = memory;
+        this.streaming = streaming;
+        this.bytesPerUnit = bytesPerUnit;
+    }
+
+    /**
+     *
+     * @return zwraca złożoność czasową
+     */
+    public String getTime() {
+        return time;
+    }
+
+    /**
+     *
+     * @return zwraca złożoność pamięciową
+     */
+    public String getMemory() {
+        return memory;
+    }
+
+    /**
+     *
+     * @return zwraca true, jeżeli generator tworzy labirynt wiersz po wierszu
+     */
+    public boolean isStreaming() {
+        return streaming;
+    }
+
+    /**
+     * Szacuje szczytową pamięć generatora - dla generatorów pełnej siatki
+     * razem z siatką, dla strumieniowych bez bufora wierszy.
+     *
+     * @param width - szerokość siatki labiryntu
+     * @param height - wysokość siatki labiryntu
+     * @return zwraca szacowaną liczbę bajtów
+     */
+    public long peakBytes(int width, int height) {
+        double units = streaming ? width : (double) width * height;
+        return (long) Math.ceil(bytesPerUnit * units);
+    }
+
+    /**
+     *
+     * @param width - szerokość siatki labiryntu
+     * @param height - wysokość siatki labiryntu
+     * @return zwraca liczbę bajtów siatki bitowej tego rozmiaru
+     */
+    public static long gridBytes(int width, int height) {
+        return ((long) width * height + 63) / 64 * 8;
+    }
+
+    @Override
+    public String toString() {
+        return "time=" + time + " memory=" + memory + " streaming=" + streaming;
+    }
+
+    private final String time;
+    private final String memory;
+    private final boolean streaming;
+    private final double bytesPerUnit;
+}
@@ -0,0 +1,32 @@
+package labyrinth.server.maze;
+
+/**
+ * Interfejs generatora labiryntów. Wszystkie generatory tworzą ten sam układ
+ * pól (otoczka wolnych pól, komórki na parzystych współrzędnych od (2, 2),
+ * start w wierszu 1, meta w wierszu height - 2) i oddają wynik jako MazeRows.
+ * Dla tego samego rozmiaru i ziarna generator zawsze tworzy ten sam labirynt.
+ * @author informatyka
+ */
+public interface MazeGenerator {
+
+    /**
+     *
+     * @return zwraca nazwę, po której klient wybiera generator
+     */
+    String getName();
+
+    /**
+     *
+     * @return zwraca deklarowany koszt generatora
+     */
+    MazeCost getCost();
+
+    /**
+     *
+     * @param width - szerokość siatki labiryntu (co najmniej 5)
+     * @param height - wysokość siatki labiryntu (co najmniej 5)
+     * @param seed - ziarno generatora liczb losowych
+     * @return zwraca labirynt odczytywany wierszami
+     */
+    MazeRows generate(int width, int height, long seed);
+}
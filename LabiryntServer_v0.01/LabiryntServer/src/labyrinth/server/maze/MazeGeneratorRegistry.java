@@ -0,0 +1,355 @@
+package labyrinth.server.maze;
+
+import labyrinth.server.metrics.Counter;
+import labyrinth.server.metrics.Histogram;
+import labyrinth.server.metrics.Metrics;
+import labyrinth.server.serialization.Coord;
+import labyrinth.server.trace.GenerateEvent;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Klasa reprezentująca rejestr generatorów labiryntów wybieranych po nazwie.
+ * Na podstawie deklarowanego kosztu rejestr przyjmuje lub odrzuca zadanie
+ * (szczytowa pamięć nie może przekroczyć limitu, a suma szczytowych pamięci
+ * labiryntów generowanych w tej chwili - budżetu serwera), a zadanie bez wskazanego
+ * algorytmu, które ma być wysłane wierszami, kieruje do generatora
+ * strumieniowego, gdy domyślny nie mieści się w limicie.
+ * Czas generowania trafia do histogramu labyrinth_generation_seconds
+ * z etykietami algorytmu i przedziału rozmiaru (liczby pól siatki).
+ * @author informatyka
+ */
+public class MazeGeneratorRegistry {
+
+    /**
+     * Rejestruje generator (generator o tej samej nazwie jest zastępowany).
+     *
+     * @param generator Parametr określający generator
+     */
+    public static void register(MazeGenerator generator)
+    {
+        GENERATORS.put(generator.getName(), generator);
+    }
+
+    /**
+     *
+     * @param name Parametr określający nazwę generatora
+     * @return Zwraca generator o podanej nazwie
+     * @throws IllegalArgumentException gdy takiego generatora nie ma
+     */
+    public static MazeGenerator get(String name)
+    {
+        MazeGenerator generator = GENERATORS.get(name);
+        if (generator == null) {
+            throw new IllegalArgumentException("Nieznany algorytm: " + name);
+        }
+        return generator;
+    }
+
+    /**
+     *
+     * @return Zwraca generator używany, gdy klient nie wskazał algorytmu
+     */
+    public static MazeGenerator getDefault()
+    {
+        return get(defaultName);
+    }
+
+    /**
+     *
+     * @param name Parametr określający nazwę domyślnego generatora
+     * @param maxBytes Parametr określający limit szczytowej pamięci generowania jednego labiryntu
+     * @param budgetBytes Parametr określający limit łącznej szczytowej pamięci labiryntów generowanych jednocześnie
+     */
+    public static void configure(String name, long maxBytes, long budgetBytes)
+    {
+        get(name);
+        defaultName = name;
+        MazeGeneratorRegistry.maxBytes = maxBytes;
+        MazeGeneratorRegistry.budgetBytes = budgetBytes;
+    }
+
+    /**
+     *
+     * @return Zwraca łączną szacowaną pamięć labiryntów generowanych w tej chwili w bajtach
+     */
+    public static long getUsedBytes()
+    {
+        return usedBytes.get();
+    }
+
+    /**
+     * Pobiera szacowaną pamięć z budżetu serwera - bez czekania, tak jak
+     * MazeBatch: zadanie, które się nie mieści, jest odrzucane.
+     */
+    private static boolean reserve(long bytes)
+    {
+        while (true) {
+            long used = usedBytes.get();
+            if (used + bytes > budgetBytes) {
+                return false;
+            }
+            if (usedBytes.compareAndSet(used, used + bytes)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     *
+     * @param generator Parametr określający generator
+     * @param width Parametr określający szerokość siatki labiryntu
+     * @param height Parametr określający wysokość siatki labiryntu
+     * @param streamed Parametr określający, czy labirynt będzie wysyłany wierszami (bez zbierania całej siatki)
+     * @return Zwraca szacowaną szczytową pamięć wygenerowania labiryntu w bajtach
+     */
+    public static long requiredBytes(MazeGenerator generator, int width, int height, boolean streamed)
+    {
+        MazeCost cost = generator.getCost();
+        long bytes = cost.peakBytes(width, height);
+        if (cost.isStreaming() && !streamed) {
+            bytes += MazeCost.gridBytes(width, height);
+        }
+        return bytes;
+    }
+
+    /**
+     * Wybiera generator dla zadania i sprawdza, czy zmieści się w limicie pamięci.
+     *
+     * @param name Parametr określający nazwę generatora albo null (wybór serwera)
+     * @param width Parametr określający szerokość siatki labiryntu
+     * @param height Parametr określający wysokość siatki labiryntu
+     * @param streamed Parametr określający, czy labirynt będzie wysyłany wierszami
+     * @return Zwraca wybrany generator
+     * @throws IllegalArgumentException gdy generatora nie ma lub żaden nie mieści się w limicie
+     */
+    public static MazeGenerator select(String name, int width, int height, boolean streamed)
+    {
+        MazeGenerator chosen = get(name == null ? defaultName : name);
+        if (requiredBytes(chosen, width, height, streamed) <= maxBytes) {
+            return chosen;
+        }
+        if (name == null && streamed) {
+            MazeGenerator cheapest = null;
+            for (MazeGenerator generator : GENERATORS.values()) {
+                if (generator.getCost().isStreaming()
+                        && (cheapest == null || requiredBytes(generator, width, height, true) < requiredBytes(cheapest, width, height, true))) {
+                    cheapest = generator;
+                }
+            }
+            if (cheapest != null && requiredBytes(cheapest, width, height, true) <= maxBytes) {
+                return cheapest;
+            }
+        }
+        throw new IllegalArgumentException("Labirynt " + width + "x" + height + " (" + chosen.getName()
+                + ") przekracza limit pamieci " + maxBytes + " B");
+    }
+
+    /**
+     * Generuje labirynt w całości w siatce.
+     *
+     * @param name Parametr określający nazwę generatora albo null (domyślny)
+     * @param width Parametr określający szerokość siatki labiryntu
+     * @param height Parametr określający wysokość siatki labiryntu
+     * @param seed Parametr określający ziarno labiryntu
+     * @return Zwraca wygenerowany labirynt
+     */
+    public static GridMaze grid(String name, int width, int height, long seed)
+    {
+        return GridMaze.of(select(name, width, height, false).generate(width, height, seed));
+    }
+
+    /**
+     *
+     * @return Zwraca opis zarejestrowanych generatorów i ich kosztów (jedna linia)
+     */
+    public static String describe()
+    {
+        StringBuilder sb = new StringBuilder("default=" + defaultName + " maxbytes=" + maxBytes
+                + " budget=" + usedBytes.get() + "/" + budgetBytes);
+        for (Map.Entry<String, MazeGenerator> e : new TreeMap<>(GENERATORS).entrySet()) {
+            sb.append("; ").append(e.getKey()).append(' ').append(e.getValue().getCost());
+        }
+        return sb.toString();
+    }
+
+    private static MazeGenerator generator(final String name, final MazeCost cost, final Factory factory)
+    {
+        final Histogram[] times = new Histogram[SIZE_NAMES.length];
+        for (int i = 0; i < times.length; i++) {
+            times[i] = Metrics.histogram("labyrinth_generation_seconds",
+                    "algorithm=\"" + name + "\",size=\"" + SIZE_NAMES[i] + "\"", "Czas generowania labiryntu");
+        }
+        return new MazeGenerator() {
+            @Override
+            public String getName() {
+                return name;
+            }
+
+            @Override
+            public MazeCost getCost() {
+                return cost;
+            }
+
+            @Override
+            public MazeRows generate(int width, int height, long seed) {
+                Histogram time = times[sizeBucket(width, height)];
+                if (cost.isStreaming()) {
+                    //wiersze powstaja dopiero przy odczycie - czas liczy TimedRows
+                    long begin = System.nanoTime();
+                    MazeRows maze = factory.create(width, height, seed);
+                    return new TimedRows(maze, time, System.nanoTime() - begin);
+                }
+                //generator strumieniowy trzyma O(szerokosci) - budzet liczy tylko pelne siatki
+                long bytes = cost.peakBytes(width, height);
+                if (!reserve(bytes)) {
+                    REJECTED.inc();
+                    throw new IllegalStateException("Budzet pamieci generowania zajety: " + usedBytes.get()
+                            + " + " + bytes + " > " + budgetBytes + " B");
+                }
+                try {
+                    GenerateEvent event = new GenerateEvent();
+                    event.maze(width, height, name);
+                    event.start();
+                    long begin = System.nanoTime();
+                    MazeRows maze = factory.create(width, height, seed);
+                    time.record(System.nanoTime() - begin);
+                    event.finish();
+                    return maze;
+                } finally {
+                    usedBytes.addAndGet(-bytes);
+                }
+            }
+        };
+    }
+
+    private static int sizeBucket(int width, int height)
+    {
+        long cells = (long) width * height;
+        int i = 0;
+        while (i < SIZE_LIMITS.length && cells > SIZE_LIMITS[i]) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Labirynt strumieniowy, który sumuje czas tworzenia kolejnych wierszy
+     * (bez czasu ich wysyłania) i zapisuje go w histogramie po ostatnim wierszu.
+     */
+    private static class TimedRows implements MazeRows {
+
+        TimedRows(MazeRows maze, Histogram time, long nanos) {
+            this.maze = maze;
+            this.time = time;
+            this.nanos = nanos;
+        }
+
+        @Override
+        public int getWidth() {
+            return maze.getWidth();
+        }
+
+        @Override
+        public int getHeight() {
+            return maze.getHeight();
+        }
+
+        @Override
+        public Coord getStart() {
+            return maze.getStart();
+        }
+
+        @Override
+        public Coord getMeta() {
+            return maze.getMeta();
+        }
+
+        @Override
+        public boolean hasNextRow() {
+            return maze.hasNextRow();
+        }
+
+        @Override
+        public void nextRow(MazeGrid target, int row) {
+            long begin = System.nanoTime();
+            maze.nextRow(target, row);
+            nanos += System.nanoTime() - begin;
+            if (!maze.hasNextRow()) {
+                time.record(nanos);
+            }
+        }
+
+        private final MazeRows maze;
+        private final Histogram time;
+        private long nanos;
+    }
+
+    private interface Factory {
+
+        MazeRows create(int width, int height, long seed);
+    }
+
+    private static final Map<String, MazeGenerator> GENERATORS = new ConcurrentHashMap<>();
+    private static final long DEFAULT_MAX_BYTES = 256L * 1024 * 1024;
+
+    //przedzialy rozmiaru do histogramow czasu - liczba pol siatki do ok. 100x100, 1000x1000, 4000x4000 i wiecej
+    private static final long[] SIZE_LIMITS = {10000L, 1000000L, 16000000L};
+    private static final String[] SIZE_NAMES = {"small", "medium", "large", "huge"};
+
+    private static volatile String defaultName = "backtracker";
+    private static volatile long maxBytes = DEFAULT_MAX_BYTES;
+    private static volatile long budgetBytes = DEFAULT_MAX_BYTES;
+    private static final AtomicLong usedBytes = new AtomicLong();
+    private static final Counter REJECTED = Metrics.counter("labyrinth_generation_rejected_total", null,
+            "Generowania odrzucone z braku budzetu pamieci");
+
+    static
+    {
+        //pamiec: siatka to 1/8 B na pole, komorki to co czwarte pole siatki
+        register(generator("backtracker", new MazeCost("O(n)", "O(n)", false, 1.125), new Factory() {
+            @Override
+            public MazeRows create(int width, int height, long seed) {
+                Maze maze = new Maze(width, height, seed);
+                return new GridMaze(maze.getGrid(), maze.getStart(), maze.getMeta());
+            }
+        }));
+        register(generator("prim", new MazeCost("O(n)", "O(n)", false, 1.375), new Factory() {
+            @Override
+            public MazeRows create(int width, int height, long seed) {
+                PrimMaze maze = new PrimMaze(width, height, seed);
+                return new GridMaze(maze.getGrid(), maze.getStart(), maze.getMeta());
+            }
+        }));
+        register(generator("kruskal", new MazeCost("O(n*log(n))", "O(n)", false, 3.125), new Factory() {
+            @Override
+            public MazeRows create(int width, int height, long seed) {
+                KruskalMaze maze = new KruskalMaze(width, height, seed);
+                return new GridMaze(maze.getGrid(), maze.getStart(), maze.getMeta());
+            }
+        }));
+        register(generator("wilson", new MazeCost("expected-O(n*log(n))", "O(n)", false, 0.625), new Factory() {
+            @Override
+            public MazeRows create(int width, int height, long seed) {
+                WilsonMaze maze = new WilsonMaze(width, height, seed);
+                return new GridMaze(maze.getGrid(), maze.getStart(), maze.getMeta());
+            }
+        }));
+        register(generator("division", new MazeCost("O(n)", "O(n)", false, 0.125), new Factory() {
+            @Override
+            public MazeRows create(int width, int height, long seed) {
+                DivisionMaze maze = new DivisionMaze(width, height, seed);
+                return new GridMaze(maze.getGrid(), maze.getStart(), maze.getMeta());
+            }
+        }));
+        //eller pamieta tylko biezacy wiersz komorek: 3 tablice int i 4 boolean na komorke, co druga kolumna
+        register(generator("eller", new MazeCost("O(n)", "O(width)", true, 8), new Factory() {
+            @Override
+            public MazeRows create(int width, int height, long seed) {
+                return new EllerMaze(width, height, seed);
+            }
+        }));
+    }
+}
@@ -0,0 +1,244 @@
+package labyrinth.server.maze;
+
+/**
+ * Klasa reprezentująca płaską, bitową siatkę labiryntu.
+ * Każde pole zajmuje jeden bit tablicy long[] (1 - ściana, 0 - wolne pole),
+ * a pola są ułożone wierszami: indeks pola (x, y) to y * width + x.
+ * @author informatyka
+ */
+public class MazeGrid {
+
+    /**
+     *
+     * @param width - szerokość siatki (liczba pól w wierszu)
+     * @param height - wysokość siatki (liczba wierszy)
+     */
+    public MazeGrid(int width, int height) {
+        long size = (long) width * height;
+        if (width <= 0 || height <= 0 || size > Integer.MAX_VALUE - 63) {
+            throw new IllegalArgumentException("Niepoprawny rozmiar labiryntu: " + width + "x" + height);
+        }
+        this.width = width;
+        this.height = height;
+        this.words = new long[(int) ((size + 63) >>> 6)];
+    }
+
+    /**
+     *
+     * @return zwraca szerokość siatki
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     *
+     * @return zwraca wysokość siatki
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     *
+     * @param x - xowy coord pola
+     * @param y - yowy coord pola
+     * @return zwraca indeks pola w siatce
+     */
+    public int index(int x, int y) {
+        return y * width + x;
+    }
+
+    /**
+     *
+     * @param index - indeks pola
+     * @return zwraca true, jeżeli pole jest ścianą
+     */
+    public boolean isWall(int index) {
+        return (words[index >>> 6] & (1L << index)) != 0;
+    }
+
+    /**
+     *
+     * @param x - xowy coord pola
+     * @param y - yowy coord pola
+     * @return zwraca true, jeżeli pole jest ścianą
+     */
+    public boolean isWall(int x, int y) {
+        return isWall(index(x, y));
+    }
+
+    /**
+     *
+     * @param index - indeks pola, które staje się ścianą
+     */
+    public void setWall(int index) {
+        words[index >>> 6] |= 1L << index;
+    }
+
+    /**
+     *
+     * @param index - indeks pola, które staje się wolne
+     */
+    public void clearWall(int index) {
+        words[index >>> 6] &= ~(1L << index);
+    }
+
+    /**
+     * Zamienia na ściany wszystkie pola o indeksach z przedziału [from, to).
+     *
+     * @param from - pierwszy indeks przedziału
+     * @param to - indeks za ostatnim polem przedziału
+     */
+    public void setWalls(int from, int to) {
+        if (from >= to) {
+            return;
+        }
+        int first = from >>> 6;
+        int last = (to - 1) >>> 6;
+        long firstMask = -1L << from;
+        long lastMask = -1L >>> -to;
+        if (first == last) {
+            words[first] |= firstMask & lastMask;
+            return;
+        }
+        words[first] |= firstMask;
+        for (int i = first + 1; i < last; i++) {
+            words[i] = -1L;
+        }
+        words[last] |= lastMask;
+    }
+
+    /**
+     * Zamienia na wolne wszystkie pola o indeksach z przedziału [from, to).
+     *
+     * @param from - pierwszy indeks przedziału
+     * @param to - indeks za ostatnim polem przedziału
+     */
+    public void clearWalls(int from, int to) {
+        if (from >= to) {
+            return;
+        }
+        int first = from >>> 6;
+        int last = (to - 1) >>> 6;
+        long firstMask = -1L << from;
+        long lastMask = -1L >>> -to;
+        if (first == last) {
+            words[first] &= ~(firstMask & lastMask);
+            return;
+        }
+        words[first] &= ~firstMask;
+        for (int i = first + 1; i < last; i++) {
+            words[i] = 0L;
+        }
+        words[last] &= ~lastMask;
+    }
+
+    /**
+     * Kopiuje wiersz innej siatki tej samej szerokości - po 64 pola naraz.
+     *
+     * @param source - siatka, z której wiersz jest kopiowany
+     * @param sourceRow - numer wiersza w siatce source
+     * @param row - numer wiersza w tej siatce, który zostaje nadpisany
+     */
+    public void copyRow(MazeGrid source, int sourceRow, int row) {
+        if (source.width != width) {
+            throw new IllegalArgumentException("Rozne szerokosci siatek: " + source.width + " i " + width);
+        }
+        final int from = source.index(0, sourceRow);
+        final int to = index(0, row);
+        for (int done = 0; done < width; done += 64) {
+            int count = Math.min(64, width - done);
+            putBits(to + done, count, source.getBits(from + done, count));
+        }
+    }
+
+    /**
+     * @return zwraca count (1 - 64) bitów od indeksu from, w młodszych bitach wyniku
+     */
+    private long getBits(int from, int count) {
+        int w = from >>> 6;
+        int shift = from & 63;
+        long value = words[w] >>> shift;
+        if (shift != 0 && shift + count > 64) {
+            value |= words[w + 1] << (64 - shift);
+        }
+        return count == 64 ? value : value & ((1L << count) - 1);
+    }
+
+    private void putBits(int from, int count, long value) {
+        clearWalls(from, from + count);
+        int w = from >>> 6;
+        int shift = from & 63;
+        words[w] |= value << shift;
+        if (shift != 0 && shift + count > 64) {
+            words[w + 1] |= value >>> (64 - shift);
+        }
+    }
+
+    /**
+     * Zamienia na ściany wszystkie pola prostokąta [x0, x1) x [y0, y1).
+     *
+     * @param x0 - pierwszy xowy coord
+     * @param y0 - pierwszy yowy coord
+     * @param x1 - xowy coord za prostokątem
+     * @param y1 - yowy coord za prostokątem
+     */
+    public void fillRect(int x0, int y0, int x1, int y1) {
+        for (int y = y0; y < y1; y++) {
+            setWalls(index(x0, y), index(x1, y));
+        }
+    }
+
+    /**
+     * Szuka najbliższej ściany w przedziale indeksów [from, to) - pozwala
+     * przejść po ścianach wiersza słowo po słowie zamiast pole po polu.
+     *
+     * @param from - pierwszy sprawdzany indeks
+     * @param to - indeks za ostatnim sprawdzanym polem
+     * @return zwraca indeks ściany albo -1, jeżeli w przedziale nie ma ścian
+     */
+    public int nextWall(int from, int to) {
+        if (from >= to) {
+            return -1;
+        }
+        int w = from >>> 6;
+        long word = words[w] & (-1L << from);
+        while (true) {
+            if (word != 0) {
+                int index = (w << 6) + Long.numberOfTrailingZeros(word);
+                return index < to ? index : -1;
+            }
+            if (((long) ++w << 6) >= to) {
+                return -1;
+            }
+            word = words[w];
+        }
+    }
+
+    /**
+     *
+     * @return zwraca liczbę ścian w siatce
+     */
+    public int countWalls() {
+        int count = 0;
+        for (long word : words) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    /**
+     * Zwraca wewnętrzną tablicę bitów (bez kopiowania) - bit i-ty słowa i / 64
+     * odpowiada polu o indeksie i.
+     *
+     * @return zwraca słowa siatki
+     */
+    public long[] getWords() {
+        return words;
+    }
+
+    private final int width;
+    private final int height;
+    private final long[] words;
+}
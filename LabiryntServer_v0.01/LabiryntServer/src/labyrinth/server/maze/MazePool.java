@@ -0,0 +1,281 @@
+package labyrinth.server.maze;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Klasa reprezentująca pulę labiryntów generowanych z wyprzedzeniem.
+ * Dla każdego często zamawianego rozmiaru trzymana jest kolejka gotowych,
+ * zakodowanych labiryntów (bez ziarna), uzupełniana przez wątki o niskim
+ * priorytecie. Łączna liczba labiryntów w puli jest ograniczona i dzielona
+ * między rozmiary proporcjonalnie do (wygaszanej w czasie) liczby zamówień.
+ * @author informatyka
+ */
+public class MazePool {
+
+    /**
+     *
+     * @param budget Parametr odpowiadający za łączną liczbę gotowych labiryntów w puli
+     * @param threads Parametr odpowiadający za liczbę wątków generujących
+     * @param maxCells Parametr odpowiadający za największą liczbę pól labiryntu trzymanego w puli
+     */
+    public MazePool(int budget, int threads, long maxCells)
+    {
+        this.budget = budget;
+        this.maxCells = maxCells;
+        this.workers = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            workers[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    work();
+                }
+            }, "maze-pool-" + i);
+            workers[i].setDaemon(true);
+            workers[i].setPriority(Thread.MIN_PRIORITY);
+        }
+    }
+
+    /**
+     * Uruchamia wątki uzupełniające pulę.
+     */
+    public void start()
+    {
+        for (Thread worker : workers) {
+            worker.start();
+        }
+    }
+
+    /**
+     * Zatrzymuje wątki uzupełniające pulę.
+     */
+    public void stop()
+    {
+        running = false;
+        for (Thread worker : workers) {
+            worker.interrupt();
+        }
+    }
+
+    /**
+     * Pobiera gotowy labirynt z puli i odnotowuje zamówienie na dany rozmiar.
+     *
+     * @param x Parametr odpowiadający za szerokość labiryntu
+     * @param y Parametr odpowiadający za wysokość labiryntu
+     * @return Zwraca zakodowany labirynt albo null, gdy dla rozmiaru nie ma gotowego labiryntu
+     */
+    public String take(int x, int y)
+    {
+        Long key = key(x, y);
+        Size size = sizes.get(key);
+        if (size == null && !accepts(x, y)) {
+            bypassed.incrementAndGet();
+            return null;
+        }
+        if (size == null && sizes.size() < MAX_SIZES) {
+            Size fresh = new Size(x, y);
+            size = sizes.putIfAbsent(key, fresh);
+            if (size == null) {
+                size = fresh;
+            }
+        }
+        if (size == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+
+        size.requests.incrementAndGet();
+        String maze = size.ready.poll();
+        if (maze != null) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+        }
+        signals.release();
+        return maze;
+    }
+
+    /**
+     * Pętla wątku uzupełniającego - co pewien czas przelicza docelowe rozmiary
+     * kolejek, a w międzyczasie dogenerowuje labirynty dla najbardziej
+     * niedopełnionego rozmiaru.
+     */
+    private void work()
+    {
+        while (running) {
+            try {
+                long now = System.currentTimeMillis();
+                long tune = nextTune.get();
+                if (now >= tune && nextTune.compareAndSet(tune, now + TUNE_MS)) {
+                    retune();
+                }
+
+                Size size = mostStarved();
+                if (size == null) {
+                    signals.drainPermits();
+                    signals.tryAcquire(TUNE_MS, TimeUnit.MILLISECONDS);
+                    continue;
+                }
+                String maze;
+                try {
+                    maze = LabUtils.generateEncodedLab(size.x, size.y);
+                } catch (IllegalStateException e) {
+                    //budzet pamieci zajety przez zadania klientow - rozmiar zostaje, pula czeka
+                    signals.tryAcquire(TUNE_MS, TimeUnit.MILLISECONDS);
+                    continue;
+                } catch (RuntimeException e) {
+                    sizes.remove(key(size.x, size.y), size);
+                    e.printStackTrace();
+                    continue;
+                }
+                size.ready.offer(maze);
+                generated.incrementAndGet();
+            } catch (InterruptedException e) {
+                return;
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Dzieli budżet puli między rozmiary proporcjonalnie do liczby zamówień,
+     * po czym wygasza liczniki zamówień o połowę. Rozmiary, o które nikt już
+     * nie prosi, są usuwane razem z gotowymi labiryntami.
+     */
+    private void retune()
+    {
+        long total = 0;
+        for (Size size : sizes.values()) {
+            total += size.requests.get();
+        }
+        for (Map.Entry<Long, Size> entry : sizes.entrySet()) {
+            Size size = entry.getValue();
+            long requests = size.requests.get();
+            size.target = total == 0 ? 0 : (int) Math.min(MAX_PER_SIZE, Math.round((double) budget * requests / total));
+            size.requests.addAndGet(-(requests - requests / 2));
+            while (size.ready.size() > size.target && size.ready.poll() != null) {
+                dropped.incrementAndGet();
+            }
+            if (requests == 0 && size.ready.isEmpty()) {
+                sizes.remove(entry.getKey(), size);
+            }
+        }
+    }
+
+    /**
+     * Sprawdza, czy rozmiar może trafić do puli - labirynt nie może
+     * przekraczać maxCells pól ani limitów generatora (siatka co najmniej
+     * 5x5, limit pamięci). Rozmiar, którego nie da się wygenerować,
+     * zablokowałby wątek uzupełniający.
+     */
+    private boolean accepts(int x, int y)
+    {
+        long width = x + 2L;
+        long height = y + 2L;
+        if (width < MIN_GRID || height < MIN_GRID
+                || width > Integer.MAX_VALUE || height > Integer.MAX_VALUE || width * height > maxCells) {
+            return false;
+        }
+        try {
+            MazeGeneratorRegistry.select(null, (int) width, (int) height, false);
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private static long key(int x, int y)
+    {
+        return ((long) x << 32) | (y & 0xFFFFFFFFL);
+    }
+
+    private Size mostStarved()
+    {
+        Size best = null;
+        int bestDeficit = 0;
+        for (Size size : sizes.values()) {
+            int deficit = size.target - size.ready.size();
+            if (deficit > bestDeficit) {
+                best = size;
+                bestDeficit = deficit;
+            }
+        }
+        return best;
+    }
+
+    /**
+     *
+     * @return Zwraca liczbę zamówień obsłużonych gotowym labiryntem z puli
+     */
+    public long getHits()
+    {
+        return hits.get();
+    }
+
+    /**
+     *
+     * @return Zwraca liczbę zamówień, dla których labirynt został wygenerowany w wątku klienta
+     */
+    public long getMisses()
+    {
+        return misses.get();
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder sb = new StringBuilder();
+        sb.append("hits=").append(hits.get())
+          .append(" misses=").append(misses.get())
+          .append(" bypassed=").append(bypassed.get())
+          .append(" generated=").append(generated.get())
+          .append(" dropped=").append(dropped.get())
+          .append(" sizes=");
+        for (Size size : sizes.values()) {
+            sb.append(size.x).append('x').append(size.y).append(':')
+              .append(size.ready.size()).append('/').append(size.target).append(',');
+        }
+        return sb.toString();
+    }
+
+    private static class Size
+    {
+        Size(int x, int y)
+        {
+            this.x = x;
+            this.y = y;
+        }
+
+        final int x;
+        final int y;
+        final AtomicLong requests = new AtomicLong();
+        final LinkedBlockingQueue<String> ready = new LinkedBlockingQueue<>();
+        volatile int target = 1;
+    }
+
+    private static final int MIN_GRID = 5;
+    private static final int MAX_SIZES = 64;
+    private static final int MAX_PER_SIZE = 1024;
+    private static final long TUNE_MS = 5000;
+
+    private final int budget;
+    private final long maxCells;
+    private final Thread[] workers;
+    private final ConcurrentHashMap<Long, Size> sizes = new ConcurrentHashMap<>();
+    private final Semaphore signals = new Semaphore(0);
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong bypassed = new AtomicLong();
+    private final AtomicLong generated = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    private final AtomicLong nextTune = new AtomicLong();
+
+    private volatile boolean running = true;
+}
@@ -0,0 +1,51 @@
+package labyrinth.server.maze;
+
+import labyrinth.server.serialization.Coord;
+
+/**
+ * Interfejs wspólnego wyniku wszystkich generatorów labiryntów - labiryntu
+ * odczytywanego wiersz po wierszu od góry. Generatory strumieniowe tworzą
+ * wiersze dopiero przy odczycie, pozostałe oddają wiersze gotowej siatki (GridMaze).
+ * @author informatyka
+ */
+public interface MazeRows {
+
+    /**
+     *
+     * @return zwraca szerokość siatki labiryntu
+     */
+    int getWidth();
+
+    /**
+     *
+     * @return zwraca wysokość siatki labiryntu
+     */
+    int getHeight();
+
+    /**
+     *
+     * @return zwraca pole startu labiryntu
+     */
+    Coord getStart();
+
+    /**
+     *
+     * @return zwraca pole mety labiryntu
+     */
+    Coord getMeta();
+
+    /**
+     *
+     * @return zwraca true, jeżeli zostały jeszcze wiersze do odczytania
+     */
+    boolean hasNextRow();
+
+    /**
+     * Zapisuje kolejny wiersz labiryntu w wierszu row podanej siatki,
+     * nadpisując jego poprzednią zawartość.
+     *
+     * @param target - siatka o szerokości labiryntu, do której trafia wiersz
+     * @param row - numer wiersza w siatce target
+     */
+    void nextRow(MazeGrid target, int row);
+}
@@ -0,0 +1,76 @@
+package labyrinth.server.maze;
+
+/**
+ * Klasa reprezentująca labirynt generowany losowym algorytmem Prima.
+ * Labirynt rośnie od jednej komórki - w każdym kroku losowana jest komórka
+ * z brzegu (sąsiadująca z labiryntem) i łączona z losowym sąsiadem już
+ * należącym do labiryntu. Brzeg jest tablicą, z której losowy element
+ * usuwa się w O(1) (zamiana z ostatnim).
+ * @author informatyka
+ */
+public class PrimMaze extends CellMaze {
+
+    /**
+     *
+     * @param width - szerokość siatki labiryntu (co najmniej 5)
+     * @param height - wysokość siatki labiryntu (co najmniej 5)
+     * @param seed - ziarno generatora liczb losowych
+     */
+    public PrimMaze(int width, int height, long seed) {
+        super(width, height, seed);
+        build();
+    }
+
+    @Override
+    void carve() {
+        final int cells = cells();
+        final byte[] state = new byte[cells];
+        final int[] frontier = new int[cells];
+        final int[] dirs = new int[4];
+        final int[] inside = new int[4];
+
+        int first = rand.nextInt(cells);
+        state[first] = IN;
+        open(first);
+        int size = grow(first, state, frontier, 0, dirs);
+
+        while (size > 0) {
+            int i = rand.nextInt(size);
+            int cell = frontier[i];
+            frontier[i] = frontier[--size];
+
+            int count = 0;
+            int n = directions(cell, dirs);
+            for (int d = 0; d < n; d++) {
+                int next = move(cell, dirs[d]);
+                if (state[next] == IN) {
+                    inside[count++] = next;
+                }
+            }
+            link(cell, inside[rand.nextInt(count)]);
+            state[cell] = IN;
+            size = grow(cell, state, frontier, size, dirs);
+        }
+    }
+
+    /**
+     * Dopisuje do brzegu sąsiadów komórki, którzy jeszcze nie są ani w labiryncie, ani na brzegu.
+     *
+     * @return zwraca nowy rozmiar brzegu
+     */
+    private int grow(int cell, byte[] state, int[] frontier, int size, int[] dirs) {
+        int n = directions(cell, dirs);
+        for (int d = 0; d < n; d++) {
+            int next = move(cell, dirs[d]);
+            if (state[next] == OUT) {
+                state[next] = FRONTIER;
+                frontier[size++] = next;
+            }
+        }
+        return size;
+    }
+
+    private static final byte OUT = 0;
+    private static final byte FRONTIER = 1;
+    private static final byte IN = 2;
+}
@@ -0,0 +1,52 @@
+package labyrinth.server.maze;
+
+/**
+ * Klasa reprezentująca labirynt generowany algorytmem Wilsona (błądzenie
+ * losowe z wymazywaniem pętli). Z każdej komórki spoza labiryntu błądzi się
+ * losowo aż do labiryntu, zapamiętując w komórce tylko ostatni kierunek
+ * wyjścia - pętle znikają same, bo kierunek jest nadpisywany. Potem droga
+ * jest przechodzona ponownie i rzeźbiona. Każde drzewo rozpinające jest
+ * równie prawdopodobne, ale czas zależy od długości błądzenia.
+ * @author informatyka
+ */
+public class WilsonMaze extends CellMaze {
+
+    /**
+     *
+     * @param width - szerokość siatki labiryntu (co najmniej 5)
+     * @param height - wysokość siatki labiryntu (co najmniej 5)
+     * @param seed - ziarno generatora liczb losowych
+     */
+    public WilsonMaze(int width, int height, long seed) {
+        super(width, height, seed);
+        build();
+    }
+
+    @Override
+    void carve() {
+        final int cells = cells();
+        final byte[] exit = new byte[cells];
+        final boolean[] inside = new boolean[cells];
+        final int[] dirs = new int[4];
+
+        int root = rand.nextInt(cells);
+        inside[root] = true;
+        open(root);
+
+        for (int start = 0; start < cells; start++) {
+            int cell = start;
+            while (!inside[cell]) {
+                int direction = dirs[rand.nextInt(directions(cell, dirs))];
+                exit[cell] = (byte) direction;
+                cell = move(cell, direction);
+            }
+            cell = start;
+            while (!inside[cell]) {
+                inside[cell] = true;
+                int next = move(cell, exit[cell]);
+                link(cell, next);
+                cell = next;
+            }
+        }
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package labyrinth.server.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Klasa reprezentująca licznik rosnący. Zapis to LongAdder - wątki
+ * zwiększające licznik naraz nie rywalizują o jedną komórkę pamięci.
+ * @author informatyka
+ */
+public class Counter {
+
+    Counter()
+    {
+    }
+
+    /**
+     * Zwiększa licznik o jeden.
+     */
+    public void inc()
+    {
+        value.increment();
+    }
+
+    /**
+     *
+     * @param n Parametr określający, o ile zwiększyć licznik
+     */
+    public void add(long n)
+    {
+        value.add(n);
+    }
+
+    /**
+     *
+     * @return Zwraca wartość licznika
+     */
+    public long get()
+    {
+        return value.sum();
+    }
+
+    private final LongAdder value = new LongAdder();
+}
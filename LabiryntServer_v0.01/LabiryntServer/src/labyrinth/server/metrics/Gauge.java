@@ -0,0 +1,20 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package labyrinth.server.metrics;
+
+/**
+ * Interfejs wskaźnika - wartości odczytywanej dopiero przy eksporcie
+ * (np. liczby aktywnych połączeń albo rozmiaru pamięci podręcznej).
+ * @author informatyka
+ */
+public interface Gauge {
+
+    /**
+     *
+     * @return Zwraca bieżącą wartość wskaźnika
+     */
+    double value();
+}
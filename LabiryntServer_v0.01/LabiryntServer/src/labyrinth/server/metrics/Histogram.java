@@ -0,0 +1,157 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package labyrinth.server.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Klasa reprezentująca histogram czasów w nanosekundach w stylu HDR:
+ * wartości poniżej 64 są liczone dokładnie, a każda kolejna potęga dwójki
+ * jest dzielona na 32 przedziały, więc błąd względny jest mniejszy niż 1/32
+ * w całym zakresie, a rozmiar stały. Zapis nie bierze blokad - to jedno
+ * getAndIncrement na przedziale, LongAdder sumy i rzadkie CAS maksimum.
+ * @author informatyka
+ */
+public class Histogram {
+
+    Histogram()
+    {
+    }
+
+    /**
+     *
+     * @param nanos Parametr określający zmierzony czas w nanosekundach
+     */
+    public void record(long nanos)
+    {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        counts.getAndIncrement(index(nanos));
+        sum.add(nanos);
+        long m;
+        while (nanos > (m = max.get()) && !max.compareAndSet(m, nanos)) {
+            //ponowienie - inny wątek zmienił maksimum
+        }
+    }
+
+    /**
+     *
+     * @return Zwraca liczbę pomiarów (suma przedziałów - przy równoległym zapisie może nieznacznie odbiegać od sumy czasów)
+     */
+    public long getCount()
+    {
+        long n = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            n += counts.get(i);
+        }
+        return n;
+    }
+
+    /**
+     *
+     * @return Zwraca sumę zmierzonych czasów w nanosekundach
+     */
+    public long getSum()
+    {
+        return sum.sum();
+    }
+
+    /**
+     *
+     * @return Zwraca najdłuższy zmierzony czas w nanosekundach
+     */
+    public long getMax()
+    {
+        return max.get();
+    }
+
+    /**
+     *
+     * @param percentile Parametr określający percentyl (0 - 100)
+     * @return Zwraca czas w nanosekundach (górną granicę przedziału), poniżej którego jest dany procent pomiarów
+     */
+    public long percentile(double percentile)
+    {
+        long[] snapshot = snapshot();
+        long total = 0;
+        for (long c : snapshot) {
+            total += c;
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+        long seen = 0;
+        for (int i = 0; i < snapshot.length; i++) {
+            seen += snapshot[i];
+            if (seen >= target) {
+                return Math.min(upperBound(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /**
+     * Liczy pomiary nie większe od kolejnych granic (przedziały liczone
+     * w całości do pierwszej granicy nie mniejszej od ich górnego końca).
+     *
+     * @param bounds Parametr zawierający rosnące granice w nanosekundach
+     * @return Zwraca skumulowane liczby pomiarów dla granic i na końcu liczbę wszystkich pomiarów
+     */
+    long[] cumulative(long[] bounds)
+    {
+        long[] snapshot = snapshot();
+        long[] result = new long[bounds.length + 1];
+        int b = 0;
+        long seen = 0;
+        for (int i = 0; i < snapshot.length; i++) {
+            if (snapshot[i] == 0) {
+                continue;
+            }
+            long upper = upperBound(i);
+            while (b < bounds.length && upper > bounds[b]) {
+                result[b++] = seen;
+            }
+            seen += snapshot[i];
+        }
+        while (b < bounds.length) {
+            result[b++] = seen;
+        }
+        result[bounds.length] = seen;
+        return result;
+    }
+
+    private long[] snapshot()
+    {
+        long[] snapshot = new long[counts.length()];
+        for (int i = 0; i < snapshot.length; i++) {
+            snapshot[i] = counts.get(i);
+        }
+        return snapshot;
+    }
+
+    private static int index(long value)
+    {
+        int shift = Math.max(0, 63 - Long.numberOfLeadingZeros(value) - SUB_BITS);
+        return (shift << SUB_BITS) + (int) (value >>> shift);
+    }
+
+    private static long upperBound(int index)
+    {
+        int shift = Math.max(0, (index >>> SUB_BITS) - 1);
+        long mantissa = index - ((long) shift << SUB_BITS);
+        return ((mantissa + 1) << shift) - 1;
+    }
+
+    private static final int SUB_BITS = 5;
+
+    private final AtomicLongArray counts = new AtomicLongArray((64 - SUB_BITS + 1) << SUB_BITS);
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+}
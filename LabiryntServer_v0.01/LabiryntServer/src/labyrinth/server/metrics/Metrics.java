@@ -0,0 +1,252 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package labyrinth.server.metrics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Klasa reprezentująca rejestr metryk serwera: liczników, wskaźników
+ * i histogramów czasów. Metryka jest identyfikowana nazwą i etykietami
+ * w składni Prometheusa (np. command="/getMaze"); ponowna rejestracja tej
+ * samej pary zwraca ten sam obiekt, więc klasy trzymają metryki w polach
+ * statycznych, a zapis nie przechodzi już przez rejestr.
+ * @author informatyka
+ */
+public class Metrics {
+
+    /**
+     *
+     * @param name Parametr określający nazwę metryki (zwyczajowo z końcówką _total)
+     * @param labels Parametr zawierający etykiety, np. command="/getMaze" (null - bez etykiet)
+     * @param help Parametr zawierający opis metryki
+     * @return Zwraca licznik o danej nazwie i etykietach
+     */
+    public static Counter counter(String name, String labels, String help)
+    {
+        return (Counter) register(name, labels, help, COUNTER, null);
+    }
+
+    /**
+     *
+     * @param name Parametr określający nazwę metryki (zwyczajowo z końcówką _seconds)
+     * @param labels Parametr zawierający etykiety (null - bez etykiet)
+     * @param help Parametr zawierający opis metryki
+     * @return Zwraca histogram o danej nazwie i etykietach
+     */
+    public static Histogram histogram(String name, String labels, String help)
+    {
+        return (Histogram) register(name, labels, help, HISTOGRAM, null);
+    }
+
+    /**
+     * Rejestruje wskaźnik - ponowna rejestracja pod tą samą nazwą
+     * i etykietami zastępuje poprzedni.
+     *
+     * @param name Parametr określający nazwę metryki
+     * @param labels Parametr zawierający etykiety (null - bez etykiet)
+     * @param help Parametr zawierający opis metryki
+     * @param gauge Parametr zawierający odczyt wartości
+     */
+    public static void gauge(String name, String labels, String help, Gauge gauge)
+    {
+        register(name, labels, help, GAUGE, gauge);
+    }
+
+    private static Object register(String name, String labels, String help, String type, Gauge gauge)
+    {
+        Family family = FAMILIES.get(name);
+        if (family == null) {
+            Family created = new Family(name, help, type);
+            family = FAMILIES.putIfAbsent(name, created);
+            if (family == null) {
+                family = created;
+            }
+        }
+        if (!family.type.equals(type)) {
+            throw new IllegalArgumentException("Metryka " + name + " jest typu " + family.type);
+        }
+        String key = labels == null ? "" : labels;
+        if (gauge != null) {
+            family.metrics.put(key, gauge);
+            return gauge;
+        }
+        Object metric = family.metrics.get(key);
+        if (metric == null) {
+            Object created = type.equals(COUNTER) ? new Counter() : new Histogram();
+            metric = family.metrics.putIfAbsent(key, created);
+            if (metric == null) {
+                metric = created;
+            }
+        }
+        return metric;
+    }
+
+    /**
+     * Metryki w formacie tekstowym Prometheusa (wersja 0.0.4). Histogramy są
+     * eksportowane w sekundach, z przedziałami od 100 mikrosekund do 10 sekund.
+     *
+     * @return Zwraca wszystkie metryki, posortowane po nazwie
+     */
+    public static String toPrometheus()
+    {
+        StringBuilder out = new StringBuilder(4096);
+        for (Family family : families()) {
+            out.append("# HELP ").append(family.name).append(' ').append(family.help).append('\n');
+            out.append("# TYPE ").append(family.name).append(' ').append(family.type).append('\n');
+            for (String labels : family.labels()) {
+                Object metric = family.metrics.get(labels);
+                if (metric instanceof Counter) {
+                    sample(out, family.name, labels, null, ((Counter) metric).get());
+                } else if (metric instanceof Gauge) {
+                    sample(out, family.name, labels, null, value((Gauge) metric));
+                } else {
+                    Histogram histogram = (Histogram) metric;
+                    long[] cumulative = histogram.cumulative(BUCKET_NANOS);
+                    for (int i = 0; i < BUCKET_NANOS.length; i++) {
+                        sample(out, family.name + "_bucket", labels, "le=\"" + BUCKET_NAMES[i] + "\"", cumulative[i]);
+                    }
+                    long count = cumulative[BUCKET_NANOS.length];
+                    sample(out, family.name + "_bucket", labels, "le=\"+Inf\"", count);
+                    sample(out, family.name + "_sum", labels, null, histogram.getSum() / 1e9);
+                    sample(out, family.name + "_count", labels, null, count);
+                }
+            }
+        }
+        return out.toString();
+    }
+
+    /**
+     * Podsumowanie w jednej linii dla polecenia /stats: liczniki i wskaźniki
+     * jako nazwa{etykiety}=wartość, histogramy jako liczba pomiarów
+     * i p50/p99/max w milisekundach. Pomijane są metryki bez pomiarów.
+     *
+     * @return Zwraca podsumowanie metryk
+     */
+    public static String toText()
+    {
+        StringBuilder out = new StringBuilder(1024);
+        for (Family family : families()) {
+            for (String labels : family.labels()) {
+                Object metric = family.metrics.get(labels);
+                String name = labels.isEmpty() ? family.name : family.name + "{" + labels + "}";
+                if (metric instanceof Counter) {
+                    long value = ((Counter) metric).get();
+                    if (value != 0) {
+                        out.append(name).append('=').append(value).append(' ');
+                    }
+                } else if (metric instanceof Gauge) {
+                    out.append(name).append('=').append(format(value((Gauge) metric))).append(' ');
+                } else {
+                    Histogram histogram = (Histogram) metric;
+                    long count = histogram.getCount();
+                    if (count != 0) {
+                        out.append(name).append("=count:").append(count)
+                                .append(",p50:").append(millis(histogram.percentile(50)))
+                                .append(",p99:").append(millis(histogram.percentile(99)))
+                                .append(",max:").append(millis(histogram.getMax()))
+                                .append("ms ");
+                    }
+                }
+            }
+        }
+        return out.length() == 0 ? "NO STATS" : out.substring(0, out.length() - 1);
+    }
+
+    private static List<Family> families()
+    {
+        List<Family> families = new ArrayList<>(FAMILIES.values());
+        Collections.sort(families);
+        return families;
+    }
+
+    private static double value(Gauge gauge)
+    {
+        try {
+            return gauge.value();
+        } catch (RuntimeException e) {
+            //wskaznik, ktorego zrodla jeszcze nie ma (np. pula przed startem)
+            return Double.NaN;
+        }
+    }
+
+    private static void sample(StringBuilder out, String name, String labels, String extra, double value)
+    {
+        out.append(name);
+        if (!labels.isEmpty() || extra != null) {
+            out.append('{').append(labels);
+            if (extra != null) {
+                out.append(labels.isEmpty() ? "" : ",").append(extra);
+            }
+            out.append('}');
+        }
+        out.append(' ').append(format(value)).append('\n');
+    }
+
+    private static String format(double value)
+    {
+        if (value == Math.rint(value) && !Double.isInfinite(value) && Math.abs(value) < 1e15) {
+            return Long.toString((long) value);
+        }
+        return Double.isNaN(value) ? "NaN" : Double.toString(value);
+    }
+
+    private static String millis(long nanos)
+    {
+        return String.format(Locale.ROOT, "%.3f", nanos / 1e6);
+    }
+
+    private static class Family implements Comparable<Family>
+    {
+        Family(String name, String help, String type)
+        {
+            this.name = name;
+            this.help = help;
+            this.type = type;
+        }
+
+        List<String> labels()
+        {
+            List<String> labels = new ArrayList<>(metrics.keySet());
+            Collections.sort(labels);
+            return labels;
+        }
+
+        @Override
+        public int compareTo(Family other)
+        {
+            return name.compareTo(other.name);
+        }
+
+        private final String name;
+        private final String help;
+        private final String type;
+        private final Map<String, Object> metrics = new ConcurrentHashMap<>();
+    }
+
+    private static final String COUNTER = "counter";
+    private static final String GAUGE = "gauge";
+    private static final String HISTOGRAM = "histogram";
+
+    private static final String[] BUCKET_NAMES = {
+        "0.0001", "0.00025", "0.0005", "0.001", "0.0025", "0.005", "0.01",
+        "0.025", "0.05", "0.1", "0.25", "0.5", "1", "2.5", "5", "10"
+    };
+    private static final long[] BUCKET_NANOS = new long[BUCKET_NAMES.length];
+
+    static
+    {
+        for (int i = 0; i < BUCKET_NAMES.length; i++) {
+            BUCKET_NANOS[i] = Math.round(Double.parseDouble(BUCKET_NAMES[i]) * 1e9);
+        }
+    }
+
+    private static final Map<String, Family> FAMILIES = new ConcurrentHashMap<>();
+}
@@ -0,0 +1,93 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package labyrinth.server.metrics;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Klasa reprezentująca punkt /metrics w formacie tekstowym Prometheusa,
+ * na osobnym porcie i tylko na adresie lokalnym - poza protokołem gry.
+ * Korzysta z serwera HTTP wbudowanego w JDK (com.sun.net.httpserver).
+ * @author informatyka
+ */
+public class MetricsHttpServer {
+
+    /**
+     *
+     * @param port Parametr określający lokalny port punktu /metrics
+     * @return Zwraca uruchomiony serwer
+     * @throws IOException gdy port jest zajęty
+     */
+    public static MetricsHttpServer start(int port) throws IOException
+    {
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/metrics", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                byte[] body = Metrics.toPrometheus().getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            }
+        });
+        server.setExecutor(Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "metrics-http");
+                thread.setDaemon(true);
+                return thread;
+            }
+        }));
+        server.start();
+        return new MetricsHttpServer(server);
+    }
+
+    private MetricsHttpServer(HttpServer server)
+    {
+        this.server = server;
+    }
+
+    /**
+     * Dodaje kolejny punkt na tym samym lokalnym porcie (np. polecenia operatora).
+     *
+     * @param path Parametr określający ścieżkę punktu
+     * @param handler Parametr odpowiadający za obsługę żądań
+     */
+    public void addContext(String path, HttpHandler handler)
+    {
+        server.createContext(path, handler);
+    }
+
+    /**
+     *
+     * @return Zwraca port, na którym słucha serwer
+     */
+    public int getPort()
+    {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Zatrzymuje serwer bez czekania na trwające odpowiedzi.
+     */
+    public void stop()
+    {
+        server.stop(0);
+    }
+
+    private final HttpServer server;
+}
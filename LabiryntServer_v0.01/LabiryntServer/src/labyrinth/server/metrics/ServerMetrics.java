@@ -0,0 +1,94 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package labyrinth.server.metrics;
+
+/**
+ * Klasa zbierająca metryki połączeń wspólne dla obu konektorów
+ * (wątkowego i NIO), żeby oba liczyły do tych samych liczników.
+ * @author informatyka
+ */
+public class ServerMetrics {
+
+    private ServerMetrics()
+    {
+    }
+
+    /**
+     * Połączenia przyjęte przez pętlę accept.
+     */
+    public static final Counter ACCEPTED = Metrics.counter("labyrinth_connections_accepted_total", null,
+            "Polaczenia przyjete przez serwer");
+
+    /**
+     * Połączenia odrzucone (pełna kolejka albo błąd przy przyjmowaniu).
+     */
+    public static final Counter REJECTED = Metrics.counter("labyrinth_connections_rejected_total", null,
+            "Polaczenia odrzucone przez serwer");
+
+    /**
+     * Połączenia, których obsługa się rozpoczęła.
+     */
+    public static final Counter OPENED = Metrics.counter("labyrinth_connections_opened_total", null,
+            "Polaczenia obslugiwane przez serwer");
+
+    /**
+     * Połączenia zamknięte.
+     */
+    public static final Counter CLOSED = Metrics.counter("labyrinth_connections_closed_total", null,
+            "Polaczenia zamkniete");
+
+    /**
+     * Czas życia połączenia od rozpoczęcia obsługi do zamknięcia.
+     */
+    public static final Histogram LIFETIME = Metrics.histogram("labyrinth_connection_lifetime_seconds", null,
+            "Czas zycia polaczenia");
+
+    /**
+     * Bajty wysłane klientom.
+     */
+    public static final Counter BYTES_WRITTEN = Metrics.counter("labyrinth_bytes_written_total", null,
+            "Bajty wyslane klientom");
+
+    /**
+     * Połączenia zamknięte przez IdleSweeper po czasie bezczynności.
+     */
+    public static final Counter REAPED_IDLE = Metrics.counter("labyrinth_connections_reaped_total", "reason=\"idle\"",
+            "Polaczenia zamkniete przez serwer po przekroczeniu czasu");
+
+    /**
+     * Połączenia wątkowe zamknięte po przekroczeniu czasu odczytu.
+     */
+    public static final Counter REAPED_READ_TIMEOUT = Metrics.counter("labyrinth_connections_reaped_total", "reason=\"read_timeout\"",
+            "Polaczenia zamkniete przez serwer po przekroczeniu czasu");
+
+    /**
+     * Linie rozesłane do wielu połączeń (ClientRegistry.broadcast).
+     */
+    public static final Counter BROADCASTS = Metrics.counter("labyrinth_broadcasts_total", null,
+            "Linie rozeslane do wielu polaczen");
+
+    /**
+     * Kopie rozesłanych linii przyjęte przez połączenia.
+     */
+    public static final Counter BROADCAST_DELIVERED = Metrics.counter("labyrinth_broadcast_deliveries_total", null,
+            "Rozeslane linie przyjete do wyslania");
+
+    /**
+     * Kopie rozesłanych linii pominięte, bo połączenie miało pełną kolejkę albo było zamknięte.
+     */
+    public static final Counter BROADCAST_DROPPED = Metrics.counter("labyrinth_broadcast_dropped_total", null,
+            "Rozeslane linie pominiete przy wolnym lub zamknietym odbiorcy");
+
+    static
+    {
+        Metrics.gauge("labyrinth_connections_open", null, "Otwarte polaczenia", new Gauge() {
+            @Override
+            public double value() {
+                return OPENED.get() - CLOSED.get();
+            }
+        });
+    }
+}
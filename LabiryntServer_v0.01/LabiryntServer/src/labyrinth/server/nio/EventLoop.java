@@ -0,0 +1,132 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package labyrinth.server.nio;
+
+import labyrinth.server.metrics.ServerMetrics;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Klasa reprezentująca pętlę zdarzeń - jeden wątek obsługujący odczyt i zapis
+ * wielu połączeń przy pomocy Selectora. Wszystkie operacje na kanałach
+ * i kluczach wykonywane są w wątku pętli; inne wątki zlecają je przez execute().
+ * @author informatyka
+ */
+public class EventLoop implements Runnable {
+
+    /**
+     *
+     * @param workers Parametr odpowiadający za pulę wątków przetwarzających polecenia
+     * @throws IOException
+     */
+    public EventLoop(ExecutorService workers) throws IOException
+    {
+        this.workers = workers;
+        this.selector = Selector.open();
+    }
+
+    /**
+     * Przekazuje nowe połączenie do obsługi przez pętlę.
+     *
+     * @param channel Parametr odpowiadający za zaakceptowany kanał klienta
+     */
+    public void register(final SocketChannel channel)
+    {
+        execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    NioConnection connection = new NioConnection(channel, EventLoop.this, workers);
+                    connection.setKey(channel.register(selector, SelectionKey.OP_READ, connection));
+                    connection.opened();
+                } catch (IOException e) {
+                    ServerMetrics.REJECTED.inc();
+                    closeQuietly(channel);
+                }
+            }
+        });
+    }
+
+    /**
+     * Zleca zadanie do wykonania w wątku pętli i budzi Selector.
+     *
+     * @param task Parametr odpowiadający za zadanie
+     */
+    public void execute(Runnable task)
+    {
+        tasks.add(task);
+        if (wakeupPending.compareAndSet(false, true)) {
+            selector.wakeup();
+        }
+    }
+
+    @Override
+    public void run()
+    {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                selector.select();
+            } catch (IOException e) {
+                e.printStackTrace();
+                return;
+            }
+            wakeupPending.set(false);
+            runTasks();
+
+            Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+            while (it.hasNext()) {
+                SelectionKey key = it.next();
+                it.remove();
+                NioConnection connection = (NioConnection) key.attachment();
+                try {
+                    if (key.isValid() && key.isReadable()) {
+                        connection.onReadable(readBuffer);
+                    }
+                    if (key.isValid() && key.isWritable()) {
+                        connection.onWritable();
+                    }
+                } catch (IOException e) {
+                    connection.close();
+                }
+            }
+        }
+    }
+
+    private void runTasks()
+    {
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    static void closeQuietly(SocketChannel channel)
+    {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            //kanal i tak jest juz nieuzywany
+        }
+    }
+
+    private final ExecutorService workers;
+    private final Selector selector;
+    private final ConcurrentLinkedQueue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean wakeupPending = new AtomicBoolean();
+    //wspolny bufor odczytu - uzywany tylko w watku petli
+    private final ByteBuffer readBuffer = ByteBuffer.allocate(64 * 1024);
+}
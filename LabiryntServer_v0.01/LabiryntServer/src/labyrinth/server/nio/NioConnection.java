@@ -0,0 +1,664 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package labyrinth.server.nio;
+
+import labyrinth.server.clientthread.ClientRegistry;
+import labyrinth.server.clientthread.Connection;
+import labyrinth.server.clientthread.IdleConnection;
+import labyrinth.server.clientthread.IdleSweeper;
+import labyrinth.server.console.Console;
+import labyrinth.server.console.LogPolicy;
+import labyrinth.server.metrics.ServerMetrics;
+import labyrinth.server.trace.ConnectionClosedEvent;
+import labyrinth.server.trace.ConnectionOpenedEvent;
+import labyrinth.server.trace.WriteEvent;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Klasa reprezentująca połączenie obsługiwane przez pętlę zdarzeń.
+ * Odczytane bajty są dzielone na linie (protokół jak w ClientThread), linie
+ * trafiają do kolejki przetwarzanej po kolei w puli wątków roboczych (linie
+ * oznaczone - równolegle), a odpowiedzi są zapisywane do kanału przez wątek pętli.
+ * @author informatyka
+ */
+public class NioConnection implements Connection, IdleConnection {
+
+    NioConnection(SocketChannel channel, EventLoop loop, ExecutorService workers) throws IOException
+    {
+        this.channel = channel;
+        this.loop = loop;
+        this.workers = workers;
+        this.address = channel.socket().getInetAddress();
+    }
+
+    void setKey(SelectionKey key)
+    {
+        this.key = key;
+    }
+
+    void opened()
+    {
+        openedAt = System.nanoTime();
+        lastActive = openedAt;
+        ServerMetrics.OPENED.inc();
+        ConnectionOpenedEvent.emit(address, "nio");
+        ClientRegistry.register(this);
+        IdleSweeper.register(this);
+        submit(new Runnable() {
+            @Override
+            public void run() {
+                log(address + "/" + "OPENED CONNECTION");
+            }
+        });
+    }
+
+    /**
+     *
+     * @param what parametr określający co ma być wysłane do klienta
+     */
+    @Override
+    public void broadcast(String what)
+    {
+        Stream stream = current.get();
+        if (stream != null) {
+            //odpowiedz polecenia, ktore wlasnie zaczelo strumien, wychodzi po jego ostatniej linii
+            stream.tail.add(what);
+            return;
+        }
+        enqueue(what);
+        loop.execute(flush);
+    }
+
+    /**
+     * Linie źródła są tworzone w wątku roboczym po jednej - kolejna dopiero
+     * wtedy, gdy w outbox zostało mniej niż jedna poprzednia linia (onWritable).
+     * Wywołujący nie czeka; polecenia bez oznaczenia czekają na koniec strumienia.
+     *
+     * @param source Parametr określający źródło kolejnych linii
+     */
+    @Override
+    public void stream(Source source)
+    {
+        if (closed) {
+            return;
+        }
+        Stream stream = new Stream(source);
+        current.set(stream);
+        streaming.incrementAndGet();
+        streams.add(stream);
+        loop.execute(flush);
+    }
+
+    /**
+     * Dokłada odpowiedź do outbox. Zapis do gniazda robi pętla - wątek roboczy nigdy nie czeka.
+     *
+     * @return Zwraca liczbę bajtów dołożonych do kolejki
+     */
+    private int enqueue(String what)
+    {
+        if (closed) {
+            return 0;
+        }
+        WriteEvent event = new WriteEvent();
+        event.start();
+        ByteBuffer response = ByteBuffer.wrap(what.getBytes(StandardCharsets.UTF_8));
+        int bytes = response.remaining() + NEWLINE.length;
+        //odpowiedzi z kilku watkow nie moga sie przeplatac z koncami linii
+        synchronized (outbox) {
+            if (closed) {
+                return 0;
+            }
+            outbox.add(response);
+            outbox.add(ByteBuffer.wrap(NEWLINE));
+            queuedBytes += bytes;
+            throttle();
+        }
+        event.payload(bytes);
+        event.finish();
+        return bytes;
+    }
+
+    /**
+     * Linia trafia do kolejki jako opakowanie wspólnej tablicy - bez kopii.
+     * W przeciwieństwie do odpowiedzi (broadcast) jest pomijana, gdy kolejka jest pełna.
+     *
+     * @param line Parametr zawierający bajty linii razem ze znakiem nowej linii
+     * @return Zwraca false, jeżeli połączenie jest zamknięte albo ma pełną kolejkę
+     */
+    @Override
+    public boolean offer(byte[] line)
+    {
+        if (closed) {
+            return false;
+        }
+        synchronized (outbox) {
+            if (closed || queuedBytes + line.length > MAX_QUEUED_BYTES) {
+                return false;
+            }
+            outbox.add(ByteBuffer.wrap(line));
+            queuedBytes += line.length;
+        }
+        loop.execute(flush);
+        return true;
+    }
+
+    /**
+     *
+     * @return Zwraca adres klienta
+     */
+    @Override
+    public InetAddress getInetAddress()
+    {
+        return address;
+    }
+
+    /**
+     * Czyta dostępne bajty i wydziela z nich kompletne linie. Wywoływane w wątku pętli.
+     *
+     * @param buffer Parametr odpowiadający za wspólny bufor odczytu pętli
+     * @throws IOException
+     */
+    void onReadable(ByteBuffer buffer) throws IOException
+    {
+        buffer.clear();
+        int read = channel.read(buffer);
+        if (read < 0) {
+            close();
+            return;
+        }
+        byte[] array = buffer.array();
+        int start = 0;
+        for (int i = 0; i < read; i++) {
+            if (array[i] != '\n') {
+                continue;
+            }
+            if (partial == null) {
+                line(array, start, i - start);
+            } else {
+                append(array, start, i - start);
+                line(partial.array(), 0, partial.position());
+                partial = null;
+            }
+            start = i + 1;
+        }
+        if (start < read) {
+            append(array, start, read - start);
+        }
+    }
+
+    /**
+     * Zapisuje oczekujące odpowiedzi, dopóki kanał je przyjmuje. Wywoływane w wątku pętli.
+     *
+     * @throws IOException
+     */
+    void onWritable() throws IOException
+    {
+        if (closed) {
+            return;
+        }
+        ByteBuffer buffer;
+        while ((buffer = outbox.peek()) != null) {
+            ServerMetrics.BYTES_WRITTEN.add(channel.write(buffer));
+            if (buffer.hasRemaining()) {
+                key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+                pace();
+                return;
+            }
+            outbox.poll();
+            release(buffer.capacity());
+        }
+        key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+        pace();
+        //po /QUIT czekamy jeszcze na odpowiedzi na oznaczone polecenia i strumienie
+        if (quit && pending.get() == 0 && streaming.get() == 0) {
+            close();
+        }
+    }
+
+    /**
+     * Zleca utworzenie kolejnej linii strumienia, gdy w outbox zostało nie
+     * więcej niż jedna poprzednia linia. Strumienie kilku poleceń
+     * oznaczonych dostają linie na zmianę. Wywoływane w wątku pętli.
+     */
+    private void pace()
+    {
+        if (producing || streams.isEmpty()) {
+            return;
+        }
+        synchronized (outbox) {
+            if (queuedBytes > streamed) {
+                return;
+            }
+        }
+        producing = true;
+        submit(producer);
+    }
+
+    /**
+     * Tworzy jedną linię strumienia. Wywoływane w wątku roboczym.
+     */
+    private void produce()
+    {
+        Stream stream = streams.poll();
+        if (stream != null && !closed) {
+            String line = null;
+            boolean failed = false;
+            try {
+                line = stream.source.next();
+            } catch (RuntimeException e) {
+                //przerwana odpowiedz jest nie do naprawienia - klient dostalby niepelny labirynt
+                java.util.logging.Logger.getLogger(NioConnection.class.getName()).log(java.util.logging.Level.SEVERE, null, e);
+                failed = true;
+            }
+            if (failed) {
+                loop.execute(closer);
+            } else if (line == null) {
+                done(stream);
+            } else {
+                //kolejna linia powstaje tylko, gdy klient odebral poprzednia - to jest aktywnosc
+                lastActive = System.nanoTime();
+                streamed = enqueue(line);
+                streams.add(stream);
+            }
+        }
+        producing = false;
+        loop.execute(flush);
+    }
+
+    /**
+     * Strumień kończy się, gdy źródło się wyczerpało i polecenie, które go
+     * zaczęło, wróciło (jego odpowiedź jest w tail). Wtedy wychodzi odpowiedź
+     * i wznawiane są polecenia bez oznaczenia.
+     */
+    private void done(Stream stream)
+    {
+        if (stream.parts.decrementAndGet() > 0) {
+            return;
+        }
+        for (String what : stream.tail) {
+            enqueue(what);
+        }
+        streaming.decrementAndGet();
+        loop.execute(flush);
+        if (stream.ordered) {
+            processing.set(false);
+            if (!throttled && !lines.isEmpty() && processing.compareAndSet(false, true)) {
+                submit(processor);
+            }
+        }
+    }
+
+    @Override
+    public long getLastActive()
+    {
+        return lastActive;
+    }
+
+    /**
+     * Niewysłane odpowiedzi się nie liczą - klient, który przestał czytać,
+     * też ma być zamknięty po czasie bezczynności. Dlatego wstrzymane
+     * połączenie (throttle) jest bezczynne, nawet jeżeli ma polecenia
+     * czekające w kolejce na miejsce w outbox.
+     *
+     * @return Zwraca true, jeżeli połączenie wykonuje polecenie
+     */
+    @Override
+    public boolean isBusy()
+    {
+        return pending.get() > 0 && !throttled;
+    }
+
+    @Override
+    public boolean isClosed()
+    {
+        return closed;
+    }
+
+    /**
+     * Zamyka bezczynne połączenie w wątku pętli.
+     */
+    @Override
+    public void reap()
+    {
+        loop.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (!closed) {
+                    ServerMetrics.REAPED_IDLE.inc();
+                    submit(new Runnable() {
+                        @Override
+                        public void run() {
+                            log(address + "/" + "IDLE TIMEOUT");
+                        }
+                    });
+                    close();
+                }
+            }
+        });
+    }
+
+    /**
+     * Zamyka połączenie. Wywoływane w wątku pętli.
+     */
+    void close()
+    {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        ClientRegistry.unregister(this);
+        long lifetime = System.nanoTime() - openedAt;
+        ServerMetrics.CLOSED.inc();
+        ServerMetrics.LIFETIME.record(lifetime);
+        ConnectionClosedEvent.emit(address, "nio", lifetime);
+        key.cancel();
+        EventLoop.closeQuietly(channel);
+        synchronized (outbox) {
+            outbox.clear();
+            queuedBytes = 0;
+        }
+        streams.clear();
+        submit(new Runnable() {
+            @Override
+            public void run() {
+                log(address + "/" + "CLOSED CONNECTION");
+            }
+        });
+    }
+
+    /**
+     * Po przekroczeniu MAX_QUEUED_BYTES wstrzymuje odczyt nowych poleceń
+     * zamiast wstrzymywać wątek roboczy - pula jest wspólna dla wszystkich
+     * połączeń. Odpowiedź na polecenie, które już się wykonuje, trafia do
+     * kolejki w całości; dopiero HARD_QUEUED_BYTES zamyka połączenie.
+     * Wywoływane pod monitorem outbox.
+     */
+    private void throttle()
+    {
+        if (queuedBytes > HARD_QUEUED_BYTES) {
+            loop.execute(new Runnable() {
+                @Override
+                public void run() {
+                    if (!closed) {
+                        log(address + "/" + "OUTPUT LIMIT EXCEEDED");
+                        close();
+                    }
+                }
+            });
+        } else if (queuedBytes > MAX_QUEUED_BYTES && !throttled) {
+            throttled = true;
+            loop.execute(pauseReads);
+        }
+    }
+
+    /**
+     * Zwalnia miejsce po wysłanym buforze; po opróżnieniu kolejki do połowy
+     * limitu wznawia odczyt i przetwarzanie poleceń. Wywoływane w wątku pętli.
+     */
+    private void release(int bytes)
+    {
+        synchronized (outbox) {
+            queuedBytes -= bytes;
+            if (!throttled || queuedBytes > MAX_QUEUED_BYTES / 2) {
+                return;
+            }
+            throttled = false;
+        }
+        key.interestOps(key.interestOps() | SelectionKey.OP_READ);
+        if (!lines.isEmpty() && processing.compareAndSet(false, true)) {
+            submit(processor);
+        }
+    }
+
+    private void append(byte[] array, int offset, int length) throws IOException
+    {
+        if (partial == null) {
+            partial = ByteBuffer.allocate(Math.max(INITIAL_LINE, length));
+        } else if (partial.remaining() < length) {
+            int needed = partial.position() + length;
+            if (needed > MAX_LINE) {
+                throw new IOException("Za dluga linia od " + address);
+            }
+            ByteBuffer bigger = ByteBuffer.allocate(Math.min(MAX_LINE, Math.max(needed, partial.capacity() * 2)));
+            partial.flip();
+            bigger.put(partial);
+            partial = bigger;
+        }
+        partial.put(array, offset, length);
+    }
+
+    private void line(byte[] array, int offset, int length) throws IOException
+    {
+        if (length > 0 && array[offset + length - 1] == '\r') {
+            length--;
+        }
+        if (quit) {
+            return;
+        }
+        if (pending.incrementAndGet() > MAX_PENDING) {
+            throw new IOException("Za duzo oczekujacych polecen od " + address);
+        }
+        final String line = new String(array, offset, length, StandardCharsets.UTF_8);
+        final long received = System.nanoTime();
+        lastActive = received;
+        //przy wstrzymanym polaczeniu linie oznaczone z juz odczytanych bajtow czekaja w kolejce razem z reszta;
+        //oznaczone /QUIT tez idzie kolejka - zamyka polaczenie po wczesniejszych poleceniach
+        if (Console.isTagged(line) && !throttled && !Console.isQuit(line)) {
+            submit(new Runnable() {
+                @Override
+                public void run() {
+                    execute(line, received, false);
+                    pending.decrementAndGet();
+                    if (quit) {
+                        loop.execute(flush);
+                    }
+                }
+            });
+            return;
+        }
+        lines.add(new Line(line, received));
+        if (processing.compareAndSet(false, true)) {
+            submit(processor);
+        }
+    }
+
+    /**
+     * Przetwarza oczekujące linie bez oznaczenia po kolei - odpowiedzi wychodzą
+     * w tej samej kolejności, w jakiej przyszły polecenia. Linie oznaczone
+     * (Console.isTagged) omijają tę kolejkę i są wykonywane od razu w puli.
+     * Wstrzymane połączenie (throttle) zostawia linie w kolejce do release,
+     * a polecenie, które zaczęło strumień - do końca strumienia (done).
+     * Wywoływane w wątku roboczym.
+     */
+    private void process()
+    {
+        Line line;
+        while (!throttled && (line = lines.poll()) != null) {
+            boolean started = execute(line.text, line.received, true);
+            pending.decrementAndGet();
+            if (started) {
+                //processing zostaje ustawione - zwalnia je done
+                return;
+            }
+            if (Console.isQuit(line.text)) {
+                quit = true;
+                while (lines.poll() != null) {
+                    pending.decrementAndGet();
+                }
+                loop.execute(flush);
+                break;
+            }
+        }
+        processing.set(false);
+        if (!throttled && !lines.isEmpty() && processing.compareAndSet(false, true)) {
+            submit(processor);
+        }
+    }
+
+    /**
+     * @param ordered Parametr określający, czy polecenie jest bez oznaczenia (wstrzymuje kolejne do końca strumienia)
+     * @return Zwraca true, jeżeli polecenie zaczęło strumień
+     */
+    private boolean execute(String line, long received, boolean ordered)
+    {
+        try {
+            Console.checkAndDo(line, this, received);
+        } catch (Exception ex) {
+            java.util.logging.Logger.getLogger(NioConnection.class.getName()).log(java.util.logging.Level.SEVERE, null, ex);
+        }
+        Stream stream = current.get();
+        if (stream == null) {
+            return false;
+        }
+        current.remove();
+        stream.ordered = ordered;
+        done(stream);
+        return ordered;
+    }
+
+    private void submit(Runnable task)
+    {
+        try {
+            workers.execute(task);
+        } catch (RejectedExecutionException e) {
+            loop.execute(new Runnable() {
+                @Override
+                public void run() {
+                    close();
+                }
+            });
+        }
+    }
+
+    private static void log(String what)
+    {
+        try {
+            LogPolicy.record(LogPolicy.CONNECTION, false, what, null);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Linia polecenia czekająca na obsługę wraz z chwilą jej odczytania.
+     */
+    private static class Line
+    {
+        Line(String text, long received)
+        {
+            this.text = text;
+            this.received = received;
+        }
+
+        private final String text;
+        private final long received;
+    }
+
+    /**
+     * Strumień linii jednego polecenia razem z odpowiedzią, która wychodzi po nim.
+     */
+    private static class Stream
+    {
+        Stream(Source source)
+        {
+            this.source = source;
+        }
+
+        private final Source source;
+        private final ConcurrentLinkedQueue<String> tail = new ConcurrentLinkedQueue<>();
+        //zrodlo wyczerpane i polecenie zakonczone
+        private final AtomicInteger parts = new AtomicInteger(2);
+        private volatile boolean ordered;
+    }
+
+    private static final byte[] NEWLINE = {'\n'};
+    private static final int INITIAL_LINE = 128;
+    private static final int MAX_LINE = 64 * 1024;
+    private static final int MAX_PENDING = 256;
+    private static final long MAX_QUEUED_BYTES = 1024 * 1024;
+    private static final long HARD_QUEUED_BYTES = 64 * 1024 * 1024;
+
+    private final SocketChannel channel;
+    private final EventLoop loop;
+    private final ExecutorService workers;
+    private final InetAddress address;
+    private SelectionKey key;
+    private long openedAt;
+
+    //bufor niepelnej linii - tworzony tylko, gdy linia nie przyszla w calosci
+    private ByteBuffer partial;
+
+    private final ConcurrentLinkedQueue<ByteBuffer> outbox = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<Line> lines = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicBoolean processing = new AtomicBoolean();
+    private volatile boolean quit;
+    private volatile boolean closed;
+    private volatile long lastActive;
+    //kolejka wysylki przekroczyla MAX_QUEUED_BYTES - odczyt i przetwarzanie polecen wstrzymane
+    private volatile boolean throttled;
+    //bajty czekajace w outbox - chronione monitorem outbox
+    private long queuedBytes;
+
+    //strumienie czekajace na kolejna linie i polecenie, ktore wlasnie zaczelo strumien w tym watku
+    private final ConcurrentLinkedQueue<Stream> streams = new ConcurrentLinkedQueue<>();
+    private final ThreadLocal<Stream> current = new ThreadLocal<>();
+    private final AtomicInteger streaming = new AtomicInteger();
+    private volatile boolean producing;
+    //rozmiar ostatniej linii strumienia - ponizej tego w outbox powstaje kolejna
+    private volatile long streamed;
+
+    private final Runnable producer = new Runnable() {
+        @Override
+        public void run() {
+            produce();
+        }
+    };
+
+    private final Runnable closer = new Runnable() {
+        @Override
+        public void run() {
+            close();
+        }
+    };
+
+    private final Runnable processor = new Runnable() {
+        @Override
+        public void run() {
+            process();
+        }
+    };
+
+    private final Runnable pauseReads = new Runnable() {
+        @Override
+        public void run() {
+            if (throttled && !closed) {
+                key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+            }
+        }
+    };
+
+    private final Runnable flush = new Runnable() {
+        @Override
+        public void run() {
+            try {
+                onWritable();
+            } catch (IOException e) {
+                close();
+            }
+        }
+    };
+}
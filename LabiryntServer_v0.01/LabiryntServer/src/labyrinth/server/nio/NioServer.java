@@ -0,0 +1,98 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package labyrinth.server.nio;
+
+import labyrinth.server.metrics.ServerMetrics;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Klasa reprezentująca serwer oparty o pętle zdarzeń NIO - alternatywa dla
+ * wątku na połączenie. Kilka wątków z Selectorami obsługuje wszystkie
+ * połączenia, a generowanie labiryntów odbywa się w osobnej puli wątków roboczych.
+ * @author informatyka
+ */
+public class NioServer {
+
+    /**
+     *
+     * @param port Parametr odpowiadający za port serwera
+     * @param loops Parametr odpowiadający za liczbę wątków pętli zdarzeń
+     * @param workers Parametr odpowiadający za liczbę wątków roboczych
+     */
+    public NioServer(int port, int loops, int workers)
+    {
+        this.port = port;
+        this.loops = new EventLoop[Math.max(1, loops)];
+        this.workers = Executors.newFixedThreadPool(Math.max(1, workers), new NamedThreadFactory("nio-worker-"));
+    }
+
+    /**
+     * Uruchamia pętle zdarzeń i przyjmuje połączenia, rozdzielając je po kolei między pętle.
+     *
+     * @throws IOException
+     */
+    public void run() throws IOException
+    {
+        ThreadFactory loopThreads = new NamedThreadFactory("nio-loop-");
+        for (int i = 0; i < loops.length; i++) {
+            loops[i] = new EventLoop(workers);
+            loopThreads.newThread(loops[i]).start();
+        }
+
+        ServerSocketChannel server = ServerSocketChannel.open();
+        server.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+        server.bind(new InetSocketAddress(port), BACKLOG);
+
+        int next = 0;
+        while (true) {
+            SocketChannel channel = server.accept();
+            ServerMetrics.ACCEPTED.inc();
+            try {
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            } catch (IOException e) {
+                ServerMetrics.REJECTED.inc();
+                EventLoop.closeQuietly(channel);
+                continue;
+            }
+            loops[next].register(channel);
+            next = (next + 1) % loops.length;
+        }
+    }
+
+    private static class NamedThreadFactory implements ThreadFactory
+    {
+        NamedThreadFactory(String prefix)
+        {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable r)
+        {
+            Thread t = new Thread(r, prefix + counter.getAndIncrement());
+            t.setDaemon(false);
+            return t;
+        }
+
+        private final String prefix;
+        private final AtomicInteger counter = new AtomicInteger();
+    }
+
+    private static final int BACKLOG = 4096;
+
+    private final int port;
+    private final EventLoop[] loops;
+    private final ExecutorService workers;
+}
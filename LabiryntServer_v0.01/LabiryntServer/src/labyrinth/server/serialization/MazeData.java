@@ -0,0 +1,119 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package labyrinth.server.serialization;
+
+/**
+ * Klasa reprezentująca labirynt odczytany z formatu MazeCodec - rozmiar,
+ * start, metę i bitmapę ścian ułożoną wierszami.
+ * @author informatyka
+ */
+public class MazeData {
+
+    /**
+     *
+     * @param width parametr odpowiadający za szerokość siatki labiryntu.
+     * @param height parametr odpowiadający za wysokość siatki labiryntu.
+     * @param start parametr odpowiadający za pole startu.
+     * @param meta parametr odpowiadający za pole mety.
+     * @param walls bitmapa ścian - bit (y * width + x) ustawiony oznacza ścianę.
+     */
+    public MazeData(int width, int height, Coord start, Coord meta, long[] walls)
+    {
+        this.width = width;
+        this.height = height;
+        this.start = start;
+        this.meta = meta;
+        this.walls = walls;
+    }
+
+    /**
+     *
+     * @return Zwraca szerokość siatki labiryntu.
+     */
+    public int getWidth()
+    {
+        return width;
+    }
+
+    /**
+     *
+     * @return Zwraca wysokość siatki labiryntu.
+     */
+    public int getHeight()
+    {
+        return height;
+    }
+
+    /**
+     *
+     * @return Zwraca pole startu.
+     */
+    public Coord getStart()
+    {
+        return start;
+    }
+
+    /**
+     *
+     * @return Zwraca pole mety.
+     */
+    public Coord getMeta()
+    {
+        return meta;
+    }
+
+    /**
+     *
+     * @return Zwraca bitmapę ścian (bez kopiowania).
+     */
+    public long[] getWalls()
+    {
+        return walls;
+    }
+
+    /**
+     *
+     * @param x parametr odpowiadający za xowy koordynat pola.
+     * @param y parametr odpowiadający za yowy koordynat pola.
+     * @return Zwraca true, jeżeli pole jest ścianą.
+     */
+    public boolean isWall(int x, int y)
+    {
+        int index = y * width + x;
+        return (walls[index >>> 6] & (1L << index)) != 0;
+    }
+
+    /**
+     *
+     * @param from pierwszy sprawdzany indeks pola.
+     * @param to indeks za ostatnim sprawdzanym polem.
+     * @return Zwraca indeks najbliższej ściany z przedziału [from, to) albo -1.
+     */
+    public int nextWall(int from, int to)
+    {
+        if (from >= to) {
+            return -1;
+        }
+        int w = from >>> 6;
+        long word = walls[w] & (-1L << from);
+        while (true) {
+            if (word != 0) {
+                int index = (w << 6) + Long.numberOfTrailingZeros(word);
+                return index < to ? index : -1;
+            }
+            if (((long) ++w << 6) >= to) {
+                return -1;
+            }
+            word = walls[w];
+        }
+    }
+
+    private int width;
+    private int height;
+    private Coord start;
+    private Coord meta;
+    private long[] walls;
+}
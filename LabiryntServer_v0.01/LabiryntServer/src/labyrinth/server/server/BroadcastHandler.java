@@ -0,0 +1,81 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package labyrinth.server.server;
+
+import labyrinth.server.clientthread.ClientRegistry;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Klasa reprezentująca punkt POST /broadcast na lokalnym porcie metryk -
+ * operator rozsyła nim komunikat do wszystkich klientów albo do jednego
+ * pokoju (?room=nazwa). Klienci dostają linię "NOTICE treść".
+ * @author informatyka
+ */
+class BroadcastHandler implements HttpHandler {
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException
+    {
+        if (!"POST".equals(exchange.getRequestMethod())) {
+            reply(exchange, 405, "POST only");
+            return;
+        }
+        String message = read(exchange.getRequestBody()).trim();
+        if (message.isEmpty() || message.length() > MAX_MESSAGE || message.indexOf('\n') >= 0 || message.indexOf('\r') >= 0) {
+            reply(exchange, 400, "one line of at most " + MAX_MESSAGE + " bytes expected");
+            return;
+        }
+        String room = room(exchange.getRequestURI().getRawQuery());
+        int delivered = room == null
+                ? ClientRegistry.broadcast(PREFIX + message)
+                : ClientRegistry.broadcast("room", room, PREFIX + message);
+        reply(exchange, 200, "delivered " + delivered);
+    }
+
+    private static String room(String query) throws IOException
+    {
+        if (query == null) {
+            return null;
+        }
+        for (String pair : query.split("&")) {
+            if (pair.startsWith("room=")) {
+                return URLDecoder.decode(pair.substring(5), "UTF-8");
+            }
+        }
+        return null;
+    }
+
+    private static String read(InputStream in) throws IOException
+    {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = in.read(buffer)) > 0 && body.size() <= MAX_MESSAGE) {
+            body.write(buffer, 0, read);
+        }
+        return new String(body.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static void reply(HttpExchange exchange, int status, String text) throws IOException
+    {
+        byte[] body = (text + "\n").getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static final String PREFIX = "NOTICE ";
+    private static final int MAX_MESSAGE = 4096;
+}
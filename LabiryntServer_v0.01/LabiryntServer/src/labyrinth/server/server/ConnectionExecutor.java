@@ -0,0 +1,164 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package labyrinth.server.server;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.net.Socket;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Klasa reprezentująca sposób uruchamiania wątków klientów (ClientThread):
+ * "thread" - nowy wątek na każde połączenie (bez ograniczeń),
+ * "pool" - ograniczona pula wątków z kolejką oczekujących połączeń,
+ * "virtual" - wątek wirtualny na każde połączenie (Java 21+).
+ * Każdy tryb zlicza aktywne, oczekujące i odrzucone połączenia.
+ * @author informatyka
+ */
+public class ConnectionExecutor {
+
+    /**
+     *
+     * @param mode Parametr odpowiadający za tryb ("thread", "pool" lub "virtual")
+     * @param threads Parametr odpowiadający za liczbę wątków w trybie "pool"
+     * @param queue Parametr odpowiadający za długość kolejki oczekujących połączeń w trybie "pool"
+     * @return Zwraca wykonawcę połączeń dla podanego trybu
+     */
+    public static ConnectionExecutor create(String mode, int threads, int queue)
+    {
+        if ("pool".equals(mode)) {
+            ArrayBlockingQueue<Runnable> waiting = new ArrayBlockingQueue<>(Math.max(1, queue));
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, waiting);
+            return new ConnectionExecutor("pool", pool, waiting);
+        }
+        if ("virtual".equals(mode)) {
+            try {
+                Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+                return new ConnectionExecutor("virtual", (ExecutorService) factory.invoke(null), null);
+            } catch (ReflectiveOperationException e) {
+                System.out.println("Watki wirtualne wymagaja Javy 21 - uzywam trybu thread");
+            }
+        }
+        return new ConnectionExecutor("thread", new Executor() {
+            @Override
+            public void execute(Runnable r) {
+                new Thread(r).start();
+            }
+        }, null);
+    }
+
+    private ConnectionExecutor(String mode, Executor executor, BlockingQueue<Runnable> waiting)
+    {
+        this.mode = mode;
+        this.executor = executor;
+        this.waiting = waiting;
+        current = this;
+    }
+
+    /**
+     * Uruchamia obsługę połączenia. Jeżeli tryb nie przyjmie więcej połączeń,
+     * gniazdo jest zamykane.
+     *
+     * @param socket Parametr odpowiadający za gniazdo klienta
+     * @param client Parametr odpowiadający za obsługę klienta
+     * @return Zwraca true, jeżeli połączenie zostało przyjęte
+     */
+    public boolean execute(Socket socket, final Runnable client)
+    {
+        accepted.incrementAndGet();
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    active.incrementAndGet();
+                    try {
+                        client.run();
+                    } finally {
+                        active.decrementAndGet();
+                    }
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            rejected.incrementAndGet();
+            try {
+                socket.close();
+            } catch (IOException ex) {
+                //polaczenie i tak jest odrzucane
+            }
+            return false;
+        }
+    }
+
+    /**
+     *
+     * @return Zwraca nazwę trybu
+     */
+    public String getMode()
+    {
+        return mode;
+    }
+
+    /**
+     *
+     * @return Zwraca liczbę obsługiwanych w tej chwili połączeń
+     */
+    public long getActive()
+    {
+        return active.get();
+    }
+
+    /**
+     *
+     * @return Zwraca liczbę połączeń czekających na wolny wątek
+     */
+    public long getQueued()
+    {
+        return waiting == null ? 0 : waiting.size();
+    }
+
+    /**
+     *
+     * @return Zwraca liczbę odrzuconych połączeń
+     */
+    public long getRejected()
+    {
+        return rejected.get();
+    }
+
+    /**
+     *
+     * @return Zwraca ostatnio utworzonego wykonawcę połączeń albo null
+     */
+    public static ConnectionExecutor getCurrent()
+    {
+        return current;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "mode=" + mode + " accepted=" + accepted.get() + " active=" + active.get()
+                + " queued=" + getQueued() + " rejected=" + rejected.get();
+    }
+
+    private static volatile ConnectionExecutor current;
+
+    private final String mode;
+    private final Executor executor;
+    private final BlockingQueue<Runnable> waiting;
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong active = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+}
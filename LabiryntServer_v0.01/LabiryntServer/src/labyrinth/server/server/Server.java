@@ -7,7 +7,17 @@ package labyrinth.server.server;
 
 import labyrinth.server.configuration.Configuration;
 import labyrinth.server.clientthread.ClientThread;
+import labyrinth.server.clientthread.IdleSweeper;
+import labyrinth.server.console.LogPolicy;
 import labyrinth.server.console.Logger;
+import labyrinth.server.console.SlowLog;
+import labyrinth.server.maze.LabUtils;
+import labyrinth.server.maze.MazeGeneratorRegistry;
+import labyrinth.server.metrics.Gauge;
+import labyrinth.server.metrics.Metrics;
+import labyrinth.server.metrics.MetricsHttpServer;
+import labyrinth.server.metrics.ServerMetrics;
+import labyrinth.server.nio.NioServer;
 import java.io.IOException;
 import java.net.ServerSocket;
 import java.net.Socket;
@@ -29,21 +39,52 @@ public class Server {
         
         
         Configuration.load();
-        Logger.setPath(Configuration.getLogpath());
+        Logger.start(Configuration.getLogpath(), Configuration.getLogBuffer(), Configuration.getLogOverflow());
+        SlowLog.start(Configuration.getSlowLogPath(), Configuration.getSlowLogMillis());
+        LabUtils.setCacheSize(Configuration.getMazeCacheBytes());
+        LabUtils.startPool(Configuration.getPoolMazes(), Configuration.getPoolThreads(), Configuration.getPoolMaxCells());
+        MazeGeneratorRegistry.configure(Configuration.getMazeAlgorithm(), Configuration.getMazeMaxBytes(),
+                Configuration.getMazeBudgetBytes());
+        LabUtils.startBatch(Configuration.getBatchThreads(), Configuration.getBatchMax(), Configuration.getBatchBudgetBytes());
+        LogPolicy.configure(Configuration.getLogLevelServer(), Configuration.getLogLevelConnection(),
+                Configuration.getLogLevelRequest(), Configuration.getLogLevelResponse(),
+                Configuration.getLogMaxPayload(), Configuration.getLogSample(), Configuration.isConsoleEcho());
+        IdleSweeper.start(Configuration.getIdleTimeoutMillis());
+        ClientThread.setReadTimeout(Configuration.getReadTimeoutMillis());
+        registerGauges();
+        if(Configuration.getMetricsPort() > 0)
+        {
+            MetricsHttpServer metrics = MetricsHttpServer.start(Configuration.getMetricsPort());
+            metrics.addContext("/broadcast", new BroadcastHandler());
+            System.out.println("Metrics at http://localhost:" + metrics.getPort() + "/metrics");
+        }
         System.out.println("Server started at port: " + Configuration.getPort());
-        Logger.log("TURN ON SERVER");
+        LogPolicy.record(LogPolicy.SERVER, false, "TURN ON SERVER", null);
+        
+        if("nio".equals(Configuration.getConnector()))
+        {
+            new NioServer(Configuration.getPort(), Configuration.getNioLoops(), Configuration.getNioWorkers()).run();
+            return;
+        }
         
         try
         {
+            ConnectionExecutor executor = ConnectionExecutor.create(Configuration.getConnector(),
+                    Configuration.getConnectorThreads(), Configuration.getConnectorQueue());
+            System.out.println("Connection mode: " + executor.getMode());
+            ClientThread.startPipeline(Configuration.getPipelineWorkers());
             ServerSocket s = new ServerSocket(Configuration.getPort());
             while(true)
             {
                 Socket inc = s.accept();
-                System.out.println(inc.getInetAddress() + "/" + "OPENED CONNECTION");
-                Logger.log(inc.getInetAddress() + "/" + "OPENED CONNECTION");
+                ServerMetrics.ACCEPTED.inc();
+                LogPolicy.record(LogPolicy.CONNECTION, false, inc.getInetAddress() + "/" + "OPENED CONNECTION", null);
                 Runnable r = new ClientThread(inc);
-                Thread t = new Thread(r);
-                t.start();
+                if(!executor.execute(inc, r))
+                {
+                    ServerMetrics.REJECTED.inc();
+                    LogPolicy.record(LogPolicy.CONNECTION, true, inc.getInetAddress() + "/" + "REJECTED CONNECTION", null);
+                }
             }
             
         }
@@ -54,4 +95,78 @@ public class Server {
         
         
     }
+
+    /**
+     * Rejestruje wskaźniki odczytywane z komponentów serwera przy eksporcie metryk.
+     */
+    private static void registerGauges()
+    {
+        Metrics.gauge("labyrinth_generation_bytes", null, "Szacowana pamiec labiryntow generowanych w tej chwili", new Gauge() {
+            @Override
+            public double value() {
+                return MazeGeneratorRegistry.getUsedBytes();
+            }
+        });
+        Metrics.gauge("labyrinth_cache_hits", null, "Trafienia pamieci podrecznej labiryntow", new Gauge() {
+            @Override
+            public double value() {
+                return LabUtils.getCache().getHits();
+            }
+        });
+        Metrics.gauge("labyrinth_cache_misses", null, "Chybienia pamieci podrecznej labiryntow", new Gauge() {
+            @Override
+            public double value() {
+                return LabUtils.getCache().getMisses();
+            }
+        });
+        Metrics.gauge("labyrinth_cache_bytes", null, "Bajty labiryntow w pamieci podrecznej", new Gauge() {
+            @Override
+            public double value() {
+                return LabUtils.getCache().getCachedBytes();
+            }
+        });
+        Metrics.gauge("labyrinth_pool_hits", null, "Labirynty wydane z puli", new Gauge() {
+            @Override
+            public double value() {
+                return LabUtils.getPool() == null ? 0 : LabUtils.getPool().getHits();
+            }
+        });
+        Metrics.gauge("labyrinth_pool_misses", null, "Labirynty generowane mimo pustej puli", new Gauge() {
+            @Override
+            public double value() {
+                return LabUtils.getPool() == null ? 0 : LabUtils.getPool().getMisses();
+            }
+        });
+        Metrics.gauge("labyrinth_log_dropped", null, "Wpisy logu odrzucone przy pelnym buforze", new Gauge() {
+            @Override
+            public double value() {
+                return Logger.getDropped();
+            }
+        });
+        Metrics.gauge("labyrinth_executor_active", null, "Polaczenia obslugiwane przez warstwe polaczen", new Gauge() {
+            @Override
+            public double value() {
+                return ConnectionExecutor.getCurrent() == null ? 0 : ConnectionExecutor.getCurrent().getActive();
+            }
+        });
+        Metrics.gauge("labyrinth_executor_queued", null, "Polaczenia czekajace w kolejce warstwy polaczen", new Gauge() {
+            @Override
+            public double value() {
+                return ConnectionExecutor.getCurrent() == null ? 0 : ConnectionExecutor.getCurrent().getQueued();
+            }
+        });
+        Metrics.gauge("jvm_memory_heap_used_bytes", null, "Zajeta pamiec sterty", new Gauge() {
+            @Override
+            public double value() {
+                Runtime runtime = Runtime.getRuntime();
+                return runtime.totalMemory() - runtime.freeMemory();
+            }
+        });
+        Metrics.gauge("jvm_threads", null, "Zywe watki JVM", new Gauge() {
+            @Override
+            public double value() {
+                return Thread.activeCount();
+            }
+        });
+    }
 }
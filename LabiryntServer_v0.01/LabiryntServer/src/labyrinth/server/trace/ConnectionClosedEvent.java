@@ -0,0 +1,54 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package labyrinth.server.trace;
+
+import java.net.InetAddress;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Zdarzenie JFR zamknięcia połączenia klienta wraz z czasem jego życia.
+ * @author informatyka
+ */
+@Name("labyrinth.ConnectionClosed")
+@Label("Connection Closed")
+@Description("Client connection closed")
+@Category({"Labyrinth", "Connection"})
+@StackTrace(false)
+public class ConnectionClosedEvent extends Event {
+
+    /**
+     *
+     * @param client Parametr określający adres klienta
+     * @param connector Parametr określający warstwę połączeń ("thread" albo "nio")
+     * @param lifetimeNanos Parametr określający czas życia połączenia w nanosekundach
+     */
+    public static void emit(InetAddress client, String connector, long lifetimeNanos)
+    {
+        ConnectionClosedEvent event = new ConnectionClosedEvent();
+        if (event.isEnabled()) {
+            event.client = String.valueOf(client);
+            event.connector = connector;
+            event.lifetime = lifetimeNanos;
+            event.commit();
+        }
+    }
+
+    @Label("Client")
+    private String client;
+
+    @Label("Connector")
+    private String connector;
+
+    @Label("Lifetime")
+    @Timespan
+    private long lifetime;
+}
@@ -0,0 +1,47 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package labyrinth.server.trace;
+
+import java.net.InetAddress;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Zdarzenie JFR otwarcia połączenia klienta.
+ * @author informatyka
+ */
+@Name("labyrinth.ConnectionOpened")
+@Label("Connection Opened")
+@Description("Client connection accepted by the server")
+@Category({"Labyrinth", "Connection"})
+@StackTrace(false)
+public class ConnectionOpenedEvent extends Event {
+
+    /**
+     *
+     * @param client Parametr określający adres klienta
+     * @param connector Parametr określający warstwę połączeń ("thread" albo "nio")
+     */
+    public static void emit(InetAddress client, String connector)
+    {
+        ConnectionOpenedEvent event = new ConnectionOpenedEvent();
+        if (event.isEnabled()) {
+            event.client = String.valueOf(client);
+            event.connector = connector;
+            event.commit();
+        }
+    }
+
+    @Label("Client")
+    private String client;
+
+    @Label("Connector")
+    private String connector;
+}
@@ -0,0 +1,30 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package labyrinth.server.trace;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+/**
+ * Zdarzenie JFR fazy: zamiana siatki na listę pól.
+ * @author informatyka
+ */
+@Name("labyrinth.Convert")
+@Label("Maze Conversion")
+@Description("Converting the maze grid to a list of Coord fields")
+@Threshold("1 ms")
+public class ConvertEvent extends RequestPhaseEvent {
+
+    /**
+     * Tworzy zdarzenie - pomiar zaczyna się dopiero od start().
+     */
+    public ConvertEvent()
+    {
+        super(RequestTrace.CONVERT);
+    }
+}
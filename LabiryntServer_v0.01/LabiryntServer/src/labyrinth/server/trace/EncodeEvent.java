@@ -0,0 +1,30 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package labyrinth.server.trace;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+/**
+ * Zdarzenie JFR fazy: kodowanie odpowiedzi.
+ * @author informatyka
+ */
+@Name("labyrinth.Encode")
+@Label("Response Encoding")
+@Description("Encoding the response with MazeCodec or Serializator")
+@Threshold("1 ms")
+public class EncodeEvent extends RequestPhaseEvent {
+
+    /**
+     * Tworzy zdarzenie - pomiar zaczyna się dopiero od start().
+     */
+    public EncodeEvent()
+    {
+        super(RequestTrace.ENCODE);
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package labyrinth.server.trace;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+import com.sun.management.GcInfo;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.RuntimeMXBean;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+
+/**
+ * Klasa reprezentująca ostatnie pauzy GC, zbierane z powiadomień JMX
+ * kolektorów. Pauzy są trzymane w buforze cyklicznym (czas od startu JVM
+ * w milisekundach), żeby można było sprawdzić, które z nich nachodziły
+ * na okno obsługi polecenia. Kolektory współbieżne ("Concurrent", "Cycles")
+ * są pomijane - ich czas nie zatrzymuje wątków.
+ * @author informatyka
+ */
+public class GcPauses {
+
+    private GcPauses()
+    {
+    }
+
+    /**
+     * Zaczyna nasłuchiwać powiadomień o pauzach (kolejne wywołania nic nie robią).
+     */
+    public static synchronized void install()
+    {
+        if (installed) {
+            return;
+        }
+        installed = true;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            if (!(gc instanceof NotificationEmitter) || gc.getName().contains("Concurrent") || gc.getName().contains("Cycles")) {
+                continue;
+            }
+            ((NotificationEmitter) gc).addNotificationListener(new NotificationListener() {
+                @Override
+                public void handleNotification(Notification notification, Object handback) {
+                    if (GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+                        GcInfo info = GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData()).getGcInfo();
+                        add(info.getStartTime(), info.getEndTime());
+                    }
+                }
+            }, null, null);
+        }
+    }
+
+    private static synchronized void add(long start, long end)
+    {
+        int i = count & (SIZE - 1);
+        starts[i] = start;
+        ends[i] = end;
+        count++;
+    }
+
+    /**
+     *
+     * Zegar monotoniczny JVM (ten sam, co GcInfo) - przestawienie zegara
+     * systemowego nie przesuwa okien względem pauz.
+     *
+     * @return Zwraca bieżący czas od startu JVM w milisekundach (skala czasu pauz)
+     */
+    public static long uptimeMillis()
+    {
+        return RUNTIME.getUptime();
+    }
+
+    /**
+     * Sumuje pauzy nachodzące na okno [from, to]. Pauza zakończona tuż przed
+     * końcem okna może jeszcze nie być zgłoszona - powiadomienia przychodzą
+     * z opóźnieniem.
+     *
+     * @param from Parametr określający początek okna (czas od startu JVM w ms)
+     * @param to Parametr określający koniec okna (czas od startu JVM w ms)
+     * @return Zwraca opis w postaci "liczba/łączny czas w ms", np. "2/14ms"
+     */
+    public static synchronized String describe(long from, long to)
+    {
+        int pauses = 0;
+        long millis = 0;
+        for (int n = 0; n < Math.min(count, SIZE); n++) {
+            int i = (count - 1 - n) & (SIZE - 1);
+            if (ends[i] < from) {
+                continue;
+            }
+            if (starts[i] <= to) {
+                pauses++;
+                millis += Math.min(ends[i], to) - Math.max(starts[i], from);
+            }
+        }
+        return pauses + "/" + millis + "ms";
+    }
+
+    private static final int SIZE = 256;
+    private static final RuntimeMXBean RUNTIME = ManagementFactory.getRuntimeMXBean();
+    private static final long[] starts = new long[SIZE];
+    private static final long[] ends = new long[SIZE];
+    private static int count;
+    private static boolean installed;
+}
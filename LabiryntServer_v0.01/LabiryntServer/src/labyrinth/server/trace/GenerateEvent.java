@@ -0,0 +1,30 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package labyrinth.server.trace;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+/**
+ * Zdarzenie JFR fazy: generowanie labiryntu.
+ * @author informatyka
+ */
+@Name("labyrinth.Generate")
+@Label("Maze Generation")
+@Description("Generating the maze grid")
+@Threshold("1 ms")
+public class GenerateEvent extends RequestPhaseEvent {
+
+    /**
+     * Tworzy zdarzenie - pomiar zaczyna się dopiero od start().
+     */
+    public GenerateEvent()
+    {
+        super(RequestTrace.GENERATE);
+    }
+}
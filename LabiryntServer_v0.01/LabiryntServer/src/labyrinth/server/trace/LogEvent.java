@@ -0,0 +1,30 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package labyrinth.server.trace;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+/**
+ * Zdarzenie JFR fazy: zapis polecenia i odpowiedzi do logu.
+ * @author informatyka
+ */
+@Name("labyrinth.Log")
+@Label("Request Logging")
+@Description("Writing the request and response to the log")
+@Threshold("1 ms")
+public class LogEvent extends RequestPhaseEvent {
+
+    /**
+     * Tworzy zdarzenie - pomiar zaczyna się dopiero od start().
+     */
+    public LogEvent()
+    {
+        super(RequestTrace.LOG);
+    }
+}
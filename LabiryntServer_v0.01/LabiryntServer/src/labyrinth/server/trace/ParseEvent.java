@@ -0,0 +1,30 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package labyrinth.server.trace;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+/**
+ * Zdarzenie JFR fazy: rozbiór linii polecenia.
+ * @author informatyka
+ */
+@Name("labyrinth.Parse")
+@Label("Request Parse")
+@Description("Splitting the request line into tag and command")
+@Threshold("1 ms")
+public class ParseEvent extends RequestPhaseEvent {
+
+    /**
+     * Tworzy zdarzenie - pomiar zaczyna się dopiero od start().
+     */
+    public ParseEvent()
+    {
+        super(RequestTrace.PARSE);
+    }
+}
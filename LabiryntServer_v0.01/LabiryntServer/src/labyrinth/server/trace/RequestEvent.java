@@ -0,0 +1,44 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package labyrinth.server.trace;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+/**
+ * Zdarzenie JFR całego polecenia (Console.checkAndDo) - obejmuje wszystkie
+ * jego fazy, a rozmiar danych to suma bajtów wysłanych klientowi.
+ * @author informatyka
+ */
+@Name("labyrinth.Request")
+@Label("Request")
+@Description("Whole request handled by Console.checkAndDo")
+@Threshold("5 ms")
+public class RequestEvent extends RequestPhaseEvent {
+
+    /**
+     * Tworzy zdarzenie - pomiar zaczyna się dopiero od start().
+     */
+    public RequestEvent()
+    {
+        super(-1);
+    }
+
+    /**
+     *
+     * @param error Parametr określający, czy polecenie zakończyło się błędem
+     */
+    public void finish(boolean error)
+    {
+        this.error = error;
+        finish();
+    }
+
+    @Label("Error")
+    private boolean error;
+}
@@ -0,0 +1,132 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package labyrinth.server.trace;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.StackTrace;
+
+/**
+ * Klasa bazowa zdarzeń JFR faz polecenia. Zdarzenie mierzy fazę od start()
+ * do finish(), dolicza jej czas do kontekstu RequestTrace bieżącego wątku
+ * i uzupełnia z niego klienta, polecenie i labirynt. Nagrywane jest tylko,
+ * gdy JFR je włączył, a czas przekroczył próg z profilu (labyrinth.jfc).
+ * @author informatyka
+ */
+@Category({"Labyrinth", "Request"})
+@StackTrace(false)
+public abstract class RequestPhaseEvent extends Event {
+
+    /**
+     *
+     * @param phase Parametr określający fazę z RequestTrace (ujemna - całe polecenie)
+     */
+    RequestPhaseEvent(int phase)
+    {
+        this.phase = phase;
+    }
+
+    /**
+     * Rozpoczyna pomiar fazy.
+     */
+    public void start()
+    {
+        beginNanos = System.nanoTime();
+        begin();
+    }
+
+    /**
+     *
+     * @param width Parametr określający szerokość siatki labiryntu
+     * @param height Parametr określający wysokość siatki labiryntu
+     * @param algorithm Parametr określający nazwę generatora
+     */
+    public void maze(int width, int height, String algorithm)
+    {
+        this.width = width;
+        this.height = height;
+        this.algorithm = algorithm;
+    }
+
+    /**
+     *
+     * @param bytes Parametr określający rozmiar danych fazy w bajtach
+     */
+    public void payload(long bytes)
+    {
+        this.payloadBytes = bytes;
+    }
+
+    /**
+     * Kończy pomiar fazy i nagrywa zdarzenie, jeżeli JFR tego chce.
+     */
+    public void finish()
+    {
+        end();
+        long nanos = System.nanoTime() - beginNanos;
+        RequestTrace trace = RequestTrace.current();
+        if (trace != null) {
+            record(trace, nanos);
+            if (algorithm == null && trace.getWidth() != 0) {
+                maze(trace.getWidth(), trace.getHeight(), trace.getAlgorithm());
+            }
+        }
+        if (shouldCommit()) {
+            if (trace != null) {
+                client = String.valueOf(trace.getClient());
+                command = trace.getCommand();
+            }
+            commit();
+        }
+    }
+
+    /**
+     * Dolicza fazę do kontekstu polecenia.
+     *
+     * @param trace Parametr określający kontekst polecenia bieżącego wątku
+     * @param nanos Parametr określający czas fazy w nanosekundach
+     */
+    void record(RequestTrace trace, long nanos)
+    {
+        if (phase < 0) {
+            //zdarzenie calego polecenia - dane wyslane we wszystkich fazach
+            payloadBytes = trace.getPayloadBytes();
+            return;
+        }
+        trace.add(phase, nanos);
+        if (width != 0 && trace.getWidth() == 0) {
+            RequestTrace.maze(width, height, algorithm);
+        }
+        if (phase == RequestTrace.WRITE) {
+            trace.addPayload(payloadBytes);
+        }
+    }
+
+    //pola nagrywane przez JFR - w klasie bazowej zdarzenia nie moga byc prywatne
+    @Label("Client")
+    String client;
+
+    @Label("Command")
+    String command;
+
+    @Label("Width")
+    int width;
+
+    @Label("Height")
+    int height;
+
+    @Label("Algorithm")
+    String algorithm;
+
+    @Label("Payload")
+    @DataAmount
+    long payloadBytes;
+
+    private final transient int phase;
+    private transient long beginNanos;
+}
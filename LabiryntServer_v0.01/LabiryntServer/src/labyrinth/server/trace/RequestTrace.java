@@ -0,0 +1,219 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package labyrinth.server.trace;
+
+import java.net.InetAddress;
+
+/**
+ * Klasa reprezentująca kontekst polecenia obsługiwanego w bieżącym wątku:
+ * klienta, linię polecenia, rozmiar i algorytm labiryntu, wysłane bajty
+ * oraz łączny czas poszczególnych faz. Kontekst jest jeden na wątek
+ * i używany ponownie, więc śledzenie nie tworzy obiektów na polecenie.
+ * Fazy wykonywane poza poleceniem (pula, partie) nie mają kontekstu.
+ * @author informatyka
+ */
+public class RequestTrace {
+
+    /**
+     * Faza rozbioru linii polecenia.
+     */
+    public static final int PARSE = 0;
+
+    /**
+     * Faza generowania labiryntu.
+     */
+    public static final int GENERATE = 1;
+
+    /**
+     * Faza zamiany siatki na listę pól (Coord).
+     */
+    public static final int CONVERT = 2;
+
+    /**
+     * Faza kodowania odpowiedzi (MazeCodec, Serializator).
+     */
+    public static final int ENCODE = 3;
+
+    /**
+     * Faza zapisu do logu.
+     */
+    public static final int LOG = 4;
+
+    /**
+     * Faza wysyłania odpowiedzi do klienta.
+     */
+    public static final int WRITE = 5;
+
+    /**
+     * Liczba faz.
+     */
+    public static final int PHASES = 6;
+
+    /**
+     *
+     * @param phase Parametr określający fazę
+     * @return Zwraca nazwę fazy, np. "generate"
+     */
+    public static String getPhaseName(int phase)
+    {
+        return PHASE_NAMES[phase];
+    }
+
+    private RequestTrace()
+    {
+    }
+
+    /**
+     * Rozpoczyna śledzenie polecenia w bieżącym wątku.
+     *
+     * @param client Parametr określający adres klienta
+     * @param command Parametr zawierający linię polecenia
+     * @return Zwraca kontekst polecenia
+     */
+    public static RequestTrace begin(InetAddress client, String command)
+    {
+        RequestTrace trace = CURRENT.get();
+        trace.client = client;
+        trace.command = command;
+        trace.width = 0;
+        trace.height = 0;
+        trace.algorithm = null;
+        trace.payloadBytes = 0;
+        for (int i = 0; i < PHASES; i++) {
+            trace.phaseNanos[i] = 0;
+        }
+        trace.active = true;
+        return trace;
+    }
+
+    /**
+     *
+     * @return Zwraca kontekst polecenia bieżącego wątku albo null, jeżeli wątek nie obsługuje polecenia
+     */
+    public static RequestTrace current()
+    {
+        RequestTrace trace = CURRENT.get();
+        return trace.active ? trace : null;
+    }
+
+    /**
+     * Zapamiętuje labirynt polecenia obsługiwanego w bieżącym wątku (jeżeli jest takie).
+     *
+     * @param width Parametr określający szerokość siatki labiryntu
+     * @param height Parametr określający wysokość siatki labiryntu
+     * @param algorithm Parametr określający nazwę generatora
+     */
+    public static void maze(int width, int height, String algorithm)
+    {
+        RequestTrace trace = current();
+        if (trace != null) {
+            trace.width = width;
+            trace.height = height;
+            trace.algorithm = algorithm;
+        }
+    }
+
+    /**
+     * Kończy śledzenie polecenia.
+     */
+    public void end()
+    {
+        active = false;
+        client = null;
+    }
+
+    void add(int phase, long nanos)
+    {
+        phaseNanos[phase] += nanos;
+    }
+
+    void addPayload(long bytes)
+    {
+        payloadBytes += bytes;
+    }
+
+    /**
+     *
+     * @param phase Parametr określający fazę (PARSE, GENERATE, CONVERT, ENCODE, LOG lub WRITE)
+     * @return Zwraca łączny czas fazy w nanosekundach
+     */
+    public long getPhaseNanos(int phase)
+    {
+        return phaseNanos[phase];
+    }
+
+    /**
+     *
+     * @return Zwraca adres klienta
+     */
+    public InetAddress getClient()
+    {
+        return client;
+    }
+
+    /**
+     *
+     * @return Zwraca linię polecenia
+     */
+    public String getCommand()
+    {
+        return command;
+    }
+
+    /**
+     *
+     * @return Zwraca szerokość siatki labiryntu (0 - polecenie bez labiryntu)
+     */
+    public int getWidth()
+    {
+        return width;
+    }
+
+    /**
+     *
+     * @return Zwraca wysokość siatki labiryntu (0 - polecenie bez labiryntu)
+     */
+    public int getHeight()
+    {
+        return height;
+    }
+
+    /**
+     *
+     * @return Zwraca nazwę generatora albo null
+     */
+    public String getAlgorithm()
+    {
+        return algorithm;
+    }
+
+    /**
+     *
+     * @return Zwraca liczbę bajtów wysłanych klientowi
+     */
+    public long getPayloadBytes()
+    {
+        return payloadBytes;
+    }
+
+    private static final String[] PHASE_NAMES = {"parse", "generate", "convert", "encode", "log", "write"};
+
+    private static final ThreadLocal<RequestTrace> CURRENT = new ThreadLocal<RequestTrace>() {
+        @Override
+        protected RequestTrace initialValue() {
+            return new RequestTrace();
+        }
+    };
+
+    private final long[] phaseNanos = new long[PHASES];
+    private boolean active;
+    private InetAddress client;
+    private String command;
+    private int width;
+    private int height;
+    private String algorithm;
+    private long payloadBytes;
+}
@@ -0,0 +1,30 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package labyrinth.server.trace;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+/**
+ * Zdarzenie JFR fazy: wysłanie linii odpowiedzi do klienta.
+ * @author informatyka
+ */
+@Name("labyrinth.Write")
+@Label("Response Write")
+@Description("Writing a response line to the client")
+@Threshold("1 ms")
+public class WriteEvent extends RequestPhaseEvent {
+
+    /**
+     * Tworzy zdarzenie - pomiar zaczyna się dopiero od start().
+     */
+    public WriteEvent()
+    {
+        super(RequestTrace.WRITE);
+    }
+}
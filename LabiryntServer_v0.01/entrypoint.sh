@@ -1,3 +1,3 @@
 #!/bin/bash
 cd /sources/dist
-java -jar LabiryntServer.jar
+java ${JAVA_OPTS--XX:StartFlightRecording=settings=labyrinth.jfc,disk=true,maxage=6h,maxsize=256m,dumponexit=true,filename=labyrinth.jfr} -jar LabiryntServer.jar
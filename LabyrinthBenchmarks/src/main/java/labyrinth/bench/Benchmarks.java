@@ -0,0 +1,45 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package labyrinth.bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Klasa uruchamiająca benchmarki z domyślnymi ustawieniami porównywalnych
+ * przebiegów: profiler gc (gc.alloc.rate.norm - bajty zaalokowane na operację)
+ * i wyniki w JSON (jmh-result.json). Pozostałe argumenty to zwykłe opcje JMH,
+ * np. "-p size=11,101 Maze" albo "-rff wyniki.json".
+ * @author informatyka
+ */
+public class Benchmarks {
+
+    /**
+     *
+     * @param args Parametr zawierający opcje JMH
+     * @throws Exception
+     */
+    public static void main(String[] args) throws Exception
+    {
+        CommandLineOptions cli = new CommandLineOptions(args);
+        if (cli.shouldHelp() || cli.shouldList() || cli.shouldListProfilers() || cli.shouldListResultFormats()) {
+            org.openjdk.jmh.Main.main(args);
+            return;
+        }
+        OptionsBuilder options = new OptionsBuilder();
+        options.parent(cli);
+        if (cli.getProfilers().isEmpty()) {
+            options.addProfiler(GCProfiler.class);
+        }
+        if (!cli.getResultFormat().hasValue()) {
+            options.resultFormat(ResultFormatType.JSON);
+        }
+        new Runner(options.build()).run();
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package labyrinth.bench;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import labyrinth.game.Labyrinth;
+import labyrinth.server.maze.Maze;
+import labyrinth.server.maze.MazeGrid;
+import labyrinth.server.serialization.Coord;
+import labyrinth.server.serialization.MazeCodec;
+import labyrinth.server.serialization.MazeData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark budowania labiryntu klienta (labyrinth.game.Labyrinth) z listy
+ * Coordynatów (stary format) i z odczytanego MazeData (MazeCodec).
+ * Kontroler gry nie jest potrzebny do zbudowania labiryntu.
+ * @author informatyka
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g", "-Djava.awt.headless=true"})
+@State(Scope.Benchmark)
+public class ClientLabyrinthBenchmark {
+
+    @Param({"11", "101", "1001", "4001"})
+    int size;
+
+    private ArrayList<Coord> coords;
+    private MazeData data;
+
+    @Setup
+    public void setup() throws IOException
+    {
+        Maze maze = new Maze(size, size, 1);
+        MazeGrid grid = maze.getGrid();
+        coords = maze.genLabirynt();
+        data = MazeCodec.decode(MazeCodec.encode(size, size, maze.getStart(), maze.getMeta(), grid.getWords()));
+    }
+
+    @Benchmark
+    public Labyrinth fromCoords()
+    {
+        return new Labyrinth(coords, null);
+    }
+
+    @Benchmark
+    public Labyrinth fromMazeData()
+    {
+        return new Labyrinth(data, null);
+    }
+}
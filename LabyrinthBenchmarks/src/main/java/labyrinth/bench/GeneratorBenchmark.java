@@ -0,0 +1,58 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package labyrinth.bench;
+
+import java.util.concurrent.TimeUnit;
+import labyrinth.server.maze.GridMaze;
+import labyrinth.server.maze.MazeGenerator;
+import labyrinth.server.maze.MazeGeneratorRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark generatorów z MazeGeneratorRegistry - cały labirynt zebrany
+ * w siatce (dla generatora strumieniowego razem z kopiowaniem wierszy).
+ * Każde wywołanie ma inne ziarno, żeby nie mierzyć jednego labiryntu.
+ * @author informatyka
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class GeneratorBenchmark {
+
+    @Param({"backtracker", "prim", "kruskal", "wilson", "division", "eller"})
+    String algorithm;
+
+    @Param({"11", "101", "1001", "4001"})
+    int size;
+
+    private MazeGenerator generator;
+    private long seed;
+
+    @Setup
+    public void setup()
+    {
+        generator = MazeGeneratorRegistry.get(algorithm);
+    }
+
+    @Benchmark
+    public GridMaze generate()
+    {
+        return GridMaze.of(generator.generate(size, size, seed++));
+    }
+}
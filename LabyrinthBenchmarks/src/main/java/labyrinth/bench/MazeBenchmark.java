@@ -0,0 +1,61 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package labyrinth.bench;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import labyrinth.server.maze.Maze;
+import labyrinth.server.maze.MazeGrid;
+import labyrinth.server.serialization.Coord;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark generowania labiryntu (Maze.generate) i budowania listy
+ * Coordynatów (Maze.genLabirynt). Rozmiar to szerokość i wysokość siatki.
+ * @author informatyka
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class MazeBenchmark {
+
+    @Param({"11", "101", "1001", "4001"})
+    int size;
+
+    private Maze maze;
+
+    @Setup
+    public void setup()
+    {
+        maze = new Maze(size, size, 1);
+    }
+
+    @Benchmark
+    public MazeGrid generate()
+    {
+        maze.generate();
+        return maze.getGrid();
+    }
+
+    @Benchmark
+    public ArrayList<Coord> genLabirynt()
+    {
+        return maze.genLabirynt();
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package labyrinth.bench;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import labyrinth.server.maze.Maze;
+import labyrinth.server.maze.MazeGrid;
+import labyrinth.server.serialization.Coord;
+import labyrinth.server.serialization.MazeCodec;
+import labyrinth.server.serialization.MazeData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmark formatu MazeCodec - całego labiryntu (/getMaze) i pasów wierszy
+ * (/getMazeRows, pasy po około 16 KB bitmapy jak w serwerze).
+ * @author informatyka
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class MazeCodecBenchmark {
+
+    @Param({"11", "101", "1001", "4001"})
+    int size;
+
+    private MazeGrid grid;
+    private Coord start;
+    private Coord meta;
+    private String encoded;
+    private int bandRows;
+    private String[] bands;
+
+    @Setup
+    public void setup()
+    {
+        Maze maze = new Maze(size, size, 1);
+        grid = maze.getGrid();
+        start = maze.getStart();
+        meta = maze.getMeta();
+        encoded = encode();
+        bandRows = Math.max(1, BAND_BITS / size);
+        bands = new String[(size + bandRows - 1) / bandRows];
+        for (int i = 0; i < bands.length; i++) {
+            int from = i * bandRows;
+            bands[i] = MazeCodec.encodeRows(grid.getWords(), size, from, Math.min(bandRows, size - from));
+        }
+    }
+
+    @Benchmark
+    public String encode()
+    {
+        return MazeCodec.encode(size, size, start, meta, grid.getWords());
+    }
+
+    @Benchmark
+    public MazeData decode() throws IOException
+    {
+        return MazeCodec.decode(encoded);
+    }
+
+    @Benchmark
+    public void encodeRows(Blackhole bh)
+    {
+        for (int from = 0; from < size; from += bandRows) {
+            bh.consume(MazeCodec.encodeRows(grid.getWords(), size, from, Math.min(bandRows, size - from)));
+        }
+    }
+
+    @Benchmark
+    public void decodeRows(Blackhole bh) throws IOException
+    {
+        for (int i = 0; i < bands.length; i++) {
+            bh.consume(MazeCodec.decodeRows(bands[i], size, Math.min(bandRows, size - i * bandRows)));
+        }
+    }
+
+    private static final int BAND_BITS = 16 * 1024 * 8;
+}
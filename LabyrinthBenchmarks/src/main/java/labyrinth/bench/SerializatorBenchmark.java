@@ -0,0 +1,64 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package labyrinth.bench;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import labyrinth.server.maze.Maze;
+import labyrinth.server.serialization.Coord;
+import labyrinth.server.serialization.Serializator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark starego formatu labiryntu - tablicy Coordynatów zserializowanej
+ * Serializatorem (odpowiedź /getLabirynt) i odczytu jej po stronie klienta.
+ * @author informatyka
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class SerializatorBenchmark {
+
+    @Param({"11", "101", "1001", "4001"})
+    int size;
+
+    private Coord[] coords;
+    private String serialized;
+
+    @Setup
+    public void setup() throws IOException
+    {
+        ArrayList<Coord> lab = new Maze(size, size, 1).genLabirynt();
+        coords = lab.toArray(new Coord[lab.size()]);
+        serialized = Serializator.toString(coords);
+    }
+
+    @Benchmark
+    public String serialize() throws IOException
+    {
+        return Serializator.toString(coords);
+    }
+
+    @Benchmark
+    public Object deserialize() throws IOException, ClassNotFoundException
+    {
+        return Serializator.fromString(serialized);
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package labyrinth.bench.load;
+
+/**
+ * Klasa reprezentująca histogram opóźnień o stałym błędzie względnym.
+ * Wartości (mikrosekundy) poniżej 128 są liczone dokładnie, a każda kolejna
+ * potęga dwójki jest dzielona na 64 przedziały - błąd wartości jest mniejszy
+ * niż 1/64, a pamięć stała niezależnie od liczby pomiarów.
+ * Metody są synchronizowane - histogram zapisuje jedna pętla, a czyta wątek raportu.
+ * @author informatyka
+ */
+public class LatencyHistogram {
+
+    /**
+     *
+     * @param micros Parametr określający opóźnienie w mikrosekundach
+     */
+    public synchronized void record(long micros)
+    {
+        if (micros < 0) {
+            micros = 0;
+        }
+        counts[index(micros)]++;
+        total++;
+        if (micros > max) {
+            max = micros;
+        }
+    }
+
+    /**
+     *
+     * @param other Parametr określający histogram dodawany do tego
+     */
+    public synchronized void add(LatencyHistogram other)
+    {
+        synchronized (other) {
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] += other.counts[i];
+            }
+            total += other.total;
+            max = Math.max(max, other.max);
+        }
+    }
+
+    /**
+     *
+     * @return Zwraca liczbę pomiarów
+     */
+    public synchronized long getTotal()
+    {
+        return total;
+    }
+
+    /**
+     *
+     * @return Zwraca największe opóźnienie w mikrosekundach
+     */
+    public synchronized long getMax()
+    {
+        return max;
+    }
+
+    /**
+     *
+     * @param percentile Parametr określający percentyl (0 - 100)
+     * @return Zwraca opóźnienie (górną granicę przedziału), poniżej którego jest dany procent pomiarów
+     */
+    public synchronized long percentile(double percentile)
+    {
+        if (total == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= target) {
+                return Math.min(upperBound(i), max);
+            }
+        }
+        return max;
+    }
+
+    private static int index(long value)
+    {
+        int shift = Math.max(0, 63 - Long.numberOfLeadingZeros(value) - SUB_BITS);
+        return (shift << SUB_BITS) + (int) (value >>> shift);
+    }
+
+    private static long upperBound(int index)
+    {
+        int shift = Math.max(0, (index >>> SUB_BITS) - 1);
+        long mantissa = index - ((long) shift << SUB_BITS);
+        return ((mantissa + 1) << shift) - 1;
+    }
+
+    private static final int SUB_BITS = 6;
+
+    private final long[] counts = new long[(64 - SUB_BITS + 1) << SUB_BITS];
+    private long total;
+    private long max;
+}
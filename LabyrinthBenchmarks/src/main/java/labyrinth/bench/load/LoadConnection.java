@@ -0,0 +1,151 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package labyrinth.bench.load;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+
+/**
+ * Klasa reprezentująca jedno połączenie generatora obciążenia. Żądania są
+ * wysyłane bez czekania na odpowiedzi (bez tagów - serwer odpowiada na nie
+ * po kolei), a odpowiedzi są tylko liczone, bez składania całej linii.
+ * Używana wyłącznie z wątku jednej pętli LoadLoop.
+ * @author informatyka
+ */
+class LoadConnection {
+
+    /**
+     * Żądanie czekające na odpowiedź.
+     */
+    static class Pending {
+
+        Pending(long intended, boolean measured)
+        {
+            this.intended = intended;
+            this.measured = measured;
+        }
+
+        /**
+         * Czas, w którym żądanie powinno było wyjść według harmonogramu.
+         */
+        final long intended;
+        final boolean measured;
+        /**
+         * Czas, w którym ostatni bajt żądania trafił do gniazda (0 - jeszcze nie trafił).
+         */
+        long sent;
+    }
+
+    LoadConnection(SocketChannel channel)
+    {
+        this.channel = channel;
+    }
+
+    /**
+     * Dopisuje żądanie do bufora wyjściowego i próbuje je od razu wysłać.
+     *
+     * @throws IOException przy błędzie zapisu do gniazda
+     */
+    void send(byte[] request, Pending pending, long now) throws IOException
+    {
+        if (out.remaining() < request.length) {
+            ByteBuffer bigger = ByteBuffer.allocate(Math.max(out.capacity() * 2, out.position() + request.length));
+            out.flip();
+            bigger.put(out);
+            out = bigger;
+        }
+        out.put(request);
+        this.pending.add(pending);
+        flush(now);
+    }
+
+    /**
+     * Wysyła tyle bufora wyjściowego, ile przyjmie gniazdo.
+     *
+     * @return Zwraca true, jeżeli bufor został opróżniony
+     * @throws IOException przy błędzie zapisu do gniazda
+     */
+    boolean flush(long now) throws IOException
+    {
+        out.flip();
+        channel.write(out);
+        boolean empty = !out.hasRemaining();
+        out.compact();
+        if (empty) {
+            //zadania wyslane w calosci maja sent == 0 tylko na koncu kolejki
+            Iterator<Pending> it = pending.descendingIterator();
+            while (it.hasNext()) {
+                Pending p = it.next();
+                if (p.sent != 0) {
+                    break;
+                }
+                p.sent = now;
+            }
+        }
+        key.interestOps(empty ? SelectionKey.OP_READ : SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        return empty;
+    }
+
+    /**
+     * Przetwarza bajty odczytane z gniazda i oddaje odpowiedzi zakończone w nich.
+     *
+     * @param data Parametr zawierający odczytane bajty (od pozycji do limitu)
+     * @param loop Parametr określający pętlę, która dostaje gotowe odpowiedzi
+     */
+    void received(ByteBuffer data, LoadLoop loop, long now)
+    {
+        final byte[] array = data.array();
+        final int end = data.limit();
+        for (int i = data.position(); i < end; i++) {
+            byte b = array[i];
+            if (b == '\n') {
+                loop.completed(this, pending.poll(), isError(), now);
+                lineLength = 0;
+            } else if (b != '\r') {
+                if (lineLength < prefix.length) {
+                    prefix[lineLength] = b;
+                }
+                lineLength++;
+            }
+        }
+    }
+
+    private boolean isError()
+    {
+        return matches(ERROR) || matches(COMMAND_ERROR);
+    }
+
+    private boolean matches(byte[] line)
+    {
+        if (lineLength != line.length) {
+            return false;
+        }
+        for (int i = 0; i < line.length; i++) {
+            if (prefix[i] != line[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static final byte[] ERROR = "ERROR".getBytes();
+    private static final byte[] COMMAND_ERROR = "COMMAND ERROR".getBytes();
+
+    final SocketChannel channel;
+    final ArrayDeque<Pending> pending = new ArrayDeque<>();
+    SelectionKey key;
+    boolean connected;
+    boolean closed;
+    boolean quitting;
+
+    private ByteBuffer out = ByteBuffer.allocate(256);
+    private final byte[] prefix = new byte[16];
+    private int lineLength;
+}
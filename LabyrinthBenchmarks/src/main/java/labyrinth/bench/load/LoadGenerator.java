@@ -0,0 +1,280 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package labyrinth.bench.load;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Klasa reprezentująca generator obciążenia serwera - flotę klientów bez
+ * interfejsu. Otwiera wiele połączeń, wysyła prawdziwe polecenia protokołu
+ * (domyślnie /getLabirynt, na końcu /QUIT) w zadanym tempie i mieszance
+ * rozmiarów labiryntu, a potem wypisuje percentyle opóźnień (z korektą
+ * coordinated omission i bez niej), błędy i osiągniętą przepustowość.
+ * Korzysta tylko z protokołu, więc działa z każdą warstwą połączeń serwera.
+ *
+ * java -cp target/benchmarks.jar labyrinth.bench.load.LoadGenerator --connections 2000 --rate 5000
+ * @author informatyka
+ */
+public class LoadGenerator {
+
+    /**
+     * Ustawienia testu odczytane z argumentów.
+     */
+    static class Settings {
+
+        Settings(Map<String, String> options)
+        {
+            host = take(options, "host", "localhost");
+            port = Integer.parseInt(take(options, "port", "8989"));
+            connections = Integer.parseInt(take(options, "connections", "1000"));
+            rate = Double.parseDouble(take(options, "rate", "1000"));
+            duration = Integer.parseInt(take(options, "duration", "30"));
+            warmup = Integer.parseInt(take(options, "warmup", "5"));
+            drain = Integer.parseInt(take(options, "drain", "5"));
+            connectTimeout = Integer.parseInt(take(options, "connect-timeout", "30"));
+            loops = Integer.parseInt(take(options, "loops", String.valueOf(Runtime.getRuntime().availableProcessors())));
+            command = take(options, "command", "/getLabirynt");
+            seeds = Integer.parseInt(take(options, "seeds", "0"));
+            mix = take(options, "mix", "11x11:70,31x31:25,101x101:5");
+            if (!options.isEmpty()) {
+                throw new IllegalArgumentException("Nieznane opcje: " + options.keySet());
+            }
+            if (connections <= 0 || rate <= 0 || duration <= 0 || loops <= 0) {
+                throw new IllegalArgumentException("connections, rate, duration i loops musza byc dodatnie");
+            }
+
+            String[] entries = mix.split(",");
+            requests = new String[entries.length];
+            cumulative = new int[entries.length];
+            int sum = 0;
+            for (int i = 0; i < entries.length; i++) {
+                String[] sizeWeight = entries[i].trim().split(":");
+                String[] xy = sizeWeight[0].split("x");
+                if (xy.length != 2) {
+                    throw new IllegalArgumentException("Niepoprawny rozmiar w mieszance: " + entries[i]);
+                }
+                requests[i] = command + " " + Integer.parseInt(xy[0]) + " " + Integer.parseInt(xy[1]);
+                sum += sizeWeight.length > 1 ? Integer.parseInt(sizeWeight[1]) : 1;
+                cumulative[i] = sum;
+            }
+            if (sum <= 0) {
+                throw new IllegalArgumentException("Wagi mieszanki musza byc dodatnie");
+            }
+            fixed = new byte[entries.length][];
+            for (int i = 0; i < entries.length; i++) {
+                fixed[i] = (requests[i] + "\n").getBytes();
+            }
+        }
+
+        /**
+         *
+         * @return Zwraca numer losowo wybranego rozmiaru z mieszanki (według wag)
+         */
+        int pickMix(SplittableRandom rand)
+        {
+            int r = rand.nextInt(cumulative[cumulative.length - 1]);
+            int i = 0;
+            while (cumulative[i] <= r) {
+                i++;
+            }
+            return i;
+        }
+
+        /**
+         *
+         * @return Zwraca bajty żądania - z losowym ziarnem spośród seeds, jeżeli seeds > 0
+         */
+        byte[] request(int kind, SplittableRandom rand)
+        {
+            if (seeds <= 0) {
+                return fixed[kind];
+            }
+            return (requests[kind] + " " + rand.nextInt(seeds) + "\n").getBytes();
+        }
+
+        private static String take(Map<String, String> options, String name, String def)
+        {
+            String value = options.remove(name);
+            return value == null ? def : value;
+        }
+
+        final String host;
+        final int port;
+        final int connections;
+        final double rate;
+        final int duration;
+        final int warmup;
+        final int drain;
+        final int connectTimeout;
+        final int loops;
+        final String command;
+        final int seeds;
+        final String mix;
+        private final String[] requests;
+        private final int[] cumulative;
+        private final byte[][] fixed;
+    }
+
+    /**
+     *
+     * @param args Parametr zawierający opcje w postaci --nazwa wartość
+     * @throws Exception
+     */
+    public static void main(String[] args) throws Exception
+    {
+        Settings settings;
+        try {
+            settings = new Settings(parse(args));
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(1);
+            return;
+        }
+        new LoadGenerator(settings).run();
+    }
+
+    private static Map<String, String> parse(String[] args)
+    {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--") || i + 1 >= args.length) {
+                throw new IllegalArgumentException("Niepoprawny argument: " + args[i]);
+            }
+            options.put(args[i].substring(2), args[++i]);
+        }
+        return options;
+    }
+
+    LoadGenerator(Settings settings)
+    {
+        this.settings = settings;
+    }
+
+    void run() throws IOException, InterruptedException
+    {
+        int loopCount = Math.min(settings.loops, settings.connections);
+        CountDownLatch start = new CountDownLatch(1);
+        ArrayList<LoadLoop> loops = new ArrayList<>();
+        for (int i = 0; i < loopCount; i++) {
+            int connections = settings.connections / loopCount + (i < settings.connections % loopCount ? 1 : 0);
+            LoadLoop loop = new LoadLoop(settings, connections, settings.rate * connections / settings.connections, SEED + i);
+            loop.startLatch = start;
+            loops.add(loop);
+            Thread thread = new Thread(loop, "load-" + i);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        long connected = 0;
+        long failed = 0;
+        for (LoadLoop loop : loops) {
+            loop.connectedLatch.await();
+            if (loop.failure != null) {
+                throw new IOException("Petla generatora zakonczona bledem", loop.failure);
+            }
+            connected += loop.connected();
+            failed += loop.connectFailures.get();
+        }
+        System.out.println("target " + settings.host + ":" + settings.port + " command=" + settings.command
+                + " mix=" + settings.mix + " seeds=" + settings.seeds);
+        System.out.println("connections " + connected + " open, " + failed + " failed; rate "
+                + settings.rate + "/s, warmup " + settings.warmup + " s, duration " + settings.duration + " s, loops " + loopCount);
+        if (connected == 0) {
+            System.exit(2);
+        }
+
+        long startNanos = System.nanoTime() + 10000000L;
+        for (LoadLoop loop : loops) {
+            loop.startNanos = startNanos;
+        }
+        start.countDown();
+
+        long previous = 0;
+        for (int second = 1; !allDone(loops); second++) {
+            Thread.sleep(Math.max(0, startNanos + second * 1000000000L - System.nanoTime()) / 1000000);
+            LatencyHistogram interval = new LatencyHistogram();
+            long completed = 0;
+            long errors = 0;
+            for (LoadLoop loop : loops) {
+                interval.add(loop.takeInterval());
+                completed += loop.completed.get();
+                errors += loop.errors.get();
+            }
+            System.out.println(String.format(Locale.ROOT, "%4d s %s %7d resp/s  errors %d  p50 %s  p99 %s  max %s",
+                    second, second <= settings.warmup ? "warmup " : "       ", completed - previous, errors,
+                    ms(interval.percentile(50)), ms(interval.percentile(99)), ms(interval.getMax())));
+            previous = completed;
+        }
+        report(loops);
+    }
+
+    private void report(ArrayList<LoadLoop> loops)
+    {
+        LatencyHistogram corrected = new LatencyHistogram();
+        LatencyHistogram uncorrected = new LatencyHistogram();
+        long sent = 0, completed = 0, measured = 0, errors = 0, timeouts = 0, unsent = 0, lost = 0, unexpected = 0;
+        for (LoadLoop loop : loops) {
+            if (loop.failure != null) {
+                System.out.println("loop failed: " + loop.failure);
+            }
+            corrected.add(loop.corrected);
+            uncorrected.add(loop.uncorrected);
+            sent += loop.sent.get();
+            completed += loop.completed.get();
+            measured += loop.measured.get();
+            errors += loop.errors.get();
+            timeouts += loop.timeouts.get();
+            unsent += loop.unsent.get();
+            lost += loop.lostConnections.get();
+            unexpected += loop.unexpected.get();
+        }
+        System.out.println();
+        System.out.println("requests  sent " + sent + ", completed " + completed + ", errors " + errors
+                + ", timeouts " + timeouts + ", unsent " + unsent + ", unexpected " + unexpected
+                + ", lost connections " + lost);
+        System.out.println(String.format(Locale.ROOT, "throughput %.1f resp/s (target %.1f/s, measured %d responses in %d s)",
+                (double) measured / settings.duration, settings.rate, measured, settings.duration));
+        System.out.println("latency [ms]           p50       p90       p99     p99.9    p99.99       max");
+        System.out.println(row("corrected  ", corrected));
+        System.out.println(row("uncorrected", uncorrected));
+    }
+
+    private static String row(String name, LatencyHistogram h)
+    {
+        return String.format(Locale.ROOT, "%s %9s %9s %9s %9s %9s %9s", name,
+                ms(h.percentile(50)), ms(h.percentile(90)), ms(h.percentile(99)),
+                ms(h.percentile(99.9)), ms(h.percentile(99.99)), ms(h.getMax()));
+    }
+
+    private static String ms(long micros)
+    {
+        return String.format(Locale.ROOT, "%.3f", micros / 1000.0);
+    }
+
+    private static boolean allDone(ArrayList<LoadLoop> loops)
+    {
+        for (LoadLoop loop : loops) {
+            if (!loop.done) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static final long SEED = 20160601L;
+    private static final String USAGE = "Opcje: --host localhost --port 8989 --connections 1000 --rate 1000 (zadan/s)"
+            + " --duration 30 --warmup 5 --drain 5 (s) --connect-timeout 30 --loops <rdzenie>"
+            + " --command /getLabirynt --mix 11x11:70,31x31:25,101x101:5 --seeds 0 (0 - bez ziarna)";
+
+    private final Settings settings;
+}
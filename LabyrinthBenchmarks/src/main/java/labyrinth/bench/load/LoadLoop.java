@@ -0,0 +1,374 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package labyrinth.bench.load;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Klasa reprezentująca jedną pętlę selektora generatora obciążenia - własną
+ * część połączeń i własną część docelowego tempa.
+ *
+ * Obciążenie jest otwarte: żądanie i-te ma zaplanowany czas start + i * odstęp
+ * i wychodzi o nim niezależnie od tego, czy poprzednie już dostały odpowiedź.
+ * Opóźnienie jest liczone od czasu zaplanowanego, a nie od faktycznego
+ * wysłania - gdy serwer (lub sama pętla) się zatnie, czekanie żądań, które
+ * powinny były wyjść w tym czasie, trafia do pomiaru (korekta coordinated
+ * omission). Dla porównania liczone jest też opóźnienie od wysłania.
+ * @author informatyka
+ */
+class LoadLoop implements Runnable {
+
+    LoadLoop(LoadGenerator.Settings settings, int connections, double rate, long seed) throws IOException
+    {
+        this.settings = settings;
+        this.connectionCount = connections;
+        this.intervalNanos = 1e9 / rate;
+        this.rand = new SplittableRandom(seed);
+        this.selector = Selector.open();
+    }
+
+    @Override
+    public void run()
+    {
+        try {
+            connect();
+            connectedLatch.countDown();
+            startLatch.await();
+            drive();
+            quit();
+        } catch (IOException | InterruptedException e) {
+            failure = e;
+        } finally {
+            connectedLatch.countDown();
+            for (LoadConnection c : connections) {
+                close(c);
+            }
+            try {
+                selector.close();
+            } catch (IOException e) {
+            }
+            done = true;
+        }
+    }
+
+    /**
+     * Otwiera połączenia, najwyżej CONNECTING naraz (kolejka accept serwera jest krótka).
+     */
+    private void connect() throws IOException
+    {
+        InetSocketAddress address = new InetSocketAddress(settings.host, settings.port);
+        int opened = 0;
+        int connecting = 0;
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(settings.connectTimeout);
+        while ((opened < connectionCount || connecting > 0) && System.nanoTime() < deadline) {
+            while (opened < connectionCount && connecting < CONNECTING) {
+                opened++;
+                SocketChannel channel = SocketChannel.open();
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                LoadConnection c = new LoadConnection(channel);
+                try {
+                    c.key = channel.register(selector, SelectionKey.OP_CONNECT, c);
+                    connections.add(c);
+                    if (channel.connect(address)) {
+                        established(c);
+                    } else {
+                        connecting++;
+                    }
+                } catch (IOException e) {
+                    close(c);
+                }
+            }
+            selector.select(100);
+            for (SelectionKey key : selector.selectedKeys()) {
+                LoadConnection c = (LoadConnection) key.attachment();
+                if (key.isValid() && key.isConnectable()) {
+                    connecting--;
+                    try {
+                        c.channel.finishConnect();
+                        established(c);
+                    } catch (IOException e) {
+                        close(c);
+                    }
+                }
+            }
+            selector.selectedKeys().clear();
+        }
+        for (LoadConnection c : connections) {
+            if (!c.connected) {
+                close(c);
+            }
+        }
+        connectFailures.set(connectionCount - connected());
+    }
+
+    private void established(LoadConnection c)
+    {
+        c.connected = true;
+        c.key.interestOps(SelectionKey.OP_READ);
+    }
+
+    /**
+     * Wysyła żądania według harmonogramu do końca czasu testu, a potem czeka
+     * na zaległe odpowiedzi najwyżej settings.drain sekund.
+     */
+    private void drive() throws IOException
+    {
+        final long start = startNanos;
+        final long measureFrom = start + TimeUnit.SECONDS.toNanos(settings.warmup);
+        final long stop = measureFrom + TimeUnit.SECONDS.toNanos(settings.duration);
+        final long drainUntil = stop + TimeUnit.SECONDS.toNanos(settings.drain);
+        long issued = 0;
+        int next = 0;
+        while (true) {
+            long now = System.nanoTime();
+            long due = start + (long) (issued * intervalNanos);
+            while (due <= now && due < stop) {
+                LoadConnection c = pick(next++);
+                if (c == null) {
+                    unsent.incrementAndGet();
+                } else {
+                    int kind = settings.pickMix(rand);
+                    LoadConnection.Pending p = new LoadConnection.Pending(due, due >= measureFrom);
+                    outstanding++;
+                    sent.incrementAndGet();
+                    try {
+                        c.send(settings.request(kind, rand), p, now);
+                    } catch (IOException e) {
+                        lost(c);
+                    }
+                }
+                issued++;
+                due = start + (long) (issued * intervalNanos);
+            }
+            if (now >= stop && (outstanding == 0 || now >= drainUntil)) {
+                break;
+            }
+            long wait = (due < stop ? due : drainUntil) - now;
+            if (wait <= 0) {
+                selector.selectNow();
+            } else {
+                selector.select(Math.max(1, wait / 1000000));
+            }
+            handleReady();
+        }
+        timeouts.addAndGet(outstanding);
+        long now = System.nanoTime();
+        for (LoadConnection c : connections) {
+            //odpowiedzi, ktore nie przyszly, licza sie z opoznieniem do konca czekania
+            for (LoadConnection.Pending p : c.pending) {
+                if (p.measured) {
+                    corrected.record((now - p.intended) / 1000);
+                }
+            }
+            c.pending.clear();
+        }
+    }
+
+    private LoadConnection pick(int index)
+    {
+        int size = connections.size();
+        for (int i = 0; i < size; i++) {
+            LoadConnection c = connections.get((index + i) % size);
+            if (c.connected && !c.closed) {
+                return c;
+            }
+        }
+        return null;
+    }
+
+    private void handleReady()
+    {
+        long now = System.nanoTime();
+        for (SelectionKey key : selector.selectedKeys()) {
+            LoadConnection c = (LoadConnection) key.attachment();
+            if (!key.isValid()) {
+                continue;
+            }
+            try {
+                if (key.isWritable()) {
+                    c.flush(now);
+                }
+                if (key.isReadable()) {
+                    read(c, now);
+                }
+            } catch (IOException e) {
+                lost(c);
+            }
+        }
+        selector.selectedKeys().clear();
+    }
+
+    private void read(LoadConnection c, long now) throws IOException
+    {
+        while (true) {
+            buffer.clear();
+            int n = c.channel.read(buffer);
+            if (n < 0) {
+                lost(c);
+                return;
+            }
+            if (n == 0) {
+                return;
+            }
+            buffer.flip();
+            c.received(buffer, this, now);
+        }
+    }
+
+    /**
+     * Wołane przez połączenie dla każdej odebranej linii odpowiedzi.
+     */
+    void completed(LoadConnection c, LoadConnection.Pending p, boolean error, long now)
+    {
+        if (c.quitting) {
+            return;
+        }
+        if (p == null) {
+            unexpected.incrementAndGet();
+            return;
+        }
+        outstanding--;
+        completed.incrementAndGet();
+        if (error) {
+            errors.incrementAndGet();
+        }
+        if (p.measured) {
+            measured.incrementAndGet();
+            long latency = (now - p.intended) / 1000;
+            corrected.record(latency);
+            interval.record(latency);
+            uncorrected.record((now - (p.sent != 0 ? p.sent : p.intended)) / 1000);
+        }
+    }
+
+    private void lost(LoadConnection c)
+    {
+        if (c.closed) {
+            return;
+        }
+        if (!c.quitting) {
+            lostConnections.incrementAndGet();
+            errors.addAndGet(c.pending.size());
+            outstanding -= c.pending.size();
+            c.pending.clear();
+        }
+        close(c);
+    }
+
+    /**
+     * Kończy połączenia poleceniem /QUIT (serwer odpowiada "COMMAND ERROR" i zamyka gniazdo).
+     */
+    private void quit() throws IOException
+    {
+        long now = System.nanoTime();
+        for (LoadConnection c : connections) {
+            if (!c.closed) {
+                c.quitting = true;
+                try {
+                    c.send(QUIT, new LoadConnection.Pending(now, false), now);
+                } catch (IOException e) {
+                    close(c);
+                }
+            }
+        }
+        long deadline = now + TimeUnit.SECONDS.toNanos(QUIT_SECONDS);
+        while (System.nanoTime() < deadline && open() > 0) {
+            selector.select(100);
+            handleReady();
+        }
+    }
+
+    private int open()
+    {
+        int open = 0;
+        for (LoadConnection c : connections) {
+            if (!c.closed) {
+                open++;
+            }
+        }
+        return open;
+    }
+
+    private void close(LoadConnection c)
+    {
+        c.closed = true;
+        try {
+            c.channel.close();
+        } catch (IOException e) {
+        }
+    }
+
+    /**
+     * Podmienia histogram bieżącego przedziału raportu.
+     *
+     * @return Zwraca histogram opóźnień (z korektą) od poprzedniego wywołania
+     */
+    LatencyHistogram takeInterval()
+    {
+        LatencyHistogram taken = interval;
+        interval = new LatencyHistogram();
+        return taken;
+    }
+
+    private static final int CONNECTING = 64;
+    private static final int QUIT_SECONDS = 2;
+    private static final byte[] QUIT = "/QUIT\n".getBytes();
+
+    private final LoadGenerator.Settings settings;
+    private final int connectionCount;
+    private final double intervalNanos;
+    private final SplittableRandom rand;
+    private final Selector selector;
+    private final ArrayList<LoadConnection> connections = new ArrayList<>();
+    private final ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+    private long outstanding;
+
+    final CountDownLatch connectedLatch = new CountDownLatch(1);
+    CountDownLatch startLatch;
+    volatile long startNanos;
+    volatile boolean done;
+    volatile Exception failure;
+    volatile LatencyHistogram interval = new LatencyHistogram();
+
+    final LatencyHistogram corrected = new LatencyHistogram();
+    final LatencyHistogram uncorrected = new LatencyHistogram();
+    final AtomicLong connectFailures = new AtomicLong();
+    final AtomicLong lostConnections = new AtomicLong();
+    final AtomicLong sent = new AtomicLong();
+    final AtomicLong completed = new AtomicLong();
+    final AtomicLong measured = new AtomicLong();
+    final AtomicLong errors = new AtomicLong();
+    final AtomicLong timeouts = new AtomicLong();
+    final AtomicLong unsent = new AtomicLong();
+    final AtomicLong unexpected = new AtomicLong();
+
+    /**
+     *
+     * @return Zwraca liczbę nawiązanych połączeń
+     */
+    int connected()
+    {
+        int connected = 0;
+        for (LoadConnection c : connections) {
+            if (c.connected) {
+                connected++;
+            }
+        }
+        return connected;
+    }
+}
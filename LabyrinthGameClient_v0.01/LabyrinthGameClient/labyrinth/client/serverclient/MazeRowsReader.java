@@ -0,0 +1,169 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package labyrinth.client.serverclient;
+
+import labyrinth.server.serialization.Coord;
+import labyrinth.server.serialization.MazeCodec;
+import java.io.IOException;
+
+/**
+ * Klasa reprezentująca odczyt labiryntu wysyłanego przez serwer pasami wierszy
+ * (polecenie /getMazeRows). Nagłówek jest czytany od razu, a kolejne pasy
+ * dopiero na żądanie - wątek czytający połączenia trzyma w kolejce najwyżej
+ * kilka pasów, więc cały labirynt nigdy nie leży w pamięci.
+ * @author informatyka
+ */
+public class MazeRowsReader {
+
+    /**
+     *
+     * @param in Parametr odpowiadający za linie odpowiedzi serwera (bez oznaczenia polecenia)
+     * @throws IOException Generuje wyjątek, kiedy serwer nie przysłał nagłówka labiryntu
+     */
+    MazeRowsReader(Lines in) throws IOException
+    {
+        this.in = in;
+        String[] header = readLine().split(" ");
+        if (header.length != 7 || !header[0].equals("ROWS")) {
+            throw new IOException("Niepoprawny naglowek labiryntu");
+        }
+        try {
+            width = Integer.parseInt(header[1]);
+            height = Integer.parseInt(header[2]);
+            start = new Coord(Integer.parseInt(header[3]), Integer.parseInt(header[4]));
+            meta = new Coord(Integer.parseInt(header[5]), Integer.parseInt(header[6]));
+        } catch (NumberFormatException e) {
+            throw new IOException("Niepoprawny naglowek labiryntu", e);
+        }
+    }
+
+    /**
+     * Czyta kolejny pas wierszy.
+     *
+     * @return Zwraca bitmapę ścian pasa (bit ((y - getFromRow()) * getWidth() + x))
+     *         albo null, gdy labirynt został przesłany w całości
+     * @throws IOException Generuje wyjątek przy błędzie połączenia lub niepoprawnych danych
+     */
+    public long[] nextRows() throws IOException
+    {
+        if (finished) {
+            return null;
+        }
+        String line = readLine();
+        if (line.equals("END")) {
+            finished = true;
+            return null;
+        }
+        String[] band = line.split(" ");
+        if (band.length != 4 || !band[0].equals("BAND")) {
+            throw new IOException("Niepoprawny pas labiryntu");
+        }
+        try {
+            fromRow = Integer.parseInt(band[1]);
+            rowCount = Integer.parseInt(band[2]);
+        } catch (NumberFormatException e) {
+            throw new IOException("Niepoprawny pas labiryntu", e);
+        }
+        return MazeCodec.decodeRows(band[3], width, rowCount);
+    }
+
+    private String readLine() throws IOException
+    {
+        String line = in.next();
+        if (line.equals("ERROR") || line.equals("COMMAND ERROR")) {
+            throw new IOException("Serwer odrzucil zadanie: " + line);
+        }
+        return line;
+    }
+
+    /**
+     *
+     * @return Zwraca szerokość siatki labiryntu
+     */
+    public int getWidth()
+    {
+        return width;
+    }
+
+    /**
+     *
+     * @return Zwraca wysokość siatki labiryntu
+     */
+    public int getHeight()
+    {
+        return height;
+    }
+
+    /**
+     *
+     * @return Zwraca pole startu
+     */
+    public Coord getStart()
+    {
+        return start;
+    }
+
+    /**
+     *
+     * @return Zwraca pole mety
+     */
+    public Coord getMeta()
+    {
+        return meta;
+    }
+
+    /**
+     *
+     * @return Zwraca pierwszy wiersz ostatnio odczytanego pasa
+     */
+    public int getFromRow()
+    {
+        return fromRow;
+    }
+
+    /**
+     *
+     * @return Zwraca liczbę wierszy ostatnio odczytanego pasa
+     */
+    public int getRowCount()
+    {
+        return rowCount;
+    }
+
+    /**
+     * Przerywa odczyt - pozostałe pasy labiryntu są pomijane.
+     */
+    public void close()
+    {
+        in.close();
+    }
+
+    /**
+     * Źródło kolejnych linii odpowiedzi /getMazeRows.
+     */
+    interface Lines
+    {
+        /**
+         * @return zwraca kolejną linię, czekając na nią w razie potrzeby
+         * @throws IOException gdy połączenie zostało zerwane
+         */
+        String next() throws IOException;
+
+        /**
+         * Rezygnuje z dalszych linii.
+         */
+        void close();
+    }
+
+    private final Lines in;
+    private boolean finished;
+    private final int width;
+    private final int height;
+    private final Coord start;
+    private final Coord meta;
+    private int fromRow;
+    private int rowCount;
+}
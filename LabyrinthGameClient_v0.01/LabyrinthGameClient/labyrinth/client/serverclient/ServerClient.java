@@ -5,27 +5,39 @@
  */
 package labyrinth.client.serverclient;
 
-import labyrinth.server.serialization.Serializator;
-import labyrinth.server.serialization.Coord;
-import java.util.Arrays;
+import labyrinth.server.serialization.MazeCodec;
+import labyrinth.server.serialization.MazeData;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
 import java.io.PrintWriter;
-import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
 import java.net.Socket;
-import java.util.ArrayList;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import javax.swing.DefaultListModel;
-import javax.swing.JTextPane;
-import javax.swing.text.BadLocationException;
-import javax.swing.text.html.HTMLDocument;
-import javax.swing.text.html.HTMLEditorKit;
-import javax.swing.text.html.StyleSheet;
 
 /**
- * Klasa reprezentująca wątek połączenia oraz komunikacji z serwerem
+ * Klasa reprezentująca połączenie z serwerem.
+ *
+ * Każde polecenie jest wysyłane z oznaczeniem ("#17 /getMaze 31 31"), a serwer
+ * dokleja je do każdej linii odpowiedzi. Jeden wątek czytający rozdziela
+ * odebrane linie według oznaczeń i kończy przyszłe wyniki (CompletableFuture),
+ * więc kilka poleceń może czekać na odpowiedź naraz, a nikt nie czeka w pętli.
+ * Anulowanie lub przekroczenie czasu usuwa oczekujące polecenie - spóźniona
+ * odpowiedź jest po prostu pomijana.
  * @author Slepy
  */
 public class ServerClient implements Runnable{
@@ -41,6 +53,7 @@ public class ServerClient implements Runnable{
     }
 
      /**
+     * Nawiązuje połączenie i uruchamia wątek czytający odpowiedzi.
      *
      * @return Zwraca wartosc logiczna odpowiadajaca w przypadku udanego polaczenia TRUE
      *         bądź FALSE w przypadku problemu z połączeniem
@@ -48,146 +61,453 @@ public class ServerClient implements Runnable{
     
     public boolean connect() throws IOException
     {
-        s = new Socket(server, port);
+        s = new Socket();
+        //polecenia to krotkie linie - bez Nagle'a nie czekaja na potwierdzenie poprzedniego pakietu
+        s.setTcpNoDelay(true);
+        try {
+            s.connect(new InetSocketAddress(server, port), CONNECT_TIMEOUT);
+        } catch (IOException e) {
+            s.close();
+            throw e;
+        }
     
         inS = new BufferedReader(new InputStreamReader(s.getInputStream()));
         outS = new PrintWriter(s.getOutputStream(), true); 
 
-        if(s.isBound())
-        {
-            return true;
-        }
-            
-        return false;
+        thread = new Thread(this, "server-reader-" + server + ":" + port);
+        thread.setDaemon(true);
+        thread.start();
+        return true;
     }
-    
-    public void start()
+
+    /**
+     * Wysyła polecenie z jednoliniową odpowiedzią.
+     *
+     * @param command Parametr odpowiadający komendzie wysyłanej do serwera
+     * @return Zwraca przyszłą odpowiedź serwera (bez oznaczenia)
+     */
+    public CompletableFuture<String> send(String command)
     {
-        start = true;
-        thread = new Thread(this);
-        thread.start();
+        final CompletableFuture<String> response = new CompletableFuture<>();
+        submit(command, response, new Route() {
+            @Override
+            boolean line(String text) {
+                response.complete(text);
+                return true;
+            }
+
+            @Override
+            void fail(IOException e) {
+                response.completeExceptionally(e);
+            }
+        });
+        return response;
     }
-    
-    public void stop()
+
+    /**
+     *
+     * @param command Parametr odpowiadający komendzie wysyłanej do serwera
+     * @param timeout Parametr określający czas oczekiwania na odpowiedź
+     * @param unit Parametr określający jednostkę czasu
+     * @return Zwraca przyszłą odpowiedź serwera, kończoną TimeoutException po upływie czasu
+     */
+    public CompletableFuture<String> send(String command, long timeout, TimeUnit unit)
     {
-        start = false;
+        return within(send(command), timeout, unit);
     }
 
     /**
+     * Zamawia labirynt w formacie MazeCodec. Odpowiedź jest dekodowana
+     * w wątku czytającym, a anulowanie zwróconego wyniku anuluje żądanie.
      *
-     * @param what Parametr odpowiadający komende wysylana do serwera
-     * 
+     * @param x Parametr odpowiadający szerokości potrzebnego labiryntu
+     * @param y Parametr odpowiadający wysokości potrzebnego labiryntu
+     * @return Zwraca przyszły labirynt
      */
-    
-    public void sendCommand(String what) throws InterruptedException
+    public CompletableFuture<MazeData> requestMaze(int x, int y)
     {
-        this.preparedCommand = what;
-        action(true);
-        while(getAction())
-        {
-            Thread.sleep(100);
-        }
+        final CompletableFuture<MazeData> maze = new CompletableFuture<>();
+        submit("/getMaze " + x + " " + y, maze, new Route() {
+            @Override
+            boolean line(String text) {
+                try {
+                    maze.complete(MazeCodec.decode(checked(text)));
+                } catch (IOException e) {
+                    maze.completeExceptionally(e);
+                }
+                return true;
+            }
+
+            @Override
+            void fail(IOException e) {
+                maze.completeExceptionally(e);
+            }
+        });
+        return maze;
     }
 
     /**
      *
-     * @return Zwraca wartosc logiczna, kiedy otrzymuje odpowiedź z serwera równą TRUE
+     * @param x Parametr odpowiadający szerokości potrzebnego labiryntu
+     * @param y Parametr odpowiadający wysokości potrzebnego labiryntu
+     * @param timeout Parametr określający czas oczekiwania na labirynt
+     * @param unit Parametr określający jednostkę czasu
+     * @return Zwraca przyszły labirynt, kończony TimeoutException po upływie czasu
      */
-    
-    public boolean waitForResponse()
+    public CompletableFuture<MazeData> requestMaze(int x, int y, long timeout, TimeUnit unit)
     {
-        while(getAction())
-        {
-            this.isWaiting = true;
-        }
-        this.isWaiting = false;
-        return true;
+        return within(requestMaze(x, y), timeout, unit);
     }
 
+    /**
+     * Zamawia labirynt przesyłany pasami wierszy. Wynik kończy się po
+     * odebraniu nagłówka; kolejne pasy czekają w krótkiej kolejce, więc
+     * w pamięci jest zawsze tylko kilka pasów. Odczyt trzeba doprowadzić
+     * do końca albo przerwać metodą MazeRowsReader.close() - do tego czasu
+     * pełna kolejka wstrzymuje odpowiedzi na inne polecenia tego połączenia.
+     *
+     * @param x Parametr odpowiadający szerokości potrzebnego labiryntu
+     * @param y Parametr odpowiadający wysokości potrzebnego labiryntu
+     * @return Zwraca przyszły odczyt labiryntu z już przeczytanym nagłówkiem
+     */
+    public CompletableFuture<MazeRowsReader> requestMazeRows(int x, int y)
+    {
+        final CompletableFuture<MazeRowsReader> header = new CompletableFuture<>();
+        submit("/getMazeRows " + x + " " + y, header, new RowsRoute(header));
+        return header;
+    }
 
     /**
      *
      * @param x Parametr odpowiadający szerokości potrzebnego labiryntu
      * @param y Parametr odpowiadający wysokości potrzebnego labiryntu
-     * @return Zwraca zdeserializowany labirynt
+     * @return Zwraca odczytany labirynt (format MazeCodec)
+     * @throws IOException Generuje wyjątek przy błędzie połączenia lub odpowiedzi serwera
      */
+    public MazeData getLabirynt(int x, int y) throws IOException
+    {
+        return await(requestMaze(x, y));
+    }
 
+    /**
+     *
+     * @param x Parametr odpowiadający szerokości potrzebnego labiryntu
+     * @param y Parametr odpowiadający wysokości potrzebnego labiryntu
+     * @return Zwraca odczyt labiryntu z już przeczytanym nagłówkiem
+     * @throws IOException Generuje wyjątek przy błędzie połączenia lub odpowiedzi serwera
+     */
+    public MazeRowsReader getLabiryntRows(int x, int y) throws IOException
+    {
+        return await(requestMazeRows(x, y));
+    }
 
-    
-    public ArrayList<Coord> getLabirynt(int x, int y) throws IOException, ClassNotFoundException
+    /**
+     *
+     * @param command Parametr odpowiadający komendzie wysyłanej do serwera
+     * @return Zwraca odpowiedź serwera
+     * @throws IOException Generuje wyjątek, kiedy serwer zamknął połączenie
+     */
+    public String request(String command) throws IOException
     {
-        this.preparedCommand = "/getLabirynt " + x + " " + y;
-        action(true);
-        waitForResponse();
-	    Coord[] response = (Coord[]) Serializator.fromString(this.response);
-	    return new ArrayList<Coord>(Arrays.asList(response));
+        return await(send(command));
     }
 
     /**
+     * Czeka na wynik - wersja blokująca dla wywołań synchronicznych.
+     * Przerwanie wątku anuluje żądanie.
      *
-     * @param act Parametr reprezentujacy czy klient wyslal jakas komende
-     * 
+     * @param result Parametr określający przyszły wynik
+     * @return Zwraca wynik
+     * @throws IOException Generuje wyjątek, gdy żądanie się nie powiodło, zostało anulowane lub przerwane
      */
-    
-    public synchronized void action(boolean act)
+    public static <T> T await(CompletableFuture<T> result) throws IOException
     {
-        this.action = act;
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            result.cancel(false);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Przerwano oczekiwanie na odpowiedz serwera");
+        } catch (CancellationException e) {
+            throw new IOException("Zadanie zostalo anulowane", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
     }
 
-     /**
+    /**
+     * Kończy wynik wyjątkiem TimeoutException, jeżeli nie zakończy się w podanym czasie.
      *
-     * @return Zwraca wartosc logiczna odpowiadajaca TRUE - jeżeli klient wyslal jakas komende
-     * bądź FALSE jeśli nie
+     * @param result Parametr określający przyszły wynik
+     * @param timeout Parametr określający czas oczekiwania
+     * @param unit Parametr określający jednostkę czasu
+     * @return Zwraca ten sam wynik
      */
-    
-    public synchronized boolean getAction()
+    public static <T> CompletableFuture<T> within(final CompletableFuture<T> result, final long timeout, final TimeUnit unit)
     {
-        return this.action;
+        final ScheduledFuture<?> timer = TIMEOUTS.schedule(new Runnable() {
+            @Override
+            public void run() {
+                result.completeExceptionally(new TimeoutException("Brak odpowiedzi serwera po " + unit.toMillis(timeout) + " ms"));
+            }
+        }, timeout, unit);
+        result.whenComplete(new BiConsumer<T, Throwable>() {
+            @Override
+            public void accept(T value, Throwable error) {
+                timer.cancel(false);
+            }
+        });
+        return result;
     }
 
+    /**
+     *
+     * @return Zwraca liczbę poleceń wysłanych tym połączeniem
+     */
+    public int getRequestCount()
+    {
+        return nextId.get();
+    }
 
-     /**
+    /**
      *
-     * @return Zwraca odpowiedź serwera na komende
+     * @return Zwraca true, jeżeli połączenie jest otwarte, a wątek czytający działa
      */
-    
-    public synchronized String getResponse()
+    public boolean isConnected()
     {
-        return this.response;
+        return s != null && !closed;
     }
-    
+
+    /**
+     * Zamyka połączenie z serwerem - oczekujące polecenia kończą się wyjątkiem.
+     */
+    public void close()
+    {
+        closed = true;
+        try {
+            if (s != null) {
+                s.close();
+            }
+        } catch (IOException ex) {
+            Logger.getLogger(ServerClient.class.getName()).log(Level.SEVERE, null, ex);
+        }
+    }
+
+    /**
+     * Wątek czytający - rozdziela linie odpowiedzi według oznaczeń poleceń.
+     */
     @Override
     public void run() {
-        while(start)
+        IOException failure;
+        try {
+            String line;
+            while ((line = inS.readLine()) != null) {
+                dispatch(line);
+            }
+            failure = new IOException("Serwer zamknal polaczenie");
+        } catch (IOException e) {
+            failure = closed ? new IOException("Polaczenie zostalo zamkniete", e) : e;
+        }
+        close();
+        for (Integer id : pending.keySet()) {
+            Route route = pending.remove(id);
+            if (route != null) {
+                route.fail(failure);
+            }
+        }
+    }
+
+    private void dispatch(String line)
+    {
+        if (!line.startsWith("#")) {
+            //komunikaty serwera ("NOTICE ...") i linie bez oznaczenia nie naleza do zadnego polecenia
+            return;
+        }
+        int space = line.indexOf(' ');
+        Integer id;
+        try {
+            id = Integer.valueOf(line.substring(1, space < 0 ? line.length() : space));
+        } catch (NumberFormatException e) {
+            return;
+        }
+        Route route = pending.get(id);
+        //brak trasy - polecenie anulowane albo przeterminowane
+        if (route != null && route.line(space < 0 ? "" : line.substring(space + 1))) {
+            pending.remove(id, route);
+        }
+    }
+
+    /**
+     * Rejestruje trasę odpowiedzi i wysyła oznaczone polecenie. Zakończenie
+     * wyniku w inny sposób niż odpowiedzią (anulowanie, czas) usuwa trasę.
+     */
+    private void submit(String command, CompletableFuture<?> result, final Route route)
+    {
+        final Integer id = nextId.incrementAndGet();
+        route.id = id;
+        pending.put(id, route);
+        result.whenComplete(new BiConsumer<Object, Throwable>() {
+            @Override
+            public void accept(Object value, Throwable error) {
+                if (error != null) {
+                    route.abandon();
+                    pending.remove(id, route);
+                }
+            }
+        });
+        if (closed) {
+            //watek czytajacy mogl juz skonczyc i nie zobaczyc tej trasy
+            if (pending.remove(id, route)) {
+                route.fail(new IOException("Polaczenie z serwerem jest zamkniete"));
+            }
+            return;
+        }
+        outS.println("#" + id + " " + command);
+        if (outS.checkError()) {
+            if (pending.remove(id, route)) {
+                route.fail(new IOException("Blad wysylania polecenia do serwera"));
+            }
+        }
+    }
+
+    private static String checked(String response) throws IOException
+    {
+        if (response.equals("ERROR") || response.equals("COMMAND ERROR")) {
+            throw new IOException("Serwer odrzucil zadanie: " + response);
+        }
+        return response;
+    }
+
+    /**
+     * Trasa odpowiedzi jednego polecenia - wywoływana w wątku czytającym.
+     */
+    private abstract static class Route
+    {
+        /**
+         * @return zwraca true, jeżeli to była ostatnia linia odpowiedzi
+         */
+        abstract boolean line(String text);
+
+        abstract void fail(IOException e);
+
+        void abandon()
         {
-            if(getAction())
-            {
-                outS.println(preparedCommand);
+        }
+
+        Integer id;
+    }
+
+    /**
+     * Trasa odpowiedzi /getMazeRows - linie trafiają do kolejki czytanej
+     * przez MazeRowsReader w wątku odbiorcy.
+     */
+    private class RowsRoute extends Route implements MazeRowsReader.Lines
+    {
+        RowsRoute(CompletableFuture<MazeRowsReader> header)
+        {
+            this.header = header;
+        }
+
+        @Override
+        boolean line(String text) {
+            boolean last = text.equals("END") || text.equals("ERROR") || text.equals("COMMAND ERROR");
+            if (abandoned) {
+                return last;
+            }
+            try {
+                //pelna kolejka wstrzymuje watek czytajacy, dopoki odbiorca nie odbierze pasa lub nie zrezygnuje
+                while (!lines.offer(text, QUEUE_WAIT_MS, TimeUnit.MILLISECONDS)) {
+                    if (abandoned) {
+                        return last;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return last;
+            }
+            if (!header.isDone()) {
                 try {
-                    response = inS.readLine();
-                } catch (IOException ex) {
-                    Logger.getLogger(ServerClient.class.getName()).log(Level.SEVERE, null, ex);
+                    header.complete(new MazeRowsReader(this));
+                } catch (IOException e) {
+                    header.completeExceptionally(e);
                 }
-                action(false);
             }
-            
+            return last;
+        }
+
+        @Override
+        void fail(IOException e) {
+            failure = e;
+            header.completeExceptionally(e);
+            //miejsce na znacznik bledu - producentem kolejki jest tylko watek czytajacy, czyli ten watek
+            lines.clear();
+            lines.offer(FAILED);
         }
+
+        @Override
+        void abandon() {
+            abandoned = true;
+            lines.clear();
+        }
+
+        @Override
+        public String next() throws IOException {
+            String line;
+            try {
+                line = lines.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Przerwano odczyt labiryntu");
+            }
+            if (line == FAILED) {
+                lines.offer(FAILED);
+                throw failure;
+            }
+            return line;
+        }
+
+        @Override
+        public void close() {
+            abandon();
+            pending.remove(id, this);
+        }
+
+        private final CompletableFuture<MazeRowsReader> header;
+        private final ArrayBlockingQueue<String> lines = new ArrayBlockingQueue<>(ROWS_QUEUE);
+        private volatile boolean abandoned;
+        private volatile IOException failure;
     }
-           
-    
-    private boolean action;
-    
-    private String response;
-    private String preparedCommand;
+
+    private final ConcurrentHashMap<Integer, Route> pending = new ConcurrentHashMap<>();
+    private final AtomicInteger nextId = new AtomicInteger();
     private BufferedReader inS;
     private PrintWriter outS;
     private Socket s;
     private String server;
     private int port;
-    private boolean start;
-    
-    private boolean isWaiting;
+    private volatile boolean closed;
     
     private Thread thread;
-}
 
+    private static final int CONNECT_TIMEOUT = 5000;
+    private static final int ROWS_QUEUE = 4;
+    private static final long QUEUE_WAIT_MS = 100;
+    private static final String FAILED = new String("FAILED");
+    private static final ScheduledThreadPoolExecutor TIMEOUTS = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "server-timeouts");
+            t.setDaemon(true);
+            return t;
+        }
+    });
+
+    static
+    {
+        //anulowane zegary nie czekaja w kolejce do swojego terminu
+        TIMEOUTS.setRemoveOnCancelPolicy(true);
+    }
+}
@@ -1,69 +1,164 @@
 package labyrinth.control;
 
-import labyrinth.server.serialization.Coord;
+import labyrinth.server.serialization.MazeData;
+import labyrinth.client.serverclient.MazeRowsReader;
 import labyrinth.client.serverclient.ServerClient;
-import labyrinth.client.configuration.Configuration;
 
-import java.util.ArrayList;
 import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Klasa ClientConnection realizuje połączenie klienta z serwerem.
  *
+ * Wszystkie żądania idą trwałym połączeniem z ConnectionManager. Jeżeli
+ * ponownie użyte połączenie okaże się zerwane (np. serwer zamknął je po
+ * czasie bezczynności), żądanie blokujące jest raz powtarzane nowym połączeniem.
+ *
  * @author Zuzanna Łaś
  */
 public class ClientConnection
 {
     /**
-     * Pobiera z serwera wygenerowaną listę współrzędnych ścianek labiryntu.
+     * Zamawia na serwerze labirynt bez czekania na odpowiedź.
+     *
+     * Pierwsze wywołanie (i pierwsze po zerwaniu połączenia) nawiązuje połączenie.
+     * Anulowanie zwróconego wyniku anuluje żądanie.
+     *
+     * @param width szerokość labiryntu
+     * @param height wysokość labiryntu
+     *
+     * @return przyszły labirynt, kończony wyjątkiem TimeoutException, jeżeli serwer nie odpowie w czasie RESPONSE_TIMEOUT_MS
+     */
+    public CompletableFuture<MazeData> requestLabyrinth(int width, int height)
+    {
+        try {
+            return connections.get().requestMaze(width, height, RESPONSE_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (IOException e) {
+            CompletableFuture<MazeData> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            return failed;
+        }
+    }
+
+    /**
+     * Pobiera z serwera wygenerowany labirynt.
      *
      * @param width szerokość labiryntu
      * @param height wysokość labiryntu
      *
-     * @return lista współrzędnych ścianek labiryntu
+     * @return labirynt odczytany z odpowiedzi serwera
      *
-     * @throws IOException błąd połączenia z serwerem
-     * @throws ClassNotFoundException błąd odczytu zserializowanych danych
+     * @throws IOException błąd połączenia z serwerem lub odczytu danych labiryntu
      */
-    public ArrayList<Coord> getLabyrinthCoordinates(int width, int height) throws IOException, ClassNotFoundException
+    public MazeData getLabyrinth(int width, int height) throws IOException
     {
-        if (connect()) {
-            ArrayList<Coord> coordinates = client.getLabirynt(width, height);
-            disconnect();
-            return coordinates;
+        ServerClient client = connections.get();
+        try {
+            return ServerClient.await(client.requestMaze(width, height, RESPONSE_TIMEOUT_MS, TimeUnit.MILLISECONDS));
+        } catch (IOException e) {
+            if (!isStale(client)) {
+                throw e;
+            }
+            return ServerClient.await(connections.get().requestMaze(width, height, RESPONSE_TIMEOUT_MS, TimeUnit.MILLISECONDS));
         }
-        return null;
     }
 
     /**
-     * Tworzy połączenie z serwerem.
+     * Pobiera z serwera labirynt przesyłany pasami wierszy.
+     *
+     * Nagłówek labiryntu (rozmiar, start i meta) jest czytany od razu, a kolejne
+     * pasy wierszy są czytane w osobnym wątku i przekazywane słuchaczowi,
+     * dzięki czemu labirynt może być rysowany, zanim dotrze w całości.
      *
-     * Próba połączenia jest podejmowana po poprawnym załadowaniu konfiguracji.
+     * @param width szerokość labiryntu
+     * @param height wysokość labiryntu
+     * @param listener słuchacz otrzymujący kolejne pasy wierszy (wywoływany w wątku pobierania)
      *
-     * @return true, jeżeli udało się nazwiązać połączenie z serwerem
+     * @return odczyt labiryntu z nagłówkiem
      *
-     * @throws IOException błąd połączenia z serwerem
+     * @throws IOException błąd połączenia z serwerem lub odczytu nagłówka labiryntu
      */
-    private boolean connect() throws IOException
+    public MazeRowsReader streamLabyrinth(int width, int height, final RowsListener listener) throws IOException
     {
-        if (Configuration.load()) {
-            client = new ServerClient(Configuration.getIp(), Configuration.getPort());
-            if (client.connect()) {
-                client.start();
-                return true;
+        ServerClient client = connections.get();
+        MazeRowsReader rows;
+        try {
+            rows = ServerClient.await(ServerClient.within(client.requestMazeRows(width, height),
+                    RESPONSE_TIMEOUT_MS, TimeUnit.MILLISECONDS));
+        } catch (IOException e) {
+            if (!isStale(client)) {
+                throw e;
             }
+            rows = ServerClient.await(ServerClient.within(connections.get().requestMazeRows(width, height),
+                    RESPONSE_TIMEOUT_MS, TimeUnit.MILLISECONDS));
         }
-        return false;
+        final MazeRowsReader reader = rows;
+        Thread download = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                IOException error = null;
+                try {
+                    long[] walls;
+                    while ((walls = reader.nextRows()) != null) {
+                        listener.rowsLoaded(reader.getFromRow(), reader.getRowCount(), walls);
+                    }
+                } catch (IOException e) {
+                    error = e;
+                    reader.close();
+                }
+                listener.finished(error);
+            }
+        }, "labyrinth-download");
+        download.setDaemon(true);
+        download.start();
+        return reader;
+    }
+
+    /**
+     * Interfejs słuchacza pobierania labiryntu pasami wierszy.
+     */
+    public interface RowsListener
+    {
+        /**
+         * Wywoływana po odczytaniu kolejnego pasa wierszy.
+         *
+         * @param fromRow pierwszy wiersz pasa
+         * @param rowCount liczba wierszy pasa
+         * @param walls bitmapa ścian pasa - bit ((y - fromRow) * szerokość + x) ustawiony oznacza ścianę
+         */
+        void rowsLoaded(int fromRow, int rowCount, long[] walls);
+
+        /**
+         * Wywoływana po zakończeniu pobierania.
+         *
+         * @param error błąd pobierania lub null, jeżeli labirynt dotarł w całości
+         */
+        void finished(IOException error);
     }
 
     /**
      * Zamyka połączenie z serwerem.
      */
-    private void disconnect()
+    public void close()
     {
-        client.stop();
+        connections.close();
     }
 
-    private ServerClient client;
+    /**
+     * Sprawdza, czy błąd mógł wynikać z zerwania wcześniej używanego połączenia.
+     *
+     * @param client połączenie, na którym wystąpił błąd
+     *
+     * @return true, jeżeli połączenie jest już zamknięte, a przed nieudanym żądaniem obsłużyło inne żądania
+     */
+    private static boolean isStale(ServerClient client)
+    {
+        return !client.isConnected() && client.getRequestCount() > 1;
+    }
+
+    private static final long RESPONSE_TIMEOUT_MS = 30000;
+
+    private final ConnectionManager connections = new ConnectionManager();
 }
 
@@ -0,0 +1,102 @@
+package labyrinth.control;
+
+import labyrinth.client.serverclient.ServerClient;
+import labyrinth.client.configuration.Configuration;
+
+import java.io.IOException;
+
+/**
+ * Klasa ConnectionManager utrzymuje jedno trwałe połączenie z serwerem.
+ *
+ * Konfiguracja jest czytana raz, przy pierwszym połączeniu. Wszystkie żądania
+ * idą tym samym połączeniem, więc kolejna gra kosztuje tylko jedno żądanie,
+ * bez nawiązywania połączenia TCP. Zerwane połączenie jest odtwarzane dopiero
+ * przy następnym żądaniu, a po nieudanej próbie kolejne są odkładane coraz dłużej.
+ *
+ * @author Zuzanna Łaś
+ */
+public class ConnectionManager
+{
+    /**
+     * Tworzy menedżera i rejestruje zamknięcie połączenia przy wyjściu z programu.
+     */
+    public ConnectionManager()
+    {
+        Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+            @Override
+            public void run() {
+                close();
+            }
+        }, "connection-close"));
+    }
+
+    /**
+     * Zwraca wspólne połączenie z serwerem, w razie potrzeby nawiązując je od nowa.
+     *
+     * Połączenie obsługuje wiele poleceń naraz (ServerClient), więc nie jest
+     * wypożyczane na wyłączność i nie trzeba go oddawać.
+     *
+     * @return otwarte połączenie z serwerem
+     *
+     * @throws IOException brak konfiguracji, błąd połączenia lub trwa odczekiwanie po nieudanej próbie
+     */
+    public synchronized ServerClient get() throws IOException
+    {
+        if (closed) {
+            throw new IOException("Polaczenie z serwerem zostalo zamkniete");
+        }
+        if (client == null || !client.isConnected()) {
+            client = connect();
+        }
+        return client;
+    }
+
+    /**
+     * Zamyka trwałe połączenie. Kolejne wywołania get kończą się wyjątkiem.
+     */
+    public synchronized void close()
+    {
+        closed = true;
+        if (client != null) {
+            client.close();
+            client = null;
+        }
+    }
+
+    /**
+     * Nawiązuje nowe połączenie z uwzględnieniem odczekiwania po nieudanych próbach.
+     */
+    private ServerClient connect() throws IOException
+    {
+        long now = System.nanoTime();
+        if (failures > 0 && now - retryAt < 0) {
+            throw new IOException("Serwer niedostepny, kolejna proba za " + (retryAt - now) / 1000000 + " ms");
+        }
+        if (!configured) {
+            if (!Configuration.load()) {
+                throw new IOException("Brak konfiguracji polaczenia z serwerem");
+            }
+            configured = true;
+        }
+        ServerClient fresh = new ServerClient(Configuration.getIp(), Configuration.getPort());
+        try {
+            fresh.connect();
+        } catch (IOException e) {
+            long backoff = Math.min(MAX_BACKOFF_MS, INITIAL_BACKOFF_MS << Math.min(failures, 16));
+            failures++;
+            retryAt = System.nanoTime() + backoff * 1000000;
+            throw e;
+        }
+        failures = 0;
+        return fresh;
+    }
+
+    private static final long INITIAL_BACKOFF_MS = 250;
+    private static final long MAX_BACKOFF_MS = 8000;
+
+    private ServerClient client;
+    private boolean closed;
+    private boolean configured;
+    private int failures;
+    private long retryAt;
+}
@@ -6,8 +6,9 @@ import static labyrinth.gui.GameBoard.DifficultyLevel;
 import static java.nio.file.StandardOpenOption.*;
 
 import labyrinth.gui.*;
+import labyrinth.game.Labyrinth;
 import labyrinth.game.Result;
-import labyrinth.server.serialization.Coord;
+import labyrinth.client.serverclient.MazeRowsReader;
 
 import java.util.ArrayList;
 import java.io.*;
@@ -113,8 +114,10 @@ public class OperationsControl
     }
 
     /**
-     * Pobiera z serwera wygenerowaną listę współrzędnych ścianek labiryntu i ustawia planszę gry.
+     * Pobiera z serwera wygenerowany labirynt i ustawia planszę gry.
      *
+     * Labirynt jest pobierany pasami wierszy - gra rusza zaraz po odczytaniu nagłówka,
+     * a kolejne wiersze są dorysowywane w miarę ich pobierania.
      * W razie wystąpienia problemów z połączeniem wyświetlane jest okienko z informacją o błędzie.
      *
      * @return true jest zwracane, jeżeli nie wystąpił żaden problem podczas połączenia z serwerem
@@ -126,9 +129,10 @@ public class OperationsControl
         int width = (int) labyrinthSize.getWidth();
         int height = (int) labyrinthSize.getHeight();
         try {
-            ArrayList<Coord> coordinates = connection.getLabyrinthCoordinates(width, height);
-            if (coordinates != null) {
-                gameBoard.startNewGame(coordinates);
+            LabyrinthDownload download = new LabyrinthDownload();
+            MazeRowsReader maze = connection.streamLabyrinth(width, height, download);
+            if (maze != null) {
+                download.setLabyrinth(gameBoard.startNewGame(maze.getStart(), maze.getMeta()), maze.getWidth());
                 return true;
             }
         } catch (Exception e) {
@@ -137,6 +141,55 @@ public class OperationsControl
         return false;
     }
 
+    /**
+     * Klasa przekazuje pobierane pasy wierszy labiryntu do wątku obsługi zdarzeń Swing.
+     *
+     * Pasy są dodawane do labiryntu dopiero w wątku zdarzeń, a ten ustawia labirynt
+     * przed obsługą pierwszego z nich, więc labirynt nie wymaga synchronizacji.
+     */
+    private class LabyrinthDownload implements ClientConnection.RowsListener
+    {
+        /**
+         * Ustawia labirynt uzupełniany pobieranymi wierszami.
+         *
+         * @param labyrinth labirynt planszy gry
+         * @param mazeWidth szerokość siatki labiryntu
+         */
+        public void setLabyrinth(Labyrinth labyrinth, int mazeWidth)
+        {
+            this.labyrinth = labyrinth;
+            this.mazeWidth = mazeWidth;
+        }
+
+        @Override
+        public void rowsLoaded(final int fromRow, final int rowCount, final long[] walls)
+        {
+            SwingUtilities.invokeLater(new Runnable() {
+                @Override
+                public void run() {
+                    labyrinth.addWalls(fromRow, rowCount, mazeWidth, walls);
+                    gameBoard.repaint();
+                }
+            });
+        }
+
+        @Override
+        public void finished(IOException error)
+        {
+            if (error != null) {
+                SwingUtilities.invokeLater(new Runnable() {
+                    @Override
+                    public void run() {
+                        showWarningDialog();
+                    }
+                });
+            }
+        }
+
+        private Labyrinth labyrinth;
+        private int mazeWidth;
+    }
+
     /**
      * Obsługuje proces otwarcia zapisanej wcześniej gry.
      *
@@ -2,6 +2,7 @@ package labyrinth.game;
 
 import labyrinth.control.OperationsControl;
 import labyrinth.server.serialization.Coord;
+import labyrinth.server.serialization.MazeData;
 
 import java.awt.*;
 import javax.swing.ImageIcon;
@@ -37,6 +38,84 @@ public class Labyrinth implements Serializable
         this.gameController = gameController;
     }
 
+    /**
+     * Tworzy labirynt na podstawie danych odczytanych z serwera
+     * i ustawia kontroler gry.
+     *
+     * @param maze labirynt odczytany z odpowiedzi serwera
+     * @param gameController kontroler gry
+     */
+    public Labyrinth(MazeData maze, OperationsControl gameController)
+    {
+        if (maze != null) {
+            start = new Field(maze.getStart());
+            meta = new Field(maze.getMeta());
+            createWalls(maze);
+            pawn = new Pawn(start);
+        }
+        this.gameController = gameController;
+    }
+
+    /**
+     * Tworzy labirynt bez ścianek, uzupełniany pasami wierszy w miarę
+     * pobierania z serwera (metoda addWalls), i ustawia kontroler gry.
+     *
+     * Dopóki wiersz nie zostanie wczytany, pionek nie może na niego wejść.
+     *
+     * @param start pole startu
+     * @param meta pole mety
+     * @param gameController kontroler gry
+     */
+    public Labyrinth(Coord start, Coord meta, OperationsControl gameController)
+    {
+        this.start = new Field(start);
+        this.meta = new Field(meta);
+        walls = new TreeSet<>();
+        loadedRows = 0;
+        pawn = new Pawn(this.start);
+        this.gameController = gameController;
+    }
+
+    /**
+     * Dodaje ścianki z kolejnego pasa wierszy pobranego z serwera.
+     *
+     * Metoda musi być wywoływana w wątku obsługi zdarzeń Swing, tak jak rysowanie.
+     *
+     * @param fromRow pierwszy wiersz pasa
+     * @param rowCount liczba wierszy pasa
+     * @param mazeWidth szerokość siatki labiryntu
+     * @param band bitmapa ścian pasa - bit ((y - fromRow) * mazeWidth + x) ustawiony oznacza ścianę
+     */
+    public void addWalls(int fromRow, int rowCount, int mazeWidth, long[] band)
+    {
+        for (int w = 0; w < band.length; ++w) {
+            for (long word = band[w]; word != 0; word &= word - 1) {
+                int k = (w << 6) + Long.numberOfTrailingZeros(word);
+                walls.add(new Field(new Coord(k % mazeWidth, fromRow + k / mazeWidth)));
+            }
+        }
+        loadedRows = Math.max(loadedRows, fromRow + rowCount);
+    }
+
+    /**
+     * Zamienia bitmapę ścianek na listę pól labiryntu, przechodząc
+     * od razu po ustawionych bitach kolejnych wierszy.
+     *
+     * @param maze labirynt odczytany z odpowiedzi serwera
+     */
+    private void createWalls(MazeData maze)
+    {
+        walls = new TreeSet<>();
+        int mazeWidth = maze.getWidth();
+        for (int y = 0; y < maze.getHeight(); ++y) {
+            int rowStart = y * mazeWidth;
+            int rowEnd = rowStart + mazeWidth;
+            for (int i = maze.nextWall(rowStart, rowEnd); i >= 0; i = maze.nextWall(i + 1, rowEnd)) {
+                walls.add(new Field(new Coord(i - rowStart, y)));
+            }
+        }
+    }
+
     /**
      * Zamienia listę współrzędnych ścianek na listę pól labiryntu.
      *
@@ -211,6 +290,7 @@ public class Labyrinth implements Serializable
         width = in.readInt();
         height = in.readInt();
         pawnImage = (String) in.readObject();
+        loadedRows = Integer.MAX_VALUE;
     }
 
     /**
@@ -373,7 +453,7 @@ public class Labyrinth implements Serializable
         {
             int x = checkedField.getXCoordinate();
             int y = checkedField.getYCoordinate();
-            if (walls.contains(checkedField) || (x < 1 || x > width || y < 1 || y > height)) {
+            if (walls.contains(checkedField) || (x < 1 || x > width || y < 1 || y > height) || y >= loadedRows) {
                 return null;
             }
             currentField = checkedField;
@@ -406,6 +486,8 @@ public class Labyrinth implements Serializable
     private Field meta;
     private Pawn pawn;
     private TreeSet<Field> walls;
+    //liczba wczytanych wierszy (od gory) - pola transient nie zmieniaja formatu zapisanych gier
+    private transient int loadedRows = Integer.MAX_VALUE;
     private transient OperationsControl gameController;
 }
 
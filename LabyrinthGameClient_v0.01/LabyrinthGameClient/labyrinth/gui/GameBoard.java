@@ -3,6 +3,7 @@ package labyrinth.gui;
 import labyrinth.control.*;
 import labyrinth.game.*;
 import labyrinth.server.serialization.Coord;
+import labyrinth.server.serialization.MazeData;
 
 import javax.swing.*;
 import javax.swing.border.EtchedBorder;
@@ -81,14 +82,30 @@ public class GameBoard extends JPanel
     /**
      * Rozpoczyna nową grę, tworząc labirynt.
      *
-     * @param coordinates lista współrzędnych ścianek labiryntu
+     * @param maze labirynt pobrany z serwera
      */
-    public void startNewGame(ArrayList<Coord> coordinates)
+    public void startNewGame(MazeData maze)
     {
-        labyrinth = new Labyrinth(coordinates, gameController);
+        labyrinth = new Labyrinth(maze, gameController);
         startGame();
     }
 
+    /**
+     * Rozpoczyna nową grę z labiryntem bez ścianek, które są dodawane
+     * w miarę pobierania z serwera.
+     *
+     * @param start pole startu
+     * @param meta pole mety
+     *
+     * @return utworzony labirynt
+     */
+    public Labyrinth startNewGame(Coord start, Coord meta)
+    {
+        labyrinth = new Labyrinth(start, meta, gameController);
+        startGame();
+        return labyrinth;
+    }
+
     /**
      * Rozpoczyna grę, dodając odpowiedniego słuchacza klawiatury
      * i aktualizując komponent.
@@ -0,0 +1,202 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package labyrinth.server.serialization;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Base64;
+
+/**
+ * Klasa reprezentująca zwarty, wersjonowany format labiryntu.
+ * Przed zakodowaniem w Base64 dane wyglądają następująco: bajty 'L' 'B',
+ * bajt wersji, bajt zarezerwowany, sześć liczb int (szerokość, wysokość,
+ * x i y startu, x i y mety), a za nimi bitmapa ścian ułożona wierszami -
+ * pole (x, y) to bit (y * szerokość + x), liczony od najmłodszego bitu bajtu.
+ * @author informatyka
+ */
+public class MazeCodec {
+
+    /**
+     * Aktualna wersja formatu.
+     */
+    public static final int VERSION = 1;
+
+    /**
+     *
+     * @param width szerokość siatki labiryntu
+     * @param height wysokość siatki labiryntu
+     * @param start pole startu
+     * @param meta pole mety
+     * @param walls bitmapa ścian - bit (y * width + x) ustawiony oznacza ścianę
+     * @return Zwraca labirynt zakodowany do String
+     */
+    public static String encode(int width, int height, Coord start, Coord meta, long[] walls)
+    {
+        return Base64.getEncoder().encodeToString(encodeBytes(width, height, start, meta, walls));
+    }
+
+    /**
+     *
+     * @param width szerokość siatki labiryntu
+     * @param height wysokość siatki labiryntu
+     * @param start pole startu
+     * @param meta pole mety
+     * @param walls bitmapa ścian - bit (y * width + x) ustawiony oznacza ścianę
+     * @return Zwraca labirynt zakodowany do tablicy bajtów (bez Base64)
+     */
+    public static byte[] encodeBytes(int width, int height, Coord start, Coord meta, long[] walls)
+    {
+        int bitmapBytes = bitmapBytes(width, height);
+        ByteBuffer buf = ByteBuffer.allocate(HEADER_BYTES + bitmapBytes);
+        buf.put(MAGIC_L).put(MAGIC_B).put((byte) VERSION).put((byte) 0);
+        buf.putInt(width).putInt(height);
+        buf.putInt(start.getX()).putInt(start.getY());
+        buf.putInt(meta.getX()).putInt(meta.getY());
+
+        buf.order(ByteOrder.LITTLE_ENDIAN);
+        int fullWords = bitmapBytes >>> 3;
+        for (int i = 0; i < fullWords; i++) {
+            buf.putLong(walls[i]);
+        }
+        for (int k = fullWords << 3; k < bitmapBytes; k++) {
+            buf.put((byte) (walls[k >>> 3] >>> ((k & 7) << 3)));
+        }
+        return buf.array();
+    }
+
+    /**
+     *
+     * @param s Labirynt zakodowany wcześniej przy pomocy encode
+     * @return Zwraca odczytany labirynt
+     * @throws IOException Generuje wyjątek, kiedy dane nie są w znanym formacie
+     */
+    public static MazeData decode(String s) throws IOException
+    {
+        byte[] data;
+        try {
+            data = Base64.getDecoder().decode(s);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Niepoprawne dane labiryntu", e);
+        }
+        return decodeBytes(data);
+    }
+
+    /**
+     *
+     * @param data Labirynt zakodowany wcześniej przy pomocy encodeBytes
+     * @return Zwraca odczytany labirynt
+     * @throws IOException Generuje wyjątek, kiedy dane nie są w znanym formacie
+     */
+    public static MazeData decodeBytes(byte[] data) throws IOException
+    {
+        try {
+            ByteBuffer buf = ByteBuffer.wrap(data);
+            if (buf.get() != MAGIC_L || buf.get() != MAGIC_B) {
+                throw new IOException("Niepoprawne dane labiryntu");
+            }
+            int version = buf.get();
+            if (version != VERSION) {
+                throw new IOException("Nieobslugiwana wersja labiryntu: " + version);
+            }
+            buf.get();
+            int width = buf.getInt();
+            int height = buf.getInt();
+            Coord start = new Coord(buf.getInt(), buf.getInt());
+            Coord meta = new Coord(buf.getInt(), buf.getInt());
+
+            int bitmapBytes = bitmapBytes(width, height);
+            if (buf.remaining() != bitmapBytes) {
+                throw new IOException("Niepoprawna dlugosc labiryntu");
+            }
+            long[] walls = new long[(bitmapBytes + 7) >>> 3];
+            buf.order(ByteOrder.LITTLE_ENDIAN);
+            int fullWords = bitmapBytes >>> 3;
+            for (int i = 0; i < fullWords; i++) {
+                walls[i] = buf.getLong();
+            }
+            for (int k = fullWords << 3; k < bitmapBytes; k++) {
+                walls[k >>> 3] |= (buf.get() & 0xFFL) << ((k & 7) << 3);
+            }
+            return new MazeData(width, height, start, meta, walls);
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new IOException("Niepoprawna dlugosc labiryntu", e);
+        }
+    }
+
+    /**
+     * Koduje pas kolejnych wierszy bitmapy ścian - do przesyłania dużych
+     * labiryntów w częściach. Bit k pasa odpowiada polu o indeksie
+     * fromRow * width + k, liczonemu jak w encodeBytes.
+     *
+     * @param walls bitmapa ścian całego labiryntu
+     * @param width szerokość siatki labiryntu
+     * @param fromRow pierwszy wiersz pasa
+     * @param rows liczba wierszy pasa
+     * @return Zwraca pas wierszy zakodowany w Base64
+     */
+    public static String encodeRows(long[] walls, int width, int fromRow, int rows)
+    {
+        int bytes = bitmapBytes(width, rows);
+        long offset = (long) fromRow * width;
+        int first = (int) (offset >>> 6);
+        int shift = (int) (offset & 63);
+        byte[] band = new byte[bytes];
+        for (int k = 0; k < bytes; k += 8) {
+            int w = first + (k >>> 3);
+            long word = walls[w] >>> shift;
+            if (shift != 0 && w + 1 < walls.length) {
+                word |= walls[w + 1] << (64 - shift);
+            }
+            for (int b = k; b < Math.min(bytes, k + 8); b++, word >>>= 8) {
+                band[b] = (byte) word;
+            }
+        }
+        return Base64.getEncoder().encodeToString(band);
+    }
+
+    /**
+     *
+     * @param s pas wierszy zakodowany wcześniej przy pomocy encodeRows
+     * @param width szerokość siatki labiryntu
+     * @param rows liczba wierszy pasa
+     * @return Zwraca bitmapę ścian pasa - bit ((y - fromRow) * width + x) ustawiony oznacza ścianę
+     * @throws IOException Generuje wyjątek, kiedy dane nie są w znanym formacie
+     */
+    public static long[] decodeRows(String s, int width, int rows) throws IOException
+    {
+        byte[] band;
+        int bytes;
+        try {
+            band = Base64.getDecoder().decode(s);
+            bytes = bitmapBytes(width, rows);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Niepoprawne dane pasa labiryntu", e);
+        }
+        if (band.length != bytes) {
+            throw new IOException("Niepoprawna dlugosc pasa labiryntu");
+        }
+        long[] walls = new long[(bytes + 7) >>> 3];
+        for (int k = 0; k < bytes; k++) {
+            walls[k >>> 3] |= (band[k] & 0xFFL) << ((k & 7) << 3);
+        }
+        return walls;
+    }
+
+    private static int bitmapBytes(int width, int height)
+    {
+        long cells = (long) width * height;
+        if (width <= 0 || height <= 0 || cells > Integer.MAX_VALUE - 63) {
+            throw new IllegalArgumentException("Niepoprawny rozmiar labiryntu: " + width + "x" + height);
+        }
+        return (int) ((cells + 7) >>> 3);
+    }
+
+    private static final int HEADER_BYTES = 4 + 6 * 4;
+    private static final byte MAGIC_L = 'L';
+    private static final byte MAGIC_B = 'B';
+}